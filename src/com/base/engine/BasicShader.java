@@ -29,4 +29,15 @@ public class BasicShader extends Shader{
         setUniform("transform", projectedMatrix);
         setUniform("baseColor", material.getColor());
     }
+
+    @Override
+    public void updateUniforms(float[] projectedMatrices, int index, Material material){
+        if(material.getTexture() != null)
+            material.getTexture().bind();
+        else
+            RenderUtil.unbindTextures();
+
+        setUniform("transform", projectedMatrices, index);
+        setUniform("baseColor", material.getColor());
+    }
 }
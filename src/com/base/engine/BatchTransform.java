@@ -0,0 +1,95 @@
+package com.base.engine;
+
+/**
+ * Builds the MVP matrices of many yaw-only entities (sprites, doors, pickups) in one pass.
+ *
+ * The entity data comes in as struct of arrays, one float[] per component, and the result is written
+ * packed, 16 column-major floats per entity, so it can be handed to Shader.setUniform(name, matrices, index)
+ * or uploaded as one instance buffer without any copying.
+ *
+ * The model matrix of a yaw-only entity is mostly zeros, so instead of building it and doing a full
+ * 4x4 multiply the columns of viewProjection * model are written out directly.
+ */
+public class BatchTransform {
+
+    private float[] cos;
+    private float[] sin;
+
+    public BatchTransform(){
+        cos = new float[0];
+        sin = new float[0];
+    }
+
+    /**
+     * dest[i * 16 .. i * 16 + 15] = viewProjection * Translation(px, py, pz) * RotationY(yaw) * Scale(sx, sy, sz)
+     * for every entity i below count. yaw is in degrees, like Transform's rotation.
+     * py may be null for entities on the ground (y = 0), and sx, sy, sz may be null for unscaled ones.
+     */
+    public float[] computeMVP(Matrix4f viewProjection, float[] px, float[] py, float[] pz, float[] yaw,
+                              float[] sx, float[] sy, float[] sz, int count, float[] dest){
+        if(dest.length < count * 16)
+            throw new IllegalArgumentException("BatchTransform: destination holds " + dest.length / 16 + " matrices, " + count + " needed");
+
+        ensureCapacity(count);
+
+        // Trig first, so the matrix loop below is nothing but multiply-adds
+        for(int i = 0; i < count; i++){
+            double angle = Math.toRadians(yaw[i]);
+            cos[i] = (float)Math.cos(angle);
+            sin[i] = (float)Math.sin(angle);
+        }
+
+        float[] vp = viewProjection.getM();
+        float v00 = vp[0],  v01 = vp[1],  v02 = vp[2],  v03 = vp[3];
+        float v10 = vp[4],  v11 = vp[5],  v12 = vp[6],  v13 = vp[7];
+        float v20 = vp[8],  v21 = vp[9],  v22 = vp[10], v23 = vp[11];
+        float v30 = vp[12], v31 = vp[13], v32 = vp[14], v33 = vp[15];
+
+        for(int i = 0; i < count; i++){
+            float c = cos[i];
+            float s = sin[i];
+            float scaleX = sx != null ? sx[i] : 1;
+            float scaleY = sy != null ? sy[i] : 1;
+            float scaleZ = sz != null ? sz[i] : 1;
+            float x = px[i];
+            float y = py != null ? py[i] : 0;
+            float z = pz[i];
+            int o = i * 16;
+
+            // column 0 = vp * (c * sx, 0, s * sx, 0)
+            dest[o]      = (v00 * c + v20 * s) * scaleX;
+            dest[o + 1]  = (v01 * c + v21 * s) * scaleX;
+            dest[o + 2]  = (v02 * c + v22 * s) * scaleX;
+            dest[o + 3]  = (v03 * c + v23 * s) * scaleX;
+
+            // column 1 = vp * (0, sy, 0, 0)
+            dest[o + 4]  = v10 * scaleY;
+            dest[o + 5]  = v11 * scaleY;
+            dest[o + 6]  = v12 * scaleY;
+            dest[o + 7]  = v13 * scaleY;
+
+            // column 2 = vp * (-s * sz, 0, c * sz, 0)
+            dest[o + 8]  = (v20 * c - v00 * s) * scaleZ;
+            dest[o + 9]  = (v21 * c - v01 * s) * scaleZ;
+            dest[o + 10] = (v22 * c - v02 * s) * scaleZ;
+            dest[o + 11] = (v23 * c - v03 * s) * scaleZ;
+
+            // column 3 = vp * (x, y, z, 1)
+            dest[o + 12] = v00 * x + v10 * y + v20 * z + v30;
+            dest[o + 13] = v01 * x + v11 * y + v21 * z + v31;
+            dest[o + 14] = v02 * x + v12 * y + v22 * z + v32;
+            dest[o + 15] = v03 * x + v13 * y + v23 * z + v33;
+        }
+
+        return dest;
+    }
+
+    private void ensureCapacity(int count){
+        if(cos.length >= count)
+            return;
+
+        int size = Math.max(count, cos.length * 2);
+        cos = new float[size];
+        sin = new float[size];
+    }
+}
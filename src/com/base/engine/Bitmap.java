@@ -11,8 +11,12 @@ public class Bitmap {
     private int[] pixels;
 
     public Bitmap(String fileName){
+        this(new File("./res/bitmaps/" + fileName));
+    }
+
+    private Bitmap(File file){
         try{
-            BufferedImage image = ImageIO.read(new File("./res/bitmaps/" + fileName));
+            BufferedImage image = ImageIO.read(file);
 
             width = image.getWidth();
             height = image.getHeight();
@@ -26,6 +30,10 @@ public class Bitmap {
 
     }
 
+    public static Bitmap fromTexture(String fileName){
+        return new Bitmap(new File("./res/textures/" + fileName));
+    }
+
     public Bitmap(int width, int height) {
         this.width = width;
         this.height = height;
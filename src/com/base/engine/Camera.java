@@ -2,12 +2,29 @@ package com.base.engine;
 
 import static org.lwjgl.glfw.GLFW.*;
 
+/**
+ * The orientation is kept as a normalized quaternion. The forward, up, left and right vectors and the view
+ * matrix are derived from it and the position, and only recomputed after one of them changed.
+ * None of the methods allocate, except the no-argument constructor.
+ */
 public class Camera {
     public static final Vector3f yAxis = new Vector3f(0, 1, 0); // Up in the world
 
+    private static final Vector3f xAxis = new Vector3f(1, 0, 0);
+    private static final Vector3f zAxis = new Vector3f(0, 0, 1);
+
     private Vector3f pos;
+    private Quaternion orientation;
+    private Quaternion rotation;
+
     private Vector3f forward;
     private Vector3f up;
+    private Vector3f left;
+    private Vector3f right;
+    private Matrix4f view;
+    private boolean basisDirty;
+    private boolean viewDirty;
+    private int version;
 
     public Camera(){
         this(new Vector3f(0,0,0), new Vector3f(0,0,1), new Vector3f(0,1,0));
@@ -15,22 +32,27 @@ public class Camera {
 
     public Camera(Vector3f pos, Vector3f forward, Vector3f up){
         this.pos = pos;
-        this.forward = forward;
-        this.up = up;
-        up.normalize();
-        forward.normalize();
+        this.orientation = new Quaternion(0, 0, 0, 1);
+        this.rotation = new Quaternion(0, 0, 0, 1);
+        this.forward = new Vector3f(0, 0, 1);
+        this.up = new Vector3f(0, 1, 0);
+        this.left = new Vector3f(-1, 0, 0);
+        this.right = new Vector3f(1, 0, 0);
+        this.view = new Matrix4f();
+
+        setOrientation(forward, up);
     }
 
-    public void input(){
-        float movAmount = (float)(10 * Time.getDelta());
-        float rotAmount = (float)(6 * Time.getDelta());
+    public void input(double delta){
+        float movAmount = (float)(10 * delta);
+        float rotAmount = (float)(6 * delta);
         //System.out.println(forward.toString());
 
         if(Input.getKey(GLFW_KEY_W)){
-            move(forward, movAmount);
+            move(getForward(), movAmount);
         }
         if(Input.getKey(GLFW_KEY_S)){
-            move(forward, -movAmount);
+            move(getForward(), -movAmount);
         }
         if(Input.getKey(GLFW_KEY_A)){
             move(getLeft(), movAmount);
@@ -54,70 +76,144 @@ public class Camera {
     }
 
     public void move(Vector3f dir, float amount){
-
-        pos = pos.add(dir.mul(amount));
+        pos.mulAdd(dir, amount);
+        viewDirty = true;
+        version++;
     }
 
-    // Look left and right
+    // The angles are halved to keep the turn rate of the old vector based camera,
+    // which turned forward towards its rotated copy instead of onto it
+
+    // Look left and right, around the world up axis
     public void rotateY(float angle){
-        Vector3f haxis = yAxis.cross(forward).normalize();
-        Vector3f y = new Vector3f(yAxis.getX(), yAxis.getY(), yAxis.getZ());
-        Vector3f t = forward.rotate(angle, y);
+        rotation.InitRotation(yAxis, angle / 2);
+        rotation.mul(orientation, orientation).normalizeLocal();
+        orientationChanged();
+    }
+
+    // Tilting up and down, around the camera's own right axis
+    public void rotateX(float angle){
+        rotation.InitRotation(xAxis, angle / 2);
+        orientation.mul(rotation, orientation).normalizeLocal();
+        orientationChanged();
+    }
 
-        forward = forward.add(t);
-        forward = forward.normalize();
+    public void setOrientation(Vector3f forward, Vector3f up){
+        orientation.InitRotation(forward, up);
+        orientationChanged();
+    }
 
-        up = forward.cross(haxis).normalize();
-        up = up.normalize();
+    public void setOrientation(Quaternion orientation){
+        this.orientation.set(orientation).normalizeLocal();
+        orientationChanged();
+    }
 
+    private void orientationChanged(){
+        basisDirty = true;
+        viewDirty = true;
+        version++;
     }
 
-    // Tilting up and down
-    public void rotateX(float angle){
+    private void updateBasis(){
+        if(!basisDirty)
+            return;
+
+        zAxis.rotate(orientation, forward);
+        yAxis.rotate(orientation, up);
+        xAxis.rotate(orientation, right);
+        left.set(-right.getX(), -right.getY(), -right.getZ());
+        basisDirty = false;
+    }
 
-        Vector3f haxis = yAxis.cross(forward).normalize();
-        //System.out.println(haxis.toString());
-        Vector3f t = forward.rotate(angle, haxis);
-        forward = forward.add(t);
+    /**
+     * Rotation * translation of the camera, only rebuilt after the camera moved or turned.
+     */
+    public Matrix4f getViewMatrix(){
+        if(viewDirty){
+            updateBasis();
+            view.CameraRotation(forward, up);
+            view.set(0, 3, -(right.getX() * pos.getX() + right.getY() * pos.getY() + right.getZ() * pos.getZ()));
+            view.set(1, 3, -(up.getX() * pos.getX() + up.getY() * pos.getY() + up.getZ() * pos.getZ()));
+            view.set(2, 3, -(forward.getX() * pos.getX() + forward.getY() * pos.getY() + forward.getZ() * pos.getZ()));
+            viewDirty = false;
+        }
 
-        forward = forward.normalize();
+        return view;
+    }
 
-        up = forward.cross(haxis).normalize();
+    /**
+     * Changes every time the position or orientation changes.
+     */
+    public int getVersion(){
+        return version;
     }
 
+    /**
+     * Do not modify the returned vector, it is the camera's cached copy.
+     */
     public Vector3f getLeft(){
-        Vector3f left = forward.cross(up);
-        left.normalize();
+        updateBasis();
         return left;
     }
 
+    public Vector3f getLeft(Vector3f dest){
+        return dest.set(getLeft());
+    }
+
+    /**
+     * Do not modify the returned vector, it is the camera's cached copy.
+     */
     public Vector3f getRight(){
-        Vector3f right = up.cross(forward);
-        right.normalize();
+        updateBasis();
         return right;
     }
 
+    public Vector3f getRight(Vector3f dest){
+        return dest.set(getRight());
+    }
+
+    /**
+     * Do not modify the returned vector, use move() or setPos().
+     */
     public Vector3f getPos() {
         return pos;
     }
 
     public void setPos(Vector3f pos) {
-        this.pos = pos;
+        setPos(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public void setPos(float x, float y, float z) {
+        this.pos.set(x, y, z);
+        viewDirty = true;
+        version++;
+    }
+
+    public Quaternion getOrientation() {
+        return orientation;
     }
 
+    /**
+     * Do not modify the returned vector, it is the camera's cached copy.
+     */
     public Vector3f getForward() {
+        updateBasis();
         return forward;
     }
 
     public void setForward(Vector3f forward) {
-        this.forward = forward;
+        setOrientation(forward, getUp());
     }
 
+    /**
+     * Do not modify the returned vector, it is the camera's cached copy.
+     */
     public Vector3f getUp() {
+        updateBasis();
         return up;
     }
 
     public void setUp(Vector3f up) {
-        this.up = up;
+        setOrientation(getForward(), up);
     }
 }
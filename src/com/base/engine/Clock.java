@@ -0,0 +1,43 @@
+package com.base.engine;
+
+/**
+ * Source of time for anything that waits on deadlines, so it can be swapped for a ManualClock when measuring.
+ */
+public interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long getTime(){
+            return Time.getTime();
+        }
+
+        @Override
+        public void sleep(long nanos){
+            try {
+                Thread.sleep(nanos / 1000000L, (int)(nanos % 1000000L));
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void spin(){
+            Thread.yield();
+        }
+    };
+
+    /**
+     * Current time in nanoseconds.
+     */
+    long getTime();
+
+    /**
+     * Sleeps for about nanos nanoseconds. May oversleep by the scheduler's granularity.
+     */
+    void sleep(long nanos);
+
+    /**
+     * One iteration of a busy wait.
+     */
+    void spin();
+}
@@ -0,0 +1,289 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * All doors of a level, stored as one array per component.
+ *
+ * A door lies along x, or along z when it is an x door (rotated by 90 degrees, set between walls above
+ * and below it on the map). Opening slides it from its close position to its open position and back.
+ *
+ * A door goes through the phases opening, open, closing and closed. The level's TimerWheel moves it on
+ * to the next phase, and update() only touches the doors that are sliding.
+ */
+public class DoorSystem extends EntityStore {
+    public static final float LENGTH = 1;
+    public static final float HEIGHT = 1;
+    public static final float WIDTH = 0.125f;
+    public static final float START = 0;
+    public static final double TIME_TO_OPEN = 0.5;
+    public static final double CLOSE_DELAY = 1.0;
+
+    public static final int PHASE_CLOSED = 0;
+    public static final int PHASE_OPENING = 1;
+    public static final int PHASE_OPEN = 2;
+    public static final int PHASE_CLOSING = 3;
+
+    private static Mesh mesh;
+
+    private float[] x;
+    private float[] z;
+    private float[] yaw;
+    private float[] closeX;
+    private float[] closeZ;
+    private float[] openX;
+    private float[] openZ;
+    private boolean[] xDoor;
+    private int[] phase;
+    // Ticks the current phase started and ends on
+    private long[] phaseStart;
+    private long[] phaseEnd;
+    // Handles of the doors that are opening or closing
+    private int[] sliding;
+    private int slidingCount;
+    private final TimerWheel.Callback nextPhaseJob = this::nextPhase;
+    private Level level;
+
+    public DoorSystem(Level level){
+        this.level = level;
+        x = new float[0];
+        z = new float[0];
+        yaw = new float[0];
+        closeX = new float[0];
+        closeZ = new float[0];
+        openX = new float[0];
+        openZ = new float[0];
+        xDoor = new boolean[0];
+        phase = new int[0];
+        phaseStart = new long[0];
+        phaseEnd = new long[0];
+        sliding = new int[0];
+    }
+
+    public int add(float posX, float posZ, float openPosX, float openPosZ, boolean isXDoor){
+        int handle = create();
+        int i = size() - 1;
+
+        x[i] = posX;
+        z[i] = posZ;
+        yaw[i] = isXDoor ? 90 : 0;
+        closeX[i] = posX;
+        closeZ[i] = posZ;
+        openX[i] = openPosX;
+        openZ[i] = openPosZ;
+        xDoor[i] = isXDoor;
+        phase[i] = PHASE_CLOSED;
+        phaseStart[i] = 0;
+        phaseEnd[i] = 0;
+
+        return handle;
+    }
+
+    @Override
+    protected void grow(int capacity){
+        x = Arrays.copyOf(x, capacity);
+        z = Arrays.copyOf(z, capacity);
+        yaw = Arrays.copyOf(yaw, capacity);
+        closeX = Arrays.copyOf(closeX, capacity);
+        closeZ = Arrays.copyOf(closeZ, capacity);
+        openX = Arrays.copyOf(openX, capacity);
+        openZ = Arrays.copyOf(openZ, capacity);
+        xDoor = Arrays.copyOf(xDoor, capacity);
+        phase = Arrays.copyOf(phase, capacity);
+        phaseStart = Arrays.copyOf(phaseStart, capacity);
+        phaseEnd = Arrays.copyOf(phaseEnd, capacity);
+        sliding = Arrays.copyOf(sliding, capacity);
+    }
+
+    @Override
+    protected void move(int from, int to){
+        x[to] = x[from];
+        z[to] = z[from];
+        yaw[to] = yaw[from];
+        closeX[to] = closeX[from];
+        closeZ[to] = closeZ[from];
+        openX[to] = openX[from];
+        openZ[to] = openZ[from];
+        xDoor[to] = xDoor[from];
+        phase[to] = phase[from];
+        phaseStart[to] = phaseStart[from];
+        phaseEnd[to] = phaseEnd[from];
+    }
+
+    /**
+     * Starts opening a closed door. Doors that are not closed carry on as they are.
+     */
+    public void open(int i){
+        if(phase[i] != PHASE_CLOSED)
+            return;
+
+        sliding[slidingCount++] = handleAt(i);
+        startPhase(i, PHASE_OPENING, TIME_TO_OPEN);
+    }
+
+    private void startPhase(int i, int next, double duration){
+        Match match = level.getMatch();
+        phase[i] = next;
+        phaseStart[i] = match.getTick();
+        phaseEnd[i] = match.getTick() + match.toTicks(duration);
+        level.getTimers().schedule(phaseEnd[i], nextPhaseJob, handleAt(i));
+    }
+
+    private void nextPhase(int handle){
+        int i = indexOf(handle);
+        if(i < 0)
+            return;
+
+        switch (phase[i]){
+            case PHASE_OPENING:
+                x[i] = openX[i];
+                z[i] = openZ[i];
+                stopSliding(handle);
+                startPhase(i, PHASE_OPEN, CLOSE_DELAY);
+                break;
+            case PHASE_OPEN:
+                sliding[slidingCount++] = handle;
+                startPhase(i, PHASE_CLOSING, TIME_TO_OPEN);
+                break;
+            case PHASE_CLOSING:
+                x[i] = closeX[i];
+                z[i] = closeZ[i];
+                stopSliding(handle);
+                phase[i] = PHASE_CLOSED;
+                break;
+        }
+    }
+
+    private void stopSliding(int handle){
+        for(int k = 0; k < slidingCount; k++){
+            if(sliding[k] == handle){
+                sliding[k] = sliding[--slidingCount];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Slides the opening and closing doors. The timers snap them into place at the end of each phase.
+     */
+    public void update(){
+        long tick = level.getMatch().getTick();
+
+        for(int k = 0; k < slidingCount; k++){
+            int i = indexOf(sliding[k]);
+            if(i < 0){
+                sliding[k--] = sliding[--slidingCount];
+                continue;
+            }
+
+            float lerpFactor = (float)(tick - phaseStart[i]) / (float)(phaseEnd[i] - phaseStart[i]);
+            if(phase[i] == PHASE_OPENING)
+                lerp(i, closeX[i], closeZ[i], openX[i], openZ[i], lerpFactor);
+            else
+                lerp(i, openX[i], openZ[i], closeX[i], closeZ[i], lerpFactor);
+        }
+    }
+
+    private void lerp(int i, float startX, float startZ, float endX, float endZ, float lerpFactor){
+        x[i] = startX + (endX - startX) * lerpFactor;
+        z[i] = startZ + (endZ - startZ) * lerpFactor;
+    }
+
+    /**
+     * Draws count doors, mvps holding their packed matrices from BatchTransform. Has to run on the GL thread.
+     */
+    public static void render(Shader shader, Material material, float[] mvps, int count){
+        if(count == 0)
+            return;
+
+        if(mesh == null){
+            // TODO: Add top/bottom face if you set height less than level height
+            Vertex[] vertices = new Vertex[]{new Vertex(new Vector3f(START,START,START), new Vector2f(0.5f,1)),
+                                            new Vertex(new Vector3f(START,HEIGHT,START), new Vector2f(0.5f,0.75f)),
+                                            new Vertex(new Vector3f(LENGTH,HEIGHT,START), new Vector2f(0.75f,0.75f)),
+                                            new Vertex(new Vector3f(LENGTH,START,START), new Vector2f(0.75f,1)),
+
+                                            new Vertex(new Vector3f(START,START,START), new Vector2f(0.73f,1)),
+                                            new Vertex(new Vector3f(START,HEIGHT,START), new Vector2f(0.73f,0.75f)),
+                                            new Vertex(new Vector3f(START,HEIGHT,WIDTH), new Vector2f(0.75f,0.75f)),
+                                            new Vertex(new Vector3f(START,START,WIDTH), new Vector2f(0.75f,1)),
+
+                                            new Vertex(new Vector3f(START,START,WIDTH), new Vector2f(0.5f,1)),
+                                            new Vertex(new Vector3f(START,HEIGHT,WIDTH), new Vector2f(0.5f,0.75f)),
+                                            new Vertex(new Vector3f(LENGTH,HEIGHT,WIDTH), new Vector2f(0.75f,0.75f)),
+                                            new Vertex(new Vector3f(LENGTH,START,WIDTH), new Vector2f(0.75f,1)),
+
+                                            new Vertex(new Vector3f(LENGTH,START,START), new Vector2f(0.73f,1)),
+                                            new Vertex(new Vector3f(LENGTH,HEIGHT,START), new Vector2f(0.73f,0.75f)),
+                                            new Vertex(new Vector3f(LENGTH,HEIGHT,WIDTH), new Vector2f(0.75f,0.75f)),
+                                            new Vertex(new Vector3f(LENGTH,START,WIDTH), new Vector2f(0.75f,1))
+            };
+
+            int[] indices = new int[]{0,1,2,
+                                        0,2,3,
+
+                                        6,5,4,
+                                        7,6,4,
+
+                                        10,9,8,
+                                        11,10,8,
+
+                                        12,13,14,
+                                        12,14,15
+
+            };
+
+            mesh = new Mesh(vertices, indices);
+        }
+
+        shader.bind();
+        for(int i = 0; i < count; i++){
+            shader.updateUniforms(mvps, i, material);
+            mesh.draw();
+        }
+        shader.unbind();
+    }
+
+    public float getSizeX(int i){
+        return xDoor[i] ? WIDTH : LENGTH;
+    }
+
+    public float getSizeZ(int i){
+        return xDoor[i] ? LENGTH : WIDTH;
+    }
+
+    /**
+     * True from open() until the door is fully closed again.
+     */
+    public boolean isOpening(int i){
+        return phase[i] != PHASE_CLOSED;
+    }
+
+    public int getPhase(int i){
+        return phase[i];
+    }
+
+    public boolean isXDoor(int i){
+        return xDoor[i];
+    }
+
+    public float[] getX(){
+        return x;
+    }
+
+    public float[] getZ(){
+        return z;
+    }
+
+    public float[] getYaw(){
+        return yaw;
+    }
+
+    public float[] getCloseX(){
+        return closeX;
+    }
+
+    public float[] getCloseZ(){
+        return closeZ;
+    }
+}
@@ -0,0 +1,142 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Dense struct of arrays storage for one kind of entity.
+ *
+ * Live entities always occupy indices 0 to size() - 1 of the component arrays, so systems can run
+ * straight loops over them. Removing an entity moves the last one into its slot, which means indices
+ * are not stable. Anything that has to remember an entity across ticks keeps its handle instead:
+ * a handle is the entity id plus a generation, and stops resolving once the entity is removed,
+ * even if the id gets reused.
+ *
+ * Subclasses own the component arrays and resize/move them in grow() and move().
+ */
+public abstract class EntityStore {
+    public static final int NULL_HANDLE = -1;
+
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7FF;       // Keeps handles positive
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private int[] denseToId;
+    private int[] idToDense;
+    private int[] generations;
+    private int[] freeIds;
+    private int freeCount;
+    private int nextId;
+
+    protected EntityStore(){
+        denseToId = new int[0];
+        idToDense = new int[0];
+        generations = new int[0];
+        freeIds = new int[0];
+    }
+
+    /**
+     * Adds an entity at index size() - 1 and returns its handle. The subclass fills in the components.
+     */
+    protected int create(){
+        if(size == denseToId.length)
+            ensureCapacity(Math.max(INITIAL_CAPACITY, size * 2));
+
+        int id;
+        if(freeCount > 0){
+            id = freeIds[--freeCount];
+        } else {
+            if(nextId > INDEX_MASK)
+                throw new IllegalStateException("EntityStore is full: more than " + (INDEX_MASK + 1) + " entities");
+            id = nextId++;
+        }
+
+        int index = size++;
+        denseToId[index] = id;
+        idToDense[id] = index;
+
+        return (generations[id] << INDEX_BITS) | id;
+    }
+
+    public void remove(int handle){
+        int index = indexOf(handle);
+        if(index < 0)
+            return;
+
+        removeAt(index);
+    }
+
+    /**
+     * Removes the entity at index by moving the last entity into its slot. Loops that remove while
+     * iterating should walk from the end.
+     */
+    public void removeAt(int index){
+        int id = denseToId[index];
+        int last = size - 1;
+
+        if(index != last){
+            move(last, index);
+            int lastId = denseToId[last];
+            denseToId[index] = lastId;
+            idToDense[lastId] = index;
+        }
+
+        size--;
+        generations[id] = (generations[id] + 1) & GENERATION_MASK;
+        freeIds[freeCount++] = id;
+    }
+
+    public void clear(){
+        for(int i = size - 1; i >= 0; i--)
+            removeAt(i);
+    }
+
+    /**
+     * Returns the current index of the entity, or -1 if it was removed.
+     */
+    public int indexOf(int handle){
+        if(handle < 0)
+            return -1;
+
+        int id = handle & INDEX_MASK;
+        if(id >= nextId || generations[id] != (handle >>> INDEX_BITS))
+            return -1;
+
+        return idToDense[id];
+    }
+
+    public boolean isAlive(int handle){
+        return indexOf(handle) >= 0;
+    }
+
+    public int handleAt(int index){
+        int id = denseToId[index];
+        return (generations[id] << INDEX_BITS) | id;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public void ensureCapacity(int capacity){
+        if(capacity <= denseToId.length)
+            return;
+
+        denseToId = Arrays.copyOf(denseToId, capacity);
+        idToDense = Arrays.copyOf(idToDense, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        freeIds = Arrays.copyOf(freeIds, capacity);
+        grow(capacity);
+    }
+
+    /**
+     * Resizes every component array to capacity, keeping the first size() entries.
+     */
+    protected abstract void grow(int capacity);
+
+    /**
+     * Copies every component of the entity at index from to index to.
+     */
+    protected abstract void move(int from, int to);
+}
@@ -0,0 +1,85 @@
+package com.base.engine;
+
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+
+/**
+ * Gameplay events (damage, doors, pickups, gunfire) on an LMAX Disruptor ring buffer.
+ *
+ * Any number of threads, e.g. the jobs of Level.update, publish into preallocated GameEvent slots without
+ * allocating or locking. The simulation then drains everything published so far in one batch through an
+ * EventPoller, so the systems producing events never touch each other's state.
+ *
+ * Events from parallel producers arrive in any order, so consumers have to apply them order-independently
+ * (sum damage, open doors idempotently) to keep the simulation deterministic.
+ */
+public class EventBus {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private final RingBuffer<GameEvent> ringBuffer;
+    private final EventPoller<GameEvent> poller;
+
+    public EventBus(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * capacity has to be a power of two, and large enough for all events published between two drains.
+     */
+    public EventBus(int capacity){
+        ringBuffer = RingBuffer.createMultiProducer(GameEvent::new, capacity);
+        poller = ringBuffer.newPoller();
+        ringBuffer.addGatingSequences(poller.getSequence());
+    }
+
+    public void publishDamagePlayer(int amount){
+        publish(GameEvent.DAMAGE_PLAYER, -1, amount, 0, 0, 0, false);
+    }
+
+    public void publishDamageMonster(int monsterHandle, int amount){
+        publish(GameEvent.DAMAGE_MONSTER, monsterHandle, amount, 0, 0, 0, false);
+    }
+
+    public void publishOpenDoors(float x, float y, float z, boolean tryExitLevel){
+        publish(GameEvent.OPEN_DOORS, -1, 0, x, y, z, tryExitLevel);
+    }
+
+    public void publishGunfire(float x, float y, float z){
+        publish(GameEvent.GUNFIRE, -1, 0, x, y, z, false);
+    }
+
+    public void publishPickupMedkit(int medkitHandle, int healAmount){
+        publish(GameEvent.PICKUP_MEDKIT, medkitHandle, healAmount, 0, 0, 0, false);
+    }
+
+    private void publish(int type, int target, int amount, float x, float y, float z, boolean flag){
+        long sequence;
+        try {
+            // Never block: the consumer is the simulation itself, which may be waiting on this producer
+            sequence = ringBuffer.tryNext();
+        }catch (InsufficientCapacityException e){
+            throw new IllegalStateException("EventBus: more than " + ringBuffer.getBufferSize() + " events between two drains");
+        }
+
+        try {
+            ringBuffer.get(sequence).set(type, target, amount, x, y, z, flag);
+        }finally {
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    /**
+     * Hands every event published so far to handler, in one batch, on the calling thread.
+     * Only one thread may drain at a time.
+     */
+    public void drain(EventPoller.Handler<GameEvent> handler){
+        try {
+            poller.poll(handler);
+        }catch (RuntimeException e){
+            throw e;
+        }catch (Exception e){
+            throw new IllegalStateException("EventBus: event handler failed", e);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Shortest paths from every cell of a grid to one target cell, shared by everything walking toward it.
+ * Looking up the next step from a cell is one array read, however many walkers there are.
+ *
+ * The field is built with Dijkstra over 8 neighbours (a bucket queue, as the edge costs are small
+ * integers), diagonals only where both cells beside them are free, so paths never cut wall corners.
+ * Building is time-sliced: update() settles at most a budget of cells per call into a back buffer,
+ * while lookups keep reading the last complete field. Once the back buffer is complete the two swap.
+ * A change of target or costs during a build is picked up by the next build, so every build finishes
+ * even if the target moves every tick.
+ */
+public class FlowField {
+    public static final int BLOCKED = -1;
+    public static final int NO_DIRECTION = -1;
+
+    public static final int COST_STRAIGHT = 5;
+    public static final int COST_DIAGONAL = 7;
+
+    // Steps toward the 8 neighbours, straight ones first
+    public static final int[] DIRECTION_X = new int[]{1, -1, 0, 0, 1, 1, -1, -1};
+    public static final int[] DIRECTION_Z = new int[]{0, 0, 1, -1, 1, -1, 1, -1};
+    private static final int[] OPPOSITE = new int[]{1, 0, 3, 2, 7, 6, 5, 4};
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final int width;
+    private final int height;
+    // Extra cost of entering each cell, or BLOCKED
+    private final int[] costs;
+    private final int maxEdgeCost;
+
+    // Front is complete and read by lookups, back is being built
+    private int[] frontDistance;
+    private byte[] frontDirection;
+    private int[] backDistance;
+    private byte[] backDirection;
+    private boolean ready;
+
+    // Bucket queue: cells queued at distance d are in bucket d % buckets.length
+    private int[][] buckets;
+    private int[] bucketSizes;
+    private int queued;
+    private int current;
+    private boolean building;
+
+    private int targetX;
+    private int targetZ;
+    private int buildTargetX;
+    private int buildTargetZ;
+    private boolean dirty;
+
+    private long builds;
+    private long buildTime;
+    private long lastBuildTime;
+
+    /**
+     * All cells start free. maxCellCost is the highest cost setCost() will be given.
+     */
+    public FlowField(int width, int height, int maxCellCost){
+        this.width = width;
+        this.height = height;
+        this.costs = new int[width * height];
+        this.maxEdgeCost = COST_DIAGONAL + maxCellCost;
+
+        frontDistance = new int[width * height];
+        frontDirection = new byte[width * height];
+        backDistance = new int[width * height];
+        backDirection = new byte[width * height];
+        Arrays.fill(frontDistance, UNREACHED);
+        Arrays.fill(frontDirection, (byte)NO_DIRECTION);
+
+        int bucketCount = Integer.highestOneBit(maxEdgeCost) * 2;
+        buckets = new int[bucketCount][16];
+        bucketSizes = new int[bucketCount];
+
+        targetX = -1;
+        targetZ = -1;
+    }
+
+    /**
+     * Extra cost of stepping onto the cell on top of the step itself, or BLOCKED.
+     */
+    public void setCost(int x, int z, int cost){
+        if(cost != BLOCKED && (cost < 0 || COST_DIAGONAL + cost > maxEdgeCost))
+            throw new IllegalArgumentException("FlowField: cost " + cost + " is out of range");
+
+        int cell = x + z * width;
+        if(costs[cell] != cost){
+            costs[cell] = cost;
+            dirty = true;
+        }
+    }
+
+    public int getCost(int x, int z){
+        return costs[x + z * width];
+    }
+
+    public void setTarget(int x, int z){
+        if(x != targetX || z != targetZ){
+            targetX = x;
+            targetZ = z;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Settles at most budget cells of the build in progress, starting a new one first if something
+     * changed. Returns true if a new field became ready.
+     */
+    public boolean update(int budget){
+        if(!building){
+            if(!dirty)
+                return false;
+            begin();
+        }
+
+        long start = Time.getTime();
+        boolean done = expand(budget);
+        buildTime += Time.getTime() - start;
+        lastBuildTime += Time.getTime() - start;
+
+        if(!done)
+            return false;
+
+        int[] distance = frontDistance;
+        frontDistance = backDistance;
+        backDistance = distance;
+        byte[] direction = frontDirection;
+        frontDirection = backDirection;
+        backDirection = direction;
+
+        building = false;
+        ready = true;
+        builds++;
+        return true;
+    }
+
+    /**
+     * Builds the whole field at once.
+     */
+    public void build(){
+        while(building || dirty)
+            update(Integer.MAX_VALUE);
+    }
+
+    private void begin(){
+        dirty = false;
+        building = true;
+        lastBuildTime = 0;
+        buildTargetX = targetX;
+        buildTargetZ = targetZ;
+
+        Arrays.fill(backDistance, UNREACHED);
+        Arrays.fill(backDirection, (byte)NO_DIRECTION);
+        Arrays.fill(bucketSizes, 0);
+        queued = 0;
+        current = 0;
+
+        if(buildTargetX < 0 || buildTargetZ < 0 || buildTargetX >= width || buildTargetZ >= height)
+            return;
+
+        int target = buildTargetX + buildTargetZ * width;
+        if(costs[target] == BLOCKED)
+            return;
+
+        backDistance[target] = 0;
+        push(target, 0);
+    }
+
+    private boolean expand(int budget){
+        int[] distance = backDistance;
+        byte[] direction = backDirection;
+
+        while(queued > 0 && budget > 0){
+            int bucket = current % buckets.length;
+            if(bucketSizes[bucket] == 0){
+                current++;
+                continue;
+            }
+
+            int cell = buckets[bucket][--bucketSizes[bucket]];
+            queued--;
+            // Stale entry, the cell was queued again with a shorter distance and already settled
+            if(distance[cell] != current)
+                continue;
+
+            budget--;
+            int x = cell % width;
+            int z = cell / width;
+
+            for(int d = 0; d < DIRECTION_X.length; d++){
+                int nx = x + DIRECTION_X[d];
+                int nz = z + DIRECTION_Z[d];
+                if(nx < 0 || nz < 0 || nx >= width || nz >= height)
+                    continue;
+
+                int neighbour = nx + nz * width;
+                if(costs[neighbour] == BLOCKED)
+                    continue;
+
+                int step = COST_STRAIGHT;
+                if(d >= 4){
+                    if(costs[nx + z * width] == BLOCKED || costs[x + nz * width] == BLOCKED)
+                        continue;
+                    step = COST_DIAGONAL;
+                }
+
+                // Walking toward the target the step goes from neighbour onto cell
+                int newDistance = current + step + costs[cell];
+                if(newDistance < distance[neighbour]){
+                    distance[neighbour] = newDistance;
+                    direction[neighbour] = (byte)OPPOSITE[d];
+                    push(neighbour, newDistance);
+                }
+            }
+        }
+
+        return queued == 0;
+    }
+
+    private void push(int cell, int distance){
+        int bucket = distance % buckets.length;
+        if(bucketSizes[bucket] == buckets[bucket].length)
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], bucketSizes[bucket] * 2);
+
+        buckets[bucket][bucketSizes[bucket]++] = cell;
+        queued++;
+    }
+
+    /**
+     * Index into DIRECTION_X / DIRECTION_Z of the next step from the cell toward the target, or
+     * NO_DIRECTION at the target, off the grid, and where the target can not be reached.
+     */
+    public int getDirection(int x, int z){
+        if(x < 0 || z < 0 || x >= width || z >= height)
+            return NO_DIRECTION;
+
+        return frontDirection[x + z * width];
+    }
+
+    /**
+     * Path cost from the cell to the target (COST_STRAIGHT per straight step), or -1 if it can not be reached.
+     */
+    public int getDistance(int x, int z){
+        if(x < 0 || z < 0 || x >= width || z >= height)
+            return -1;
+
+        int distance = frontDistance[x + z * width];
+        return distance == UNREACHED ? -1 : distance;
+    }
+
+    /**
+     * False until the first build finished.
+     */
+    public boolean isReady(){
+        return ready;
+    }
+
+    public boolean isBuilding(){
+        return building;
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    public long getBuilds(){
+        return builds;
+    }
+
+    /**
+     * Nanoseconds all the slices of the last build took together.
+     */
+    public long getLastBuildTime(){
+        return lastBuildTime;
+    }
+
+    public long getTotalBuildTime(){
+        return buildTime;
+    }
+}
@@ -0,0 +1,105 @@
+package com.base.engine;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL14.GL_DEPTH_COMPONENT24;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Offscreen render target. The attachments are allocated at the largest size we will render at,
+ * the window size, a smaller resolution just renders into the lower left corner of it. They are only
+ * allocated again when the window size changes.
+ */
+public class FrameBuffer {
+
+    private int fbo;
+    private int colorTexture;
+    private int depthBuffer;
+    private int width;
+    private int height;
+
+    private int viewportWidth;
+    private int viewportHeight;
+
+    public FrameBuffer(int width, int height){
+        fbo = glGenFramebuffers();
+        allocate(width, height);
+    }
+
+    /**
+     * Reallocates the attachments for a new largest size, after the window was resized.
+     */
+    public void resize(int width, int height){
+        if(width == this.width && height == this.height)
+            return;
+
+        glDeleteTextures(colorTexture);
+        glDeleteRenderbuffers(depthBuffer);
+        allocate(width, height);
+    }
+
+    private void allocate(int width, int height){
+        this.width = width;
+        this.height = height;
+
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+
+        colorTexture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, colorTexture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, 0);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorTexture, 0);
+
+        depthBuffer = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, depthBuffer);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT24, width, height);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depthBuffer);
+
+        if(glCheckFramebufferStatus(GL_FRAMEBUFFER) != GL_FRAMEBUFFER_COMPLETE){
+            System.err.println("Framebuffer creation failed: Framebuffer is incomplete.");
+            new Exception().printStackTrace();
+            System.exit(1);
+        }
+
+        glBindTexture(GL_TEXTURE_2D, 0);
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Redirects rendering into this framebuffer at the given resolution.
+     */
+    public void bind(int viewportWidth, int viewportHeight){
+        this.viewportWidth = Math.min(viewportWidth, width);
+        this.viewportHeight = Math.min(viewportHeight, height);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        glViewport(0, 0, this.viewportWidth, this.viewportHeight);
+    }
+
+    /**
+     * Upscales the last rendered image to the window and makes the window the render target again.
+     */
+    public void blitToScreen(int screenWidth, int screenHeight){
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, fbo);
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+        glBlitFramebuffer(0, 0, viewportWidth, viewportHeight, 0, 0, screenWidth, screenHeight, GL_COLOR_BUFFER_BIT, GL_LINEAR);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        glViewport(0, 0, screenWidth, screenHeight);
+    }
+
+    public void destroy(){
+        glDeleteFramebuffers(fbo);
+        glDeleteTextures(colorTexture);
+        glDeleteRenderbuffers(depthBuffer);
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+}
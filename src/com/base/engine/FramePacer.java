@@ -0,0 +1,181 @@
+package com.base.engine;
+
+/**
+ * Waits for fixed-rate deadlines, for frames or simulation ticks.
+ *
+ * Deadlines are scheduled from the previous deadline, not from when the wait returned, so the rate does not
+ * drift. Waiting sleeps while the deadline is further away than the spin threshold, which covers the sleep
+ * granularity of the OS, and busy waits for the rest. After a hitch at most maxCatchUp deadlines are reported
+ * as due, the others are dropped, so a slow tick can not snowball into ever more ticks.
+ *
+ * While throttled (window unfocused or minimized) the throttled rate is used instead of the target rate.
+ */
+public class FramePacer {
+    public static final long DEFAULT_SPIN_THRESHOLD = 2000000L;   // 2 ms
+
+    private final Clock clock;
+    private double targetRate;
+    private double throttledRate;
+    private int maxCatchUp;
+    private long spinThreshold;
+    private boolean throttled;
+
+    private long period;
+    private long nextDeadline;
+    private long lastDeadline;
+    private boolean started;
+
+    // Accuracy statistics, lateness is how long after its deadline a wait returned
+    private long waits;
+    private long totalLateness;
+    private long maxLateness;
+    private long droppedDeadlines;
+
+    /**
+     * targetRate and throttledRate are in deadlines per second, 0 or less means no limit.
+     */
+    public FramePacer(Clock clock, double targetRate, double throttledRate, int maxCatchUp){
+        if(maxCatchUp < 1)
+            throw new IllegalArgumentException("FramePacer: maxCatchUp has to be at least 1, got " + maxCatchUp);
+
+        this.clock = clock;
+        this.targetRate = targetRate;
+        this.throttledRate = throttledRate;
+        this.maxCatchUp = maxCatchUp;
+        this.spinThreshold = DEFAULT_SPIN_THRESHOLD;
+        this.throttled = false;
+        this.started = false;
+
+        updatePeriod();
+    }
+
+    /**
+     * Blocks until the next deadline and returns how many deadlines are due, between 1 and maxCatchUp.
+     * The last of them is getDeadline(), the ones before it are getPeriod() apart.
+     */
+    public int waitForNext(){
+        long now = clock.getTime();
+
+        if(!started || period == 0){
+            started = true;
+            nextDeadline = now;
+        }
+
+        long remaining = nextDeadline - now;
+        while(remaining > spinThreshold){
+            clock.sleep(remaining - spinThreshold);
+            remaining = nextDeadline - clock.getTime();
+        }
+        while(remaining > 0){
+            clock.spin();
+            remaining = nextDeadline - clock.getTime();
+        }
+
+        now = clock.getTime();
+        long lateness = now - nextDeadline;
+
+        int due = 1;
+        if(period > 0 && lateness >= period){
+            long behind = lateness / period;
+            if(behind >= maxCatchUp){
+                droppedDeadlines += behind + 1 - maxCatchUp;
+                due = maxCatchUp;
+                nextDeadline = now - (maxCatchUp - 1) * period;
+                lateness = 0;
+            }
+            else {
+                due = (int)behind + 1;
+            }
+        }
+
+        waits++;
+        totalLateness += lateness;
+        maxLateness = Math.max(maxLateness, lateness);
+
+        lastDeadline = nextDeadline + (due - 1) * period;
+        nextDeadline = lastDeadline + period;
+
+        return due;
+    }
+
+    /**
+     * Starts over from the current time, e.g. after a level load, so the time spent is not caught up on.
+     */
+    public void reset(){
+        started = false;
+    }
+
+    public void setThrottled(boolean throttled){
+        if(this.throttled == throttled)
+            return;
+
+        this.throttled = throttled;
+        updatePeriod();
+    }
+
+    public void setTargetRate(double targetRate){
+        this.targetRate = targetRate;
+        updatePeriod();
+    }
+
+    public void setThrottledRate(double throttledRate){
+        this.throttledRate = throttledRate;
+        updatePeriod();
+    }
+
+    public void setMaxCatchUp(int maxCatchUp){
+        if(maxCatchUp < 1)
+            throw new IllegalArgumentException("FramePacer: maxCatchUp has to be at least 1, got " + maxCatchUp);
+
+        this.maxCatchUp = maxCatchUp;
+    }
+
+    public void setSpinThreshold(long spinThreshold){
+        this.spinThreshold = spinThreshold;
+    }
+
+    private void updatePeriod(){
+        double rate = throttled ? throttledRate : targetRate;
+        long newPeriod = rate > 0 ? (long)(Time.SECOND / rate) : 0;
+
+        if(newPeriod != period){
+            period = newPeriod;
+            started = false;
+        }
+    }
+
+    public void resetStatistics(){
+        waits = 0;
+        totalLateness = 0;
+        maxLateness = 0;
+        droppedDeadlines = 0;
+    }
+
+    public long getDeadline(){
+        return lastDeadline;
+    }
+
+    public long getPeriod(){
+        return period;
+    }
+
+    public boolean isThrottled(){
+        return throttled;
+    }
+
+    public long getWaits(){
+        return waits;
+    }
+
+    public double getAverageLateness(){
+        return waits == 0 ? 0 : totalLateness / (double)waits;
+    }
+
+    public long getMaxLateness(){
+        return maxLateness;
+    }
+
+    public long getDroppedDeadlines(){
+        return droppedDeadlines;
+    }
+}
@@ -1,18 +1,58 @@
 package com.base.engine;
 
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 
-public class Game {
-
-    private static Level level;
-    //private static Player player;
-    private static boolean isRunning;
-    private static int levelNum = 0;
+import static org.lwjgl.glfw.GLFW.*;
 
+public class Game {
+    public static final int RENDERER_GL = 0;
+    public static final int RENDERER_RAYCAST = 1;      // RaycastRenderer on the CPU, without the gun
+
+    // Late latching turns the view by at most this many ticks past the newest snapshot
+    private static final int MAX_LATCH_TICKS = 2;
+
+    private static final float FIELD_OF_VIEW = 70f;
+    private static final float Z_NEAR = 0.01f;
+    private static final float Z_FAR = 1000f;
+
+    private final Match match;
+    private final boolean lateLatch;
+    private final int renderer;
+
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+
+    // Render thread only
+    private Snapshot previous;
+    private Snapshot interpolated;
+    private Camera renderCamera;
+    private Level renderedLevel;
+    private long frameInputTime = InputLatency.NO_INPUT;
+    private RaycastRenderer raycaster;
+    private SoftwareFrame softwareFrame;
+    private int width;
+    private int height;
+
+    /**
+     * The windowed game around match, which has to be configured (seed, recording, replay) but not started yet.
+     * With lateLatch the look keys are read again right before each frame is drawn, see render().
+     * renderer is RENDERER_GL or RENDERER_RAYCAST.
+     */
+    public Game(Match match, boolean lateLatch, int renderer){
+        if(renderer != RENDERER_GL && renderer != RENDERER_RAYCAST)
+            throw new IllegalArgumentException("Game: unknown renderer " + renderer);
 
-    public Game(){
         //Player player = new Player(new Vector3f(10,0.4f,8));
-        loadNextLevel();
+        this.match = match;
+        this.lateLatch = lateLatch;
+        this.renderer = renderer;
+        previous = new Snapshot();
+        interpolated = new Snapshot();
+        renderCamera = new Camera();
+
+        resize(Window.getWidth(), Window.getHeight());
+        Transform.setCamera(renderCamera);
+        match.start();
 
     }
 
@@ -21,37 +61,152 @@ public class Game {
     }
 
     public void input(){
-        level.input();
+        match.input();
+    }
+
+    /**
+     * Runs one simulation tick and publishes its snapshot. tickTime is when the tick was due.
+     */
+    public void update(long tickTime){
+        match.update();
+
+        Snapshot snapshot = snapshots.getWriteBuffer();
+        snapshot.capture(match.getLevel(), match.getTick(), tickTime, match.getInputTime());
+        snapshots.publish();
     }
 
-    public void update(){
-        if(isRunning)
-            level.update();
+    /**
+     * Writes out the recording, if one is running, and deletes the textures. Call on the GL thread after
+     * the simulation thread stopped, while the window still exists.
+     */
+    public void cleanUp(){
+        match.cleanUp();
+        if(renderedLevel != null)
+            renderedLevel.cleanUpRender();
+        if(softwareFrame != null)
+            softwareFrame.destroy();
+        TextureCache.destroy();
     }
 
-    public void render(){
-        if(isRunning)
-            level.render();
+    /**
+     * Draws the world as it was at renderTime, interpolated between the two snapshots around it.
+     * renderTime should trail the real time by one tick, so there usually is a snapshot after it.
+     *
+     * With late latching the view is not interpolated but taken from the newest snapshot and turned further
+     * by the look keys held right now, so turning shows up in the frame being drawn instead of two ticks later.
+     * Only the view matrix is latched, everything in the world still comes from the snapshots.
+     */
+    public void render(long renderTime){
+        if(snapshots.hasUpdate()){
+            previous.set(snapshots.getReadBuffer());
+            snapshots.update();
+        }
+
+        Snapshot current = snapshots.getReadBuffer();
+        if(current.getLevel() == null || !match.isRunning()){
+            frameInputTime = InputLatency.NO_INPUT;
+            return;
+        }
+
+        long tickLength = current.getTime() - previous.getTime();
+        float alpha = tickLength <= 0 ? 1 : (float)((renderTime - previous.getTime()) / (double)tickLength);
+        alpha = Math.max(0, Math.min(1, alpha));
+
+        interpolated.interpolate(previous, current, alpha);
+
+        renderCamera.setPos(interpolated.getCameraPos());
+        if(lateLatch){
+            latchLook(current);
+        }
+        else {
+            renderCamera.setOrientation(interpolated.getCameraOrientation());
+            frameInputTime = interpolated.getInputTime();
+        }
+        Transform.updateCamera(renderCamera);
+
+        Level level = interpolated.getLevel();
+        if(renderer == RENDERER_RAYCAST)
+            renderRaycast();
+        else
+            level.render(interpolated);
+
+        // The level before it is gone for good, its textures are only kept if this one shares them
+        if(renderedLevel != level){
+            if(renderedLevel != null)
+                renderedLevel.cleanUpRender();
+            renderedLevel = level;
+        }
+    }
+
+    /**
+     * Follows the window size: the projection takes its aspect ratio and the raycaster draws at it.
+     * Render thread only, before render().
+     */
+    public void resize(int width, int height){
+        if(width == this.width && height == this.height)
+            return;
+
+        this.width = width;
+        this.height = height;
+        Transform.setProjection(FIELD_OF_VIEW, width, height, Z_NEAR, Z_FAR);
+        if(raycaster != null){
+            raycaster.resize(width, height);
+            softwareFrame.resize(width, height);
+        }
+    }
+
+    private void renderRaycast(){
+        if(raycaster == null){
+            ForkJoinPool pool = match.getPool() != null ? match.getPool() : ForkJoinPool.commonPool();
+            raycaster = new RaycastRenderer(width, height, pool);
+            softwareFrame = new SoftwareFrame(raycaster.getWidth(), raycaster.getHeight());
+        }
 
+        raycaster.render(interpolated, renderCamera);
+        softwareFrame.draw(raycaster.getPixels(), Window.getWidth(), Window.getHeight());
     }
 
-    public static void setIsRunning(boolean setVal){
-        isRunning = setVal;
+    // Turns the render camera the way Player.input() would for the time since the newest snapshot's tick
+    private void latchLook(Snapshot current){
+        long elapsed = Math.max(0, Time.getTime() - current.getTime());
+        double seconds = Math.min(elapsed / (double)Time.SECOND, MAX_LATCH_TICKS * match.getDelta());
+        float rotAmount = (float)(Player.LOOK_SPEED * seconds);
+
+        renderCamera.setOrientation(current.getCameraOrientation());
+        if(Input.getKey(GLFW_KEY_UP))
+            renderCamera.rotateX(-rotAmount);
+        if(Input.getKey(GLFW_KEY_DOWN))
+            renderCamera.rotateX(rotAmount);
+        if(Input.getKey(GLFW_KEY_LEFT))
+            renderCamera.rotateY(-rotAmount);
+        if(Input.getKey(GLFW_KEY_RIGHT))
+            renderCamera.rotateY(rotAmount);
+
+        // The frame shows every look key change up to now, even the ones no tick has seen yet
+        long inputTime = current.getInputTime();
+        inputTime = latchTime(inputTime, GLFW_KEY_UP);
+        inputTime = latchTime(inputTime, GLFW_KEY_DOWN);
+        inputTime = latchTime(inputTime, GLFW_KEY_LEFT);
+        frameInputTime = latchTime(inputTime, GLFW_KEY_RIGHT);
     }
 
-    public static void loadNextLevel(){
-        levelNum++;
-        level = new Level("Level"+levelNum+".png", "WolfCollection.png");
+    private static long latchTime(long inputTime, int key){
+        long keyTime = Input.getKeyTime(key);
+        return keyTime != 0 && keyTime > inputTime ? keyTime : inputTime;
+    }
+
+    /**
+     * When the newest input event shown by the last frame render() drew happened, or InputLatency.NO_INPUT.
+     */
+    public long getFrameInputTime(){
+        return frameInputTime;
+    }
 
-        Transform.setProjection(70f, Window.getWidth(), Window.getHeight(), 0.01f, 1000f);
-        Transform.setCamera(level.getPlayer().getCamera());
-        isRunning = true;
+    public int getRenderer(){
+        return renderer;
     }
-   // public static Player getPlayer(){
-     //   return player;
- //   }
 
-    public static Level getLevel(){
-        return level;
+    public Match getMatch(){
+        return match;
     }
 }
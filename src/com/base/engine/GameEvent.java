@@ -0,0 +1,61 @@
+package com.base.engine;
+
+/**
+ * One slot of the EventBus ring. Slots are allocated once and overwritten by every event published
+ * into them, so only the fields of the event's type are meaningful.
+ */
+public class GameEvent {
+    public static final int DAMAGE_PLAYER = 1;      // amount
+    public static final int DAMAGE_MONSTER = 2;     // target (monster handle), amount
+    public static final int OPEN_DOORS = 3;         // x, y, z, flag (try to exit the level)
+    public static final int PICKUP_MEDKIT = 4;      // target (medkit handle), amount (healing)
+    public static final int GUNFIRE = 5;            // x, y, z
+
+    private int type;
+    private int target;
+    private int amount;
+    private float x;
+    private float y;
+    private float z;
+    private boolean flag;
+
+    public GameEvent set(int type, int target, int amount, float x, float y, float z, boolean flag){
+        this.type = type;
+        this.target = target;
+        this.amount = amount;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.flag = flag;
+
+        return this;
+    }
+
+    public int getType(){
+        return type;
+    }
+
+    public int getTarget(){
+        return target;
+    }
+
+    public int getAmount(){
+        return amount;
+    }
+
+    public float getX(){
+        return x;
+    }
+
+    public float getY(){
+        return y;
+    }
+
+    public float getZ(){
+        return z;
+    }
+
+    public boolean getFlag(){
+        return flag;
+    }
+}
@@ -0,0 +1,75 @@
+package com.base.engine;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * Measures how long the GPU spent on the commands between begin() and end(), with GL_TIME_ELAPSED
+ * queries. Results arrive a few frames late, so the queries rotate through a small ring and poll()
+ * only picks up the ones that are done, without ever stalling the pipeline.
+ *
+ * Needs OpenGL 3.3 or ARB_timer_query, see isSupported(). GL thread only.
+ */
+public class GpuTimer {
+    private static final int QUERIES = 4;
+
+    private final boolean supported;
+    private final int[] queries = new int[QUERIES];
+    // Queries begun but not read yet, the oldest at first
+    private int first;
+    private int pending;
+    private boolean running;
+
+    public GpuTimer(){
+        GLCapabilities capabilities = GL.getCapabilities();
+        supported = capabilities.OpenGL33 || capabilities.GL_ARB_timer_query;
+        if(supported)
+            glGenQueries(queries);
+    }
+
+    public boolean isSupported(){
+        return supported;
+    }
+
+    /**
+     * Starts timing. Skipped if all queries are still waiting for their results.
+     */
+    public void begin(){
+        if(!supported || pending == QUERIES)
+            return;
+
+        glBeginQuery(GL_TIME_ELAPSED, queries[(first + pending) % QUERIES]);
+        running = true;
+    }
+
+    public void end(){
+        if(!running)
+            return;
+
+        glEndQuery(GL_TIME_ELAPSED);
+        pending++;
+        running = false;
+    }
+
+    /**
+     * GPU time of the oldest finished measurement in nanoseconds, or -1 if there is none or it is not done yet.
+     */
+    public long poll(){
+        if(pending == 0 || glGetQueryObjecti(queries[first], GL_QUERY_RESULT_AVAILABLE) == GL_FALSE)
+            return -1;
+
+        long elapsed = glGetQueryObjectui64(queries[first], GL_QUERY_RESULT);
+        first = (first + 1) % QUERIES;
+        pending--;
+        return elapsed;
+    }
+
+    public void destroy(){
+        if(supported)
+            glDeleteQueries(queries);
+    }
+}
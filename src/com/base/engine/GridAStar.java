@@ -0,0 +1,210 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * A* and Dijkstra over a cost grid, with the same moves and costs as FlowField: 8 neighbours,
+ * COST_STRAIGHT or COST_DIAGONAL per step plus the cost of the cell stepped onto, no cutting of
+ * wall corners. A search can be limited to a rectangle of the grid.
+ *
+ * The scratch arrays are sized for the whole grid once and reset by stamping, so searches do not
+ * allocate or clear anything. Not thread safe, every thread needs its own instance.
+ */
+public class GridAStar {
+    private final int width;
+    private final int height;
+    private final int[] costs;
+
+    private final int[] g;
+    private final int[] parent;
+    private final int[] seen;
+    private final int[] closed;
+    private int stamp;
+
+    private int[] heapCells;
+    private int[] heapKeys;
+    private int heapSize;
+
+    private int start;
+    private long expanded;
+
+    /**
+     * costs holds the extra cost of entering each cell, or FlowField.BLOCKED, row by row. It is read,
+     * not copied, so changes to it apply to the next search.
+     */
+    public GridAStar(int width, int height, int[] costs){
+        this.width = width;
+        this.height = height;
+        this.costs = costs;
+
+        g = new int[width * height];
+        parent = new int[width * height];
+        seen = new int[width * height];
+        closed = new int[width * height];
+        heapCells = new int[64];
+        heapKeys = new int[64];
+    }
+
+    public int search(int start, int goal){
+        return search(start, goal, 0, 0, width, height, false);
+    }
+
+    /**
+     * Searches from start to goal without leaving minX to maxX - 1, minZ to maxZ - 1, and returns the cost of
+     * the cheapest path, or -1 if there is none. With goal -1 it searches everything reachable (Dijkstra),
+     * getCost() then tells the cost of every cell.
+     *
+     * A reverse search finds the costs of the paths from every cell to start instead of from start.
+     */
+    public int search(int start, int goal, int minX, int minZ, int maxX, int maxZ, boolean reverse){
+        if(++stamp == 0){
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            stamp = 1;
+        }
+
+        this.start = start;
+        heapSize = 0;
+        if(costs[start] == FlowField.BLOCKED)
+            return -1;
+
+        int goalX = goal >= 0 ? goal % width : 0;
+        int goalZ = goal >= 0 ? goal / width : 0;
+
+        g[start] = 0;
+        parent[start] = -1;
+        seen[start] = stamp;
+        push(start, goal >= 0 ? heuristic(start % width, start / width, goalX, goalZ) : 0);
+
+        while(heapSize > 0){
+            int cell = pop();
+            if(closed[cell] == stamp)
+                continue;
+            closed[cell] = stamp;
+            expanded++;
+
+            if(cell == goal)
+                return g[cell];
+
+            int x = cell % width;
+            int z = cell / width;
+            for(int d = 0; d < FlowField.DIRECTION_X.length; d++){
+                int nx = x + FlowField.DIRECTION_X[d];
+                int nz = z + FlowField.DIRECTION_Z[d];
+                if(nx < minX || nz < minZ || nx >= maxX || nz >= maxZ)
+                    continue;
+
+                int neighbour = nx + nz * width;
+                if(costs[neighbour] == FlowField.BLOCKED || closed[neighbour] == stamp)
+                    continue;
+
+                int step = FlowField.COST_STRAIGHT;
+                if(d >= 4){
+                    if(costs[nx + z * width] == FlowField.BLOCKED || costs[x + nz * width] == FlowField.BLOCKED)
+                        continue;
+                    step = FlowField.COST_DIAGONAL;
+                }
+
+                // Going backwards the step enters cell, not neighbour
+                int newG = g[cell] + step + (reverse ? costs[cell] : costs[neighbour]);
+                if(seen[neighbour] != stamp || newG < g[neighbour]){
+                    seen[neighbour] = stamp;
+                    g[neighbour] = newG;
+                    parent[neighbour] = cell;
+                    push(neighbour, goal >= 0 ? newG + heuristic(nx, nz, goalX, goalZ) : newG);
+                }
+            }
+        }
+
+        return goal >= 0 ? -1 : 0;
+    }
+
+    /**
+     * Octile distance, never more than the real cost since every step costs at least its base cost.
+     */
+    public static int heuristic(int x, int z, int goalX, int goalZ){
+        int dx = Math.abs(x - goalX);
+        int dz = Math.abs(z - goalZ);
+        int diagonal = Math.min(dx, dz);
+
+        return FlowField.COST_DIAGONAL * diagonal + FlowField.COST_STRAIGHT * (Math.max(dx, dz) - diagonal);
+    }
+
+    /**
+     * Cost of the cheapest path to (or from, after a reverse search) the cell found by the last search,
+     * or -1 if the search did not reach it.
+     */
+    public int getCost(int cell){
+        return closed[cell] == stamp ? g[cell] : -1;
+    }
+
+    /**
+     * Cells of the path the last search found from start to cell, both included.
+     */
+    public int[] getPath(int cell){
+        if(closed[cell] != stamp)
+            return null;
+
+        int length = 1;
+        for(int c = cell; c != start; c = parent[c])
+            length++;
+
+        int[] path = new int[length];
+        for(int c = cell, i = length - 1; i >= 0; c = parent[c], i--)
+            path[i] = c;
+
+        return path;
+    }
+
+    /**
+     * Cells expanded by all searches so far.
+     */
+    public long getExpanded(){
+        return expanded;
+    }
+
+    private void push(int cell, int key){
+        if(heapSize == heapCells.length){
+            heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+        }
+
+        int i = heapSize++;
+        while(i > 0){
+            int up = (i - 1) >>> 1;
+            if(heapKeys[up] <= key)
+                break;
+            heapCells[i] = heapCells[up];
+            heapKeys[i] = heapKeys[up];
+            i = up;
+        }
+        heapCells[i] = cell;
+        heapKeys[i] = key;
+    }
+
+    private int pop(){
+        int result = heapCells[0];
+        int cell = heapCells[--heapSize];
+        int key = heapKeys[heapSize];
+
+        int i = 0;
+        while(true){
+            int child = i * 2 + 1;
+            if(child >= heapSize)
+                break;
+            if(child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child])
+                child++;
+            if(heapKeys[child] >= key)
+                break;
+            heapCells[i] = heapCells[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        if(heapSize > 0){
+            heapCells[i] = cell;
+            heapKeys[i] = key;
+        }
+
+        return result;
+    }
+}
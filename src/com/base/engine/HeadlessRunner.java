@@ -0,0 +1,120 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Runs the simulation without a window, GLFW or GL: loads the first level, plays N ticks as fast as
+ * possible in deterministic mode and reports ticks per second and per-tick latency percentiles.
+ * Nothing is rendered, so it also runs on machines without a display or GPU.
+ *
+ * Arguments:
+ *     -ticks n         ticks to run, defaults to 10000, or the length of the replay
+ *     -warmup n        ticks to run before measuring, defaults to 1000
+ *     -seed n          seed of the run and of the scripted input, defaults to 1
+ *     -replay file     input from a recording instead of the script, checking its state hashes
+ */
+public class HeadlessRunner {
+    private final Match match;
+    private final ScriptedInput script;
+
+    public HeadlessRunner(long seed, ReplayPlayer replay){
+        // A replay has to run with the exact tick length it was recorded with, or game time drifts apart
+        double delta = replay != null ? replay.getTickLength() / (double)Time.SECOND : 1.0 / MainComponent.TICK_RATE;
+        match = new Match(seed, delta, true);
+        if(replay != null)
+            match.setReplay(replay);
+
+        script = replay == null ? new ScriptedInput(seed) : null;
+        match.start();
+    }
+
+    /**
+     * Runs one tick and returns how long it took in nanoseconds.
+     */
+    public long tick(){
+        long start = Time.getTime();
+
+        if(script != null)
+            script.apply(match);
+
+        match.input();
+        match.update();
+
+        return Time.getTime() - start;
+    }
+
+    public Match getMatch(){
+        return match;
+    }
+
+    public void cleanUp(){
+        match.cleanUp();
+    }
+
+    public static void main(String[] args){
+        long ticks = -1;
+        long warmup = 1000;
+        long seed = 1;
+        String replayFile = null;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-ticks"))
+                ticks = Long.parseLong(args[i + 1]);
+            else if(args[i].equals("-warmup"))
+                warmup = Long.parseLong(args[i + 1]);
+            else if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else if(args[i].equals("-replay"))
+                replayFile = args[i + 1];
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        ReplayPlayer replay = replayFile != null ? new ReplayPlayer(replayFile) : null;
+        if(replay != null){
+            // A replay has to start at its first tick, so there is no warmup
+            warmup = 0;
+            if(ticks < 0)
+                ticks = replay.getTotalTicks();
+        }
+        if(ticks < 0)
+            ticks = 10000;
+
+        HeadlessRunner runner = new HeadlessRunner(seed, replay);
+
+        for(long i = 0; i < warmup; i++)
+            runner.tick();
+
+        long[] latencies = new long[(int)ticks];
+        long start = Time.getTime();
+        for(int i = 0; i < ticks; i++)
+            latencies[i] = runner.tick();
+        long total = Time.getTime() - start;
+
+        runner.cleanUp();
+
+        Arrays.sort(latencies);
+        System.out.println(ticks + " ticks in " + String.format("%.3f", total / (double)Time.SECOND) + " s, "
+                + String.format("%.0f", ticks / (total / (double)Time.SECOND)) + " ticks/s");
+        System.out.println("tick latency p50 " + micros(percentile(latencies, 0.5))
+                + " us, p90 " + micros(percentile(latencies, 0.9))
+                + " us, p99 " + micros(percentile(latencies, 0.99))
+                + " us, max " + micros(latencies.length > 0 ? latencies[latencies.length - 1] : 0) + " us");
+        Level level = runner.getMatch().getLevel();
+        System.out.println("final state hash " + Long.toHexString(level.getStateHash()));
+        if(level.getUpdateGraph() != null)
+            System.out.println(level.getUpdateGraph().getTimings());
+        System.out.println(level.getMonsters().getLodStats());
+    }
+
+    static long percentile(long[] sorted, double p){
+        if(sorted.length == 0)
+            return 0;
+
+        return sorted[Math.min(sorted.length - 1, (int)(p * sorted.length))];
+    }
+
+    static String micros(long nanos){
+        return String.format("%.1f", nanos / 1000.0);
+    }
+}
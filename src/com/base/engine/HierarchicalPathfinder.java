@@ -0,0 +1,550 @@
+package com.base.engine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Point to point paths on large grids with HPA* (hierarchical path-finding A*).
+ *
+ * The grid is cut into square clusters. Where free cells face each other across the border of two
+ * clusters there is an entrance, with one transition in its middle, or one at each end for long ones.
+ * The cells of the transitions are the nodes of an abstract graph: neighbouring clusters are joined by
+ * the transitions, and the nodes inside a cluster by the cost of their shortest path within it, which
+ * is precomputed. A query connects start and goal to the nodes of their clusters, runs A* over the
+ * small abstract graph, and returns the nodes it passes as waypoints. Only refine() expands them into
+ * cells, a cluster at a time, so a walker can refine just the next leg when it needs it.
+ *
+ * Paths are a few percent longer than the optimum, as they always cross borders at transitions.
+ *
+ * Changing a cell cost (a door opening or closing) marks its cluster dirty. Dirty clusters and their
+ * neighbours, whose entrances may have changed, are rebuilt before the next query, the rest of the
+ * graph stays. Waypoints are cached per start and goal cell with LRU eviction; a cached path is dropped
+ * once a cluster it passes through was rebuilt.
+ *
+ * Uses the moves and costs of FlowField. Not thread safe.
+ */
+public class HierarchicalPathfinder {
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    // Entrances at least this wide get a transition at each end instead of one in the middle
+    private static final int LONG_ENTRANCE = 6;
+
+    private static class Cluster {
+        int minX;
+        int minZ;
+        int maxX;
+        int maxZ;
+
+        // Node cells, the cells they cross into the neighbouring clusters, and the costs between them
+        int[] nodes = new int[8];
+        int[][] transitions = new int[8][];
+        int[] transitionCounts = new int[8];
+        int nodeCount;
+        int[] intra = new int[0];
+
+        boolean dirty;
+        long version;
+    }
+
+    private static class CachedPath {
+        final int[] waypoints;
+        final int[] clusters;
+        final long version;
+
+        CachedPath(int[] waypoints, int[] clusters, long version){
+            this.waypoints = waypoints;
+            this.clusters = clusters;
+            this.version = version;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersZ;
+    private final int[] costs;
+    private final int maxCellCost;
+    private final Cluster[] clusters;
+    private final GridAStar local;
+    private boolean dirty;
+    private long version;
+
+    // Abstract search scratch, stamped like in GridAStar
+    private final int[] g;
+    private final int[] parent;
+    private final int[] seen;
+    private final int[] closed;
+    private int stamp;
+    private int[] heapCells;
+    private int[] heapKeys;
+    private int heapSize;
+    private int[] startCosts;
+    private int[] goalCosts;
+
+    private final LinkedHashMap<Long, CachedPath> cache;
+    private long queries;
+    private long cacheHits;
+    private long rebuiltClusters;
+
+    /**
+     * All cells start free. maxCellCost is the highest cost setCost() will be given.
+     */
+    public HierarchicalPathfinder(int width, int height, int clusterSize, int maxCellCost, int cacheSize){
+        if(clusterSize < 2)
+            throw new IllegalArgumentException("HierarchicalPathfinder: clusterSize has to be at least 2, got " + clusterSize);
+
+        this.width = width;
+        this.height = height;
+        this.clusterSize = clusterSize;
+        this.maxCellCost = maxCellCost;
+        this.costs = new int[width * height];
+        this.clustersX = (width + clusterSize - 1) / clusterSize;
+        this.clustersZ = (height + clusterSize - 1) / clusterSize;
+        this.local = new GridAStar(width, height, costs);
+
+        clusters = new Cluster[clustersX * clustersZ];
+        for(int i = 0; i < clusters.length; i++){
+            Cluster cluster = new Cluster();
+            cluster.minX = (i % clustersX) * clusterSize;
+            cluster.minZ = (i / clustersX) * clusterSize;
+            cluster.maxX = Math.min(width, cluster.minX + clusterSize);
+            cluster.maxZ = Math.min(height, cluster.minZ + clusterSize);
+            cluster.dirty = true;
+            clusters[i] = cluster;
+        }
+        dirty = true;
+
+        g = new int[width * height];
+        parent = new int[width * height];
+        seen = new int[width * height];
+        closed = new int[width * height];
+        heapCells = new int[64];
+        heapKeys = new int[64];
+        startCosts = new int[8];
+        goalCosts = new int[8];
+
+        cache = new LinkedHashMap<Long, CachedPath>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedPath> eldest){
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Extra cost of stepping onto the cell on top of the step itself, or FlowField.BLOCKED.
+     */
+    public void setCost(int x, int z, int cost){
+        if(cost != FlowField.BLOCKED && (cost < 0 || cost > maxCellCost))
+            throw new IllegalArgumentException("HierarchicalPathfinder: cost " + cost + " is out of range");
+
+        int cell = x + z * width;
+        if(costs[cell] == cost)
+            return;
+
+        costs[cell] = cost;
+        clusters[clusterOf(cell)].dirty = true;
+        dirty = true;
+    }
+
+    public int getCost(int x, int z){
+        return costs[x + z * width];
+    }
+
+    public int clusterOf(int cell){
+        return (cell % width) / clusterSize + ((cell / width) / clusterSize) * clustersX;
+    }
+
+    /**
+     * Rebuilds the dirty clusters and their neighbours. Queries do this on their own, calling it
+     * up front just moves the cost out of the first query.
+     */
+    public void update(){
+        if(!dirty)
+            return;
+        dirty = false;
+
+        boolean[] rebuild = new boolean[clusters.length];
+        for(int i = 0; i < clusters.length; i++){
+            if(!clusters[i].dirty)
+                continue;
+            clusters[i].dirty = false;
+
+            // The entrances on the borders are shared with the neighbours
+            int cx = i % clustersX;
+            int cz = i / clustersX;
+            rebuild[i] = true;
+            if(cx > 0) rebuild[i - 1] = true;
+            if(cx < clustersX - 1) rebuild[i + 1] = true;
+            if(cz > 0) rebuild[i - clustersX] = true;
+            if(cz < clustersZ - 1) rebuild[i + clustersX] = true;
+        }
+
+        version++;
+        for(int i = 0; i < clusters.length; i++){
+            if(rebuild[i]){
+                findTransitions(i);
+                findIntraCosts(clusters[i]);
+                clusters[i].version = version;
+                rebuiltClusters++;
+            }
+        }
+    }
+
+    private void findTransitions(int index){
+        Cluster cluster = clusters[index];
+        cluster.nodeCount = 0;
+
+        int cx = index % clustersX;
+        int cz = index / clustersX;
+        // Left and right borders run along z, top and bottom along x
+        if(cx > 0)
+            findTransitions(cluster, cluster.minX, cluster.minZ, -1, 0, 0, 1, cluster.maxZ - cluster.minZ);
+        if(cx < clustersX - 1)
+            findTransitions(cluster, cluster.maxX - 1, cluster.minZ, 1, 0, 0, 1, cluster.maxZ - cluster.minZ);
+        if(cz > 0)
+            findTransitions(cluster, cluster.minX, cluster.minZ, 0, -1, 1, 0, cluster.maxX - cluster.minX);
+        if(cz < clustersZ - 1)
+            findTransitions(cluster, cluster.minX, cluster.maxZ - 1, 0, 1, 1, 0, cluster.maxX - cluster.minX);
+    }
+
+    /**
+     * Walks a border of the cluster from x, z along alongX, alongZ for length cells, looking across it
+     * in acrossX, acrossZ. Both clusters of a border walk it in the same direction, so they pick the
+     * same transitions.
+     */
+    private void findTransitions(Cluster cluster, int x, int z, int acrossX, int acrossZ, int alongX, int alongZ, int length){
+        int runStart = -1;
+        for(int k = 0; k <= length; k++){
+            boolean open = false;
+            if(k < length){
+                int inside = (x + alongX * k) + (z + alongZ * k) * width;
+                int outside = inside + acrossX + acrossZ * width;
+                open = costs[inside] != FlowField.BLOCKED && costs[outside] != FlowField.BLOCKED;
+            }
+
+            if(open && runStart < 0){
+                runStart = k;
+            }
+            else if(!open && runStart >= 0){
+                int runEnd = k - 1;
+                if(runEnd - runStart + 1 >= LONG_ENTRANCE){
+                    addTransition(cluster, x, z, acrossX, acrossZ, alongX, alongZ, runStart);
+                    addTransition(cluster, x, z, acrossX, acrossZ, alongX, alongZ, runEnd);
+                } else {
+                    addTransition(cluster, x, z, acrossX, acrossZ, alongX, alongZ, (runStart + runEnd) / 2);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private void addTransition(Cluster cluster, int x, int z, int acrossX, int acrossZ, int alongX, int alongZ, int k){
+        int inside = (x + alongX * k) + (z + alongZ * k) * width;
+        int outside = inside + acrossX + acrossZ * width;
+
+        // A corner cell can lead into two neighbours, it is still one node
+        int node = indexOfNode(cluster, inside);
+        if(node < 0){
+            if(cluster.nodeCount == cluster.nodes.length){
+                cluster.nodes = Arrays.copyOf(cluster.nodes, cluster.nodeCount * 2);
+                cluster.transitions = Arrays.copyOf(cluster.transitions, cluster.nodeCount * 2);
+                cluster.transitionCounts = Arrays.copyOf(cluster.transitionCounts, cluster.nodeCount * 2);
+            }
+            node = cluster.nodeCount++;
+            cluster.nodes[node] = inside;
+            if(cluster.transitions[node] == null)
+                cluster.transitions[node] = new int[2];
+            cluster.transitionCounts[node] = 0;
+        }
+
+        cluster.transitions[node][cluster.transitionCounts[node]++] = outside;
+    }
+
+    private static int indexOfNode(Cluster cluster, int cell){
+        for(int i = 0; i < cluster.nodeCount; i++)
+            if(cluster.nodes[i] == cell)
+                return i;
+
+        return -1;
+    }
+
+    private void findIntraCosts(Cluster cluster){
+        int count = cluster.nodeCount;
+        if(cluster.intra.length < count * count)
+            cluster.intra = new int[count * count];
+
+        for(int a = 0; a < count; a++){
+            local.search(cluster.nodes[a], -1, cluster.minX, cluster.minZ, cluster.maxX, cluster.maxZ, false);
+            for(int b = 0; b < count; b++)
+                cluster.intra[a * count + b] = local.getCost(cluster.nodes[b]);
+        }
+    }
+
+    /**
+     * Waypoints from start to goal (cell indices, both included), consecutive ones either in the same
+     * cluster or across a border, or null if the goal can not be reached. The returned array is shared
+     * with the cache and must not be modified.
+     */
+    public int[] findPath(int start, int goal){
+        update();
+        queries++;
+
+        long key = ((long)start << 32) | goal;
+        CachedPath cached = cache.get(key);
+        if(cached != null){
+            if(isValid(cached)){
+                cacheHits++;
+                return cached.waypoints;
+            }
+            cache.remove(key);
+        }
+
+        int[] waypoints = search(start, goal);
+        if(waypoints != null){
+            int[] touched = new int[waypoints.length];
+            for(int i = 0; i < waypoints.length; i++)
+                touched[i] = clusterOf(waypoints[i]);
+            cache.put(key, new CachedPath(waypoints, touched, version));
+        }
+
+        return waypoints;
+    }
+
+    private boolean isValid(CachedPath cached){
+        for(int i = 0; i < cached.clusters.length; i++)
+            if(clusters[cached.clusters[i]].version > cached.version)
+                return false;
+
+        return true;
+    }
+
+    private int[] search(int start, int goal){
+        if(costs[start] == FlowField.BLOCKED || costs[goal] == FlowField.BLOCKED)
+            return null;
+        if(start == goal)
+            return new int[]{start};
+
+        int startClusterIndex = clusterOf(start);
+        int goalClusterIndex = clusterOf(goal);
+        Cluster startCluster = clusters[startClusterIndex];
+        Cluster goalCluster = clusters[goalClusterIndex];
+
+        if(startClusterIndex == goalClusterIndex
+                && local.search(start, goal, startCluster.minX, startCluster.minZ, startCluster.maxX, startCluster.maxZ, false) >= 0)
+            return new int[]{start, goal};
+
+        // Connect start and goal to the nodes of their clusters
+        if(startCosts.length < startCluster.nodeCount)
+            startCosts = new int[startCluster.nodeCount];
+        local.search(start, -1, startCluster.minX, startCluster.minZ, startCluster.maxX, startCluster.maxZ, false);
+        for(int i = 0; i < startCluster.nodeCount; i++)
+            startCosts[i] = local.getCost(startCluster.nodes[i]);
+
+        if(goalCosts.length < goalCluster.nodeCount)
+            goalCosts = new int[goalCluster.nodeCount];
+        local.search(goal, -1, goalCluster.minX, goalCluster.minZ, goalCluster.maxX, goalCluster.maxZ, true);
+        for(int i = 0; i < goalCluster.nodeCount; i++)
+            goalCosts[i] = local.getCost(goalCluster.nodes[i]);
+
+        if(++stamp == 0){
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            stamp = 1;
+        }
+        heapSize = 0;
+
+        int goalX = goal % width;
+        int goalZ = goal / width;
+
+        g[start] = 0;
+        parent[start] = -1;
+        seen[start] = stamp;
+        push(start, GridAStar.heuristic(start % width, start / width, goalX, goalZ));
+
+        while(heapSize > 0){
+            int cell = pop();
+            if(closed[cell] == stamp)
+                continue;
+            closed[cell] = stamp;
+
+            if(cell == goal)
+                return waypoints(goal);
+
+            if(cell == start){
+                for(int i = 0; i < startCluster.nodeCount; i++)
+                    if(startCosts[i] >= 0)
+                        relax(cell, startCluster.nodes[i], startCosts[i], goalX, goalZ);
+            }
+
+            int clusterIndex = clusterOf(cell);
+            Cluster cluster = clusters[clusterIndex];
+            int node = indexOfNode(cluster, cell);
+            if(node < 0)
+                continue;
+
+            int count = cluster.nodeCount;
+            for(int i = 0; i < count; i++){
+                int cost = cluster.intra[node * count + i];
+                if(i != node && cost >= 0)
+                    relax(cell, cluster.nodes[i], cost, goalX, goalZ);
+            }
+
+            for(int i = 0; i < cluster.transitionCounts[node]; i++){
+                int target = cluster.transitions[node][i];
+                relax(cell, target, FlowField.COST_STRAIGHT + costs[target], goalX, goalZ);
+            }
+
+            if(clusterIndex == goalClusterIndex && goalCosts[node] >= 0)
+                relax(cell, goal, goalCosts[node], goalX, goalZ);
+        }
+
+        return null;
+    }
+
+    private void relax(int from, int to, int cost, int goalX, int goalZ){
+        if(closed[to] == stamp)
+            return;
+
+        int newG = g[from] + cost;
+        if(seen[to] != stamp || newG < g[to]){
+            seen[to] = stamp;
+            g[to] = newG;
+            parent[to] = from;
+            push(to, newG + GridAStar.heuristic(to % width, to / width, goalX, goalZ));
+        }
+    }
+
+    private int[] waypoints(int goal){
+        int length = 0;
+        for(int c = goal; c >= 0; c = parent[c])
+            length++;
+
+        int[] result = new int[length];
+        for(int c = goal, i = length - 1; i >= 0; c = parent[c], i--)
+            result[i] = c;
+
+        return result;
+    }
+
+    /**
+     * Cells from one waypoint to the next, both included.
+     */
+    public int[] refineLeg(int from, int to){
+        int fromCluster = clusterOf(from);
+        if(fromCluster != clusterOf(to))
+            return new int[]{from, to};
+
+        Cluster cluster = clusters[fromCluster];
+        if(local.search(from, to, cluster.minX, cluster.minZ, cluster.maxX, cluster.maxZ, false) < 0)
+            throw new IllegalStateException("HierarchicalPathfinder: no path from " + from + " to " + to + " inside their cluster");
+
+        return local.getPath(to);
+    }
+
+    /**
+     * Every cell along the waypoints, start and goal included.
+     */
+    public int[] refine(int[] waypoints){
+        int[] path = new int[]{waypoints[0]};
+        int length = 1;
+
+        for(int i = 0; i + 1 < waypoints.length; i++){
+            int[] leg = refineLeg(waypoints[i], waypoints[i + 1]);
+            if(length + leg.length - 1 > path.length)
+                path = Arrays.copyOf(path, Math.max(path.length * 2, length + leg.length - 1));
+            System.arraycopy(leg, 1, path, length, leg.length - 1);
+            length += leg.length - 1;
+        }
+
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * Cost of walking the cells of a path, as GridAStar would count it.
+     */
+    public int getPathCost(int[] path){
+        int cost = 0;
+        for(int i = 1; i < path.length; i++){
+            boolean diagonal = path[i] % width != path[i - 1] % width && path[i] / width != path[i - 1] / width;
+            cost += (diagonal ? FlowField.COST_DIAGONAL : FlowField.COST_STRAIGHT) + costs[path[i]];
+        }
+
+        return cost;
+    }
+
+    public int getClusterCount(){
+        return clusters.length;
+    }
+
+    public int getNodeCount(){
+        int count = 0;
+        for(Cluster cluster : clusters)
+            count += cluster.nodeCount;
+
+        return count;
+    }
+
+    public long getQueries(){
+        return queries;
+    }
+
+    public long getCacheHits(){
+        return cacheHits;
+    }
+
+    public long getRebuiltClusters(){
+        return rebuiltClusters;
+    }
+
+    public void clearCache(){
+        cache.clear();
+    }
+
+    private void push(int cell, int key){
+        if(heapSize == heapCells.length){
+            heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+        }
+
+        int i = heapSize++;
+        while(i > 0){
+            int up = (i - 1) >>> 1;
+            if(heapKeys[up] <= key)
+                break;
+            heapCells[i] = heapCells[up];
+            heapKeys[i] = heapKeys[up];
+            i = up;
+        }
+        heapCells[i] = cell;
+        heapKeys[i] = key;
+    }
+
+    private int pop(){
+        int result = heapCells[0];
+        int cell = heapCells[--heapSize];
+        int key = heapKeys[heapSize];
+
+        int i = 0;
+        while(true){
+            int child = i * 2 + 1;
+            if(child >= heapSize)
+                break;
+            if(child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child])
+                child++;
+            if(heapKeys[child] >= key)
+                break;
+            heapCells[i] = heapCells[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        if(heapSize > 0){
+            heapCells[i] = cell;
+            heapKeys[i] = key;
+        }
+
+        return result;
+    }
+}
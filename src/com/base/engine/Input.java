@@ -1,13 +1,19 @@
 package com.base.engine;
 
 import org.lwjgl.BufferUtils;
-import org.lwjgl.glfw.GLFWKeyCallback;
 
 import java.nio.DoubleBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import static org.lwjgl.glfw.GLFW.*;
 
-public class Input extends GLFWKeyCallback {
+/**
+ * Keyboard and mouse state. The key and mouse button state is plain Java, fed by the window's callbacks,
+ * so it can be read without GLFW being loaded at all. The callbacks also publish every event into the
+ * InputQueue, which the match turns into an InputState once per tick.
+ */
+public class Input {
 
     private static float newX = Window.getWidth()/2;
     private static float newY = Window.getHeight()/2;
@@ -21,22 +27,75 @@ public class Input extends GLFWKeyCallback {
     public static float deltaX;
     public static float deltaY;
 
-    public static int[] keys = new int[65535];
+    // Written by the key callback on the main thread, read by the simulation thread.
+    // glfwGetKey may only be called from the main thread, so the key state is taken from here instead.
+    public static final AtomicIntegerArray keys = new AtomicIntegerArray(GLFW_KEY_LAST + 1);
+    // When each key last changed, in Time.getTime() nanoseconds
+    public static final AtomicLongArray keyTimes = new AtomicLongArray(GLFW_KEY_LAST + 1);
+    public static final AtomicIntegerArray mouseButtons = new AtomicIntegerArray(GLFW_MOUSE_BUTTON_LAST + 1);
     public static float xpos, ypos;
-    @Override
-    public void invoke(long window, int key, int scancode, int action, int mods) {
-        keys[key] = action;
+
+    private static final InputQueue queue = new InputQueue();
+
+    /**
+     * Called by the key callback.
+     */
+    public static void setKeyState(int key, int action){
+        long time = Time.getTime();
+        if(key >= 0 && key <= GLFW_KEY_LAST){
+            keyTimes.set(key, time);
+            keys.set(key, action);
+        }
+        queue.publishKey(key, action, time);
+    }
+
+    /**
+     * Called by the mouse button callback.
+     */
+    public static void setMouseButtonState(int button, int action){
+        if(button >= 0 && button <= GLFW_MOUSE_BUTTON_LAST)
+            mouseButtons.set(button, action);
+        queue.publishMouseButton(button, action);
+    }
+
+    /**
+     * Called by the cursor position callback.
+     */
+    public static void setCursorPosition(double x, double y){
+        queue.publishCursor(x, y);
+    }
+
+    /**
+     * Events from the window callbacks. Only the one match that is played on this window may drain it.
+     */
+    public static InputQueue getQueue(){
+        return queue;
+    }
+
+    /**
+     * Raw GLFW state of a key: GLFW_RELEASE, GLFW_PRESS or GLFW_REPEAT.
+     */
+    public static int getKeyState(int keyCode){
+        return keys.get(keyCode);
+    }
+
+    /**
+     * When the key last went down or up, in Time.getTime() nanoseconds, or 0 if it never did.
+     */
+    public static long getKeyTime(int keyCode){
+        return keyTimes.get(keyCode);
     }
 
     public static boolean getKey(int keyCode){
-        if(glfwGetKey(Window.windowid, keyCode) == GLFW_PRESS || glfwGetKey(Window.windowid, keyCode) == GLFW_REPEAT){
+        int state = getKeyState(keyCode);
+        if(state == GLFW_PRESS || state == GLFW_REPEAT){
             return true;
         }
         return false;
     }
 
     public static boolean getKeyPress(int keyCode){
-        if(glfwGetKey(Window.windowid, keyCode) == GLFW_PRESS){
+        if(getKeyState(keyCode) == GLFW_PRESS){
             return true;
         }
         return false;
@@ -51,7 +110,7 @@ public class Input extends GLFWKeyCallback {
     }
 
     public static boolean getMouseButton(int buttonCode){
-        int state = glfwGetMouseButton(Window.windowid, buttonCode);
+        int state = mouseButtons.get(buttonCode);
         if(state == GLFW_PRESS){
             return true;
         }
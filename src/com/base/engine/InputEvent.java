@@ -0,0 +1,59 @@
+package com.base.engine;
+
+/**
+ * One slot of the InputQueue ring. Slots are allocated once and overwritten by every event published
+ * into them, so only the fields of the event's type are meaningful.
+ */
+public class InputEvent {
+    public static final int KEY = 1;                // code (GLFW key), action
+    public static final int MOUSE_BUTTON = 2;       // code (GLFW mouse button), action
+    public static final int CURSOR = 3;             // x, y
+
+    private int type;
+    private int code;
+    private int action;
+    private double x;
+    private double y;
+    private long time;
+
+    public InputEvent set(int type, int code, int action, double x, double y, long time){
+        this.type = type;
+        this.code = code;
+        this.action = action;
+        this.x = x;
+        this.y = y;
+        this.time = time;
+
+        return this;
+    }
+
+    public int getType(){
+        return type;
+    }
+
+    public int getCode(){
+        return code;
+    }
+
+    /**
+     * GLFW_PRESS, GLFW_REPEAT or GLFW_RELEASE.
+     */
+    public int getAction(){
+        return action;
+    }
+
+    public double getX(){
+        return x;
+    }
+
+    public double getY(){
+        return y;
+    }
+
+    /**
+     * When the window system reported the event, in Time.getTime() nanoseconds.
+     */
+    public long getTime(){
+        return time;
+    }
+}
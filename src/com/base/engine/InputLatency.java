@@ -0,0 +1,53 @@
+package com.base.engine;
+
+/**
+ * Input to photon latency: how long it took from an input event until the first frame showing its
+ * effect was handed to the display.
+ *
+ * Every frame is tagged with the time of the newest input event that went into it, either through the
+ * tick that produced its snapshot or through late latching. When the frame is swapped the difference to
+ * the swap time is recorded, but only once per event: later frames that show nothing newer are not
+ * input latency, they are just the world standing still.
+ *
+ * Only takes times, never reads a clock itself, so it measures a ManualClock run the same way as the
+ * real window. Not thread safe, it belongs to the render thread.
+ */
+public class InputLatency {
+    // Tag of a frame that saw no input yet
+    public static final long NO_INPUT = Long.MIN_VALUE;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long lastInputTime = NO_INPUT;
+    private long lastSwapTime;
+    private long frames;
+
+    /**
+     * Reports a frame that was swapped at swapTime and showed input up to inputTime.
+     */
+    public void frameSwapped(long inputTime, long swapTime){
+        frames++;
+        lastSwapTime = swapTime;
+
+        if(inputTime == NO_INPUT || inputTime <= lastInputTime)
+            return;
+
+        histogram.record(swapTime - inputTime);
+        lastInputTime = inputTime;
+    }
+
+    public LatencyHistogram getHistogram(){
+        return histogram;
+    }
+
+    public long getLastSwapTime(){
+        return lastSwapTime;
+    }
+
+    public long getFrames(){
+        return frames;
+    }
+
+    public String getSummary(){
+        return "input to photon latency: " + histogram.getSummary() + " over " + frames + " frames";
+    }
+}
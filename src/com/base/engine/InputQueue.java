@@ -0,0 +1,102 @@
+package com.base.engine;
+
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+
+/**
+ * Keyboard and mouse events on a single producer LMAX Disruptor ring buffer, from the GLFW callbacks on
+ * the main thread to whichever thread ticks the match, without locks or allocation.
+ *
+ * Every event carries the time it was reported at, and every event is kept, so a key pressed and
+ * released between two ticks still shows up in the next tick's InputState. The window thread must never
+ * wait on the simulation, so when the ring is full new events are dropped and counted instead.
+ */
+public class InputQueue {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final RingBuffer<InputEvent> ringBuffer;
+    private final EventPoller<InputEvent> poller;
+    // Only written by the producer
+    private volatile long dropped;
+
+    public InputQueue(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * capacity has to be a power of two.
+     */
+    public InputQueue(int capacity){
+        ringBuffer = RingBuffer.createSingleProducer(InputEvent::new, capacity);
+        poller = ringBuffer.newPoller();
+        ringBuffer.addGatingSequences(poller.getSequence());
+    }
+
+    public void publishKey(int key, int action){
+        publishKey(key, action, Time.getTime());
+    }
+
+    /**
+     * time is when the event happened, in Time.getTime() nanoseconds or on whatever clock the consumer measures with.
+     */
+    public void publishKey(int key, int action, long time){
+        publish(InputEvent.KEY, key, action, 0, 0, time);
+    }
+
+    public void publishMouseButton(int button, int action){
+        publishMouseButton(button, action, Time.getTime());
+    }
+
+    public void publishMouseButton(int button, int action, long time){
+        publish(InputEvent.MOUSE_BUTTON, button, action, 0, 0, time);
+    }
+
+    public void publishCursor(double x, double y){
+        publishCursor(x, y, Time.getTime());
+    }
+
+    public void publishCursor(double x, double y, long time){
+        publish(InputEvent.CURSOR, 0, 0, x, y, time);
+    }
+
+    /**
+     * Only ever called from one thread.
+     */
+    private void publish(int type, int code, int action, double x, double y, long time){
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        }catch (InsufficientCapacityException e){
+            dropped++;
+            return;
+        }
+
+        try {
+            ringBuffer.get(sequence).set(type, code, action, x, y, time);
+        }finally {
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    /**
+     * Hands every event published so far to handler, oldest first, on the calling thread.
+     * Only one thread may drain at a time.
+     */
+    public void drain(EventPoller.Handler<InputEvent> handler){
+        try {
+            poller.poll(handler);
+        }catch (RuntimeException e){
+            throw e;
+        }catch (Exception e){
+            throw new IllegalStateException("InputQueue: event handler failed", e);
+        }
+    }
+
+    /**
+     * Events lost to a full ring so far.
+     */
+    public long getDropped(){
+        return dropped;
+    }
+}
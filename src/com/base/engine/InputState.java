@@ -0,0 +1,177 @@
+package com.base.engine;
+
+import com.lmax.disruptor.EventPoller;
+
+import java.util.Arrays;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * What the keyboard and mouse did during one tick, built from the InputQueue at the start of the tick
+ * and fixed until the next one, so every query is a plain array read.
+ *
+ * Besides whether a key is held there are edges: pressed if it went down during the tick, released if
+ * it went up. A tap that went down and up again between two ticks is both pressed and released without
+ * being held, so it is never lost.
+ */
+public class InputState {
+    public static final int KEY_COUNT = GLFW_KEY_LAST + 1;
+    public static final int MOUSE_BUTTON_COUNT = GLFW_MOUSE_BUTTON_LAST + 1;
+
+    private final boolean[] keyHeld = new boolean[KEY_COUNT];
+    private final boolean[] keyPressed = new boolean[KEY_COUNT];
+    private final boolean[] keyReleased = new boolean[KEY_COUNT];
+    private final boolean[] buttonHeld = new boolean[MOUSE_BUTTON_COUNT];
+    private final boolean[] buttonPressed = new boolean[MOUSE_BUTTON_COUNT];
+    private final boolean[] buttonReleased = new boolean[MOUSE_BUTTON_COUNT];
+
+    private double cursorX;
+    private double cursorY;
+    private double cursorDeltaX;
+    private double cursorDeltaY;
+    private boolean cursorKnown;
+
+    private int events;
+    private long oldestEventTime;
+    private long newestEventTime;
+    private long dropped;
+
+    private final EventPoller.Handler<InputEvent> handler = this::handleEvent;
+
+    /**
+     * Starts a new tick with everything queue received since the last one.
+     */
+    public void update(InputQueue queue){
+        Arrays.fill(keyPressed, false);
+        Arrays.fill(keyReleased, false);
+        Arrays.fill(buttonPressed, false);
+        Arrays.fill(buttonReleased, false);
+        cursorDeltaX = 0;
+        cursorDeltaY = 0;
+        events = 0;
+
+        queue.drain(handler);
+
+        // Lost events may have left keys stuck, take what is held from the callbacks' own record
+        if(queue.getDropped() != dropped){
+            dropped = queue.getDropped();
+            for(int key = 0; key < KEY_COUNT; key++)
+                keyHeld[key] = Input.getKeyState(key) != GLFW_RELEASE;
+        }
+    }
+
+    private boolean handleEvent(InputEvent event, long sequence, boolean endOfBatch){
+        if(events == 0)
+            oldestEventTime = event.getTime();
+        newestEventTime = event.getTime();
+        events++;
+
+        switch (event.getType()){
+            case InputEvent.KEY:
+                if(event.getCode() >= 0 && event.getCode() < KEY_COUNT)
+                    apply(keyHeld, keyPressed, keyReleased, event.getCode(), event.getAction());
+                break;
+            case InputEvent.MOUSE_BUTTON:
+                if(event.getCode() >= 0 && event.getCode() < MOUSE_BUTTON_COUNT)
+                    apply(buttonHeld, buttonPressed, buttonReleased, event.getCode(), event.getAction());
+                break;
+            case InputEvent.CURSOR:
+                if(cursorKnown){
+                    cursorDeltaX += event.getX() - cursorX;
+                    cursorDeltaY += event.getY() - cursorY;
+                }
+                cursorX = event.getX();
+                cursorY = event.getY();
+                cursorKnown = true;
+                break;
+        }
+
+        return true;
+    }
+
+    private static void apply(boolean[] held, boolean[] pressed, boolean[] released, int code, int action){
+        if(action == GLFW_PRESS){
+            if(!held[code])
+                pressed[code] = true;
+            held[code] = true;
+        }
+        else if(action == GLFW_RELEASE){
+            if(held[code])
+                released[code] = true;
+            held[code] = false;
+        }
+    }
+
+    /**
+     * The key as a raw GLFW state, the way recordings and scripted input store it: GLFW_PRESS on the
+     * tick it went down, GLFW_REPEAT while it stays down, GLFW_RELEASE otherwise.
+     */
+    public int getKeyState(int key){
+        if(keyPressed[key])
+            return GLFW_PRESS;
+
+        return keyHeld[key] ? GLFW_REPEAT : GLFW_RELEASE;
+    }
+
+    public boolean isKeyHeld(int key){
+        return keyHeld[key];
+    }
+
+    public boolean isKeyPressed(int key){
+        return keyPressed[key];
+    }
+
+    public boolean isKeyReleased(int key){
+        return keyReleased[key];
+    }
+
+    public boolean isButtonHeld(int button){
+        return buttonHeld[button];
+    }
+
+    public boolean isButtonPressed(int button){
+        return buttonPressed[button];
+    }
+
+    public boolean isButtonReleased(int button){
+        return buttonReleased[button];
+    }
+
+    public double getCursorX(){
+        return cursorX;
+    }
+
+    public double getCursorY(){
+        return cursorY;
+    }
+
+    /**
+     * How far the cursor moved during the tick, in window coordinates.
+     */
+    public double getCursorDeltaX(){
+        return cursorDeltaX;
+    }
+
+    public double getCursorDeltaY(){
+        return cursorDeltaY;
+    }
+
+    /**
+     * Number of events that went into this tick.
+     */
+    public int getEventCount(){
+        return events;
+    }
+
+    /**
+     * When the first event of this tick was reported, in Time.getTime() nanoseconds. Only meaningful if
+     * getEventCount() is not 0.
+     */
+    public long getOldestEventTime(){
+        return oldestEventTime;
+    }
+
+    public long getNewestEventTime(){
+        return newestEventTime;
+    }
+}
@@ -0,0 +1,244 @@
+package com.base.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of jobs with dependencies between them, run on JobSystem's pool as often as needed.
+ *
+ * Every job counts its unfinished dependencies. Jobs without dependencies are started right away, and a
+ * job that finishes starts every dependent whose count dropped to zero, on the same worker, so other
+ * workers steal them only when they are idle. Independent jobs therefore run concurrently, dependent
+ * ones strictly after each other.
+ *
+ * Usage:
+ *     JobGraph graph = new JobGraph("update");
+ *     Job a = graph.add("a", this::a);
+ *     Job b = graph.add("b", this::b, a);
+ *     graph.run();
+ */
+public class JobGraph {
+
+    public static class Job {
+        private final JobGraph graph;
+        private final String name;
+        private final Runnable work;
+        private final int dependencyCount;
+        private final List<Job> dependents;
+        private final AtomicInteger pending;
+        private final Runnable task;
+
+        private long lastTime;
+        private long totalTime;
+        private long runs;
+
+        private Job(JobGraph graph, String name, Runnable work, int dependencyCount){
+            this.graph = graph;
+            this.name = name;
+            this.work = work;
+            this.dependencyCount = dependencyCount;
+            this.dependents = new ArrayList<Job>();
+            this.pending = new AtomicInteger();
+            this.task = this::runTask;
+        }
+
+        /**
+         * A fresh ForkJoinTask for every run: the one of the previous run may still be finishing up
+         * inside the pool after jobDone() already released the caller, so it can not be reinitialized.
+         */
+        private ForkJoinTask<?> newTask(){
+            return ForkJoinTask.adapt(task);
+        }
+
+        private void runTask(){
+            execute();
+
+            for(int i = 0; i < dependents.size(); i++){
+                Job dependent = dependents.get(i);
+                if(dependent.pending.decrementAndGet() == 0)
+                    dependent.newTask().fork();
+            }
+
+            graph.jobDone();
+        }
+
+        private void execute(){
+            long start = Time.getTime();
+            try {
+                if(graph.failure == null)
+                    work.run();
+            }catch (Throwable e){
+                graph.fail(this, e);
+            }
+
+            lastTime = Time.getTime() - start;
+            totalTime += lastTime;
+            runs++;
+        }
+
+        public String getName(){
+            return name;
+        }
+
+        /**
+         * Nanoseconds the last run of the job took.
+         */
+        public long getLastTime(){
+            return lastTime;
+        }
+
+        public long getTotalTime(){
+            return totalTime;
+        }
+
+        public long getRuns(){
+            return runs;
+        }
+    }
+
+    private final String name;
+    private final List<Job> jobs;
+    private final AtomicInteger remaining;
+    private final Object lock;
+
+    private volatile Throwable failure;
+    private volatile Job failedJob;
+    private long lastTime;
+
+    public JobGraph(String name){
+        this.name = name;
+        this.jobs = new ArrayList<Job>();
+        this.remaining = new AtomicInteger();
+        this.lock = new Object();
+    }
+
+    /**
+     * Adds a job that runs after all of dependencies finished. Dependencies have to be added first,
+     * so the order jobs are added in is always a valid serial order.
+     */
+    public Job add(String jobName, Runnable work, Job... dependencies){
+        Job job = new Job(this, jobName, work, dependencies.length);
+        for(Job dependency : dependencies){
+            if(dependency.graph != this)
+                throw new IllegalArgumentException("JobGraph " + name + ": " + dependency.name + " belongs to another graph");
+            dependency.dependents.add(job);
+        }
+
+        jobs.add(job);
+        return job;
+    }
+
+    public void run(){
+        run(JobSystem.getPool());
+    }
+
+    /**
+     * Runs all jobs once on pool (or the calling thread if null) and returns when they are done.
+     * Rethrows the failure of the first job that threw, jobs after a failure are skipped.
+     */
+    public void run(ForkJoinPool pool){
+        long start = Time.getTime();
+
+        failure = null;
+        failedJob = null;
+
+        if(pool == null){
+            for(int i = 0; i < jobs.size(); i++)
+                jobs.get(i).execute();
+        }
+        else {
+            remaining.set(jobs.size());
+            for(int i = 0; i < jobs.size(); i++){
+                Job job = jobs.get(i);
+                job.pending.set(job.dependencyCount);
+            }
+
+            boolean inPool = ForkJoinTask.getPool() == pool;
+            for(int i = 0; i < jobs.size(); i++){
+                Job job = jobs.get(i);
+                if(job.dependencyCount == 0){
+                    if(inPool)
+                        job.newTask().fork();
+                    else
+                        pool.execute(job.newTask());
+                }
+            }
+
+            awaitJobs();
+        }
+
+        lastTime = Time.getTime() - start;
+
+        if(failure != null)
+            throw new IllegalStateException("JobGraph " + name + ": job " + failedJob.name + " failed", failure);
+    }
+
+    private void awaitJobs(){
+        try {
+            // Lets the pool start a spare worker if this is one of its own threads
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    synchronized (lock){
+                        while(remaining.get() > 0)
+                            lock.wait();
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable(){
+                    return remaining.get() == 0;
+                }
+            });
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("JobGraph " + name + ": interrupted while waiting for jobs", e);
+        }
+    }
+
+    private void jobDone(){
+        if(remaining.decrementAndGet() == 0){
+            synchronized (lock){
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void fail(Job job, Throwable e){
+        synchronized (lock){
+            if(failure == null){
+                failedJob = job;
+                failure = e;
+            }
+        }
+    }
+
+    public List<Job> getJobs(){
+        return jobs;
+    }
+
+    /**
+     * Nanoseconds the last run of the whole graph took, from start until the last job finished.
+     */
+    public long getLastTime(){
+        return lastTime;
+    }
+
+    /**
+     * Average time per run of every job, for profiling output.
+     */
+    public String getTimings(){
+        StringBuilder builder = new StringBuilder(name);
+        for(int i = 0; i < jobs.size(); i++){
+            Job job = jobs.get(i);
+            double average = job.runs == 0 ? 0 : job.totalTime / (double)job.runs / 1000.0;
+            builder.append("\n    ").append(job.name).append(": ").append(String.format("%.1f", average)).append(" us");
+        }
+
+        return builder.toString();
+    }
+}
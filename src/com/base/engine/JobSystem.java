@@ -0,0 +1,85 @@
+package com.base.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The pool all engine jobs run on, and parallel-for over entity ranges. Task graphs are built with JobGraph.
+ *
+ * With the pool set to null everything runs on the calling thread, which is handy for debugging and
+ * for comparing against the parallel results.
+ */
+public class JobSystem {
+
+    public interface RangeJob {
+        /**
+         * Processes the entities start to end - 1.
+         */
+        void run(int start, int end);
+    }
+
+    // Not the common pool: on a single core machine that has no workers, and jobs handed to it from
+    // outside the pool would never run
+    private static volatile ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    public static ForkJoinPool getPool(){
+        return pool;
+    }
+
+    public static void setPool(ForkJoinPool pool){
+        JobSystem.pool = pool;
+    }
+
+    public static void parallelFor(int start, int end, int batchSize, RangeJob job){
+        parallelFor(start, end, batchSize, job, pool);
+    }
+
+    /**
+     * Splits start to end - 1 into batches of at most batchSize and runs them on the pool, work stealing
+     * taking care of the balancing. Returns when all batches are done.
+     */
+    public static void parallelFor(int start, int end, int batchSize, RangeJob job, ForkJoinPool pool){
+        if(batchSize < 1)
+            throw new IllegalArgumentException("JobSystem: batchSize has to be at least 1, got " + batchSize);
+
+        if(pool == null || end - start <= batchSize){
+            if(end > start)
+                job.run(start, end);
+            return;
+        }
+
+        RangeTask task = new RangeTask(start, end, batchSize, job);
+        if(ForkJoinTask.getPool() == pool)
+            task.invoke();
+        else
+            pool.invoke(task);
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int batchSize;
+        private final RangeJob job;
+
+        RangeTask(int start, int end, int batchSize, RangeJob job){
+            this.start = start;
+            this.end = end;
+            this.batchSize = batchSize;
+            this.job = job;
+        }
+
+        @Override
+        protected void compute(){
+            if(end - start <= batchSize){
+                job.run(start, end);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new RangeTask(start, middle, batchSize, job), new RangeTask(middle, end, batchSize, job));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.base.engine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Counts durations in nanoseconds into buckets and answers percentiles from them, without keeping the
+ * samples, so it can record every frame of a long run in constant memory and without allocating.
+ *
+ * The buckets are log-linear: every power of two is split into SUB_BUCKETS equal buckets, so a reported
+ * percentile is at most 1 / SUB_BUCKETS above the real value, from nanoseconds to centuries.
+ *
+ * Not thread safe.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Adds one duration. Negative ones, from clocks that stepped back, count as 0.
+     */
+    public void record(long nanos){
+        if(nanos < 0)
+            nanos = 0;
+
+        counts[bucketOf(nanos)]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    public void reset(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    private static int bucketOf(long nanos){
+        if(nanos < SUB_BUCKETS)
+            return (int)nanos;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int)(nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest duration that falls into the bucket
+    private static long upperBound(int bucket){
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Duration that the fraction p of the recorded ones stayed under, 0 if nothing was recorded.
+     */
+    public long getPercentile(double p){
+        if(count == 0)
+            return 0;
+
+        long rank = Math.min(count - 1, (long)(p * count));
+        long seen = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++){
+            seen += counts[bucket];
+            if(seen > rank)
+                return Math.min(max, upperBound(bucket));
+        }
+
+        return max;
+    }
+
+    public long getCount(){
+        return count;
+    }
+
+    public long getMax(){
+        return max;
+    }
+
+    public long getMean(){
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * One line for logs, in milliseconds.
+     */
+    public String getSummary(){
+        return count + " samples, p50 " + millis(getPercentile(0.5))
+                + " ms, p90 " + millis(getPercentile(0.9))
+                + " ms, p99 " + millis(getPercentile(0.99))
+                + " ms, max " + millis(max) + " ms";
+    }
+
+    /**
+     * Writes the non-empty buckets as CSV, one line per bucket: its upper bound in nanoseconds, its count,
+     * and the fraction of samples up to and including it.
+     */
+    public void export(String fileName){
+        try(PrintWriter out = new PrintWriter(fileName, "UTF-8")){
+            out.println("upper_ns,count,cumulative");
+            long seen = 0;
+            for(int bucket = 0; bucket < BUCKETS; bucket++){
+                if(counts[bucket] == 0)
+                    continue;
+
+                seen += counts[bucket];
+                out.println(upperBound(bucket) + "," + counts[bucket] + "," + String.format("%.5f", seen / (double)count));
+            }
+        }catch (IOException e){
+            throw new IllegalStateException("LatencyHistogram: could not write " + fileName, e);
+        }
+    }
+
+    static String millis(long nanos){
+        return String.format("%.2f", nanos / 1000000.0);
+    }
+}
@@ -1,5 +1,7 @@
 package com.base.engine;
 
+import com.lmax.disruptor.EventPoller;
+
 import java.util.ArrayList;
 
 public class Level {
@@ -12,181 +14,448 @@ public class Level {
     private static final int NUM_TEXTURES = (int)Math.pow(2, NUM_TEX_EXPONENT);
     private static final float OPEN_DISTANCE = 1.0f;
     private static final float DOOR_OPEN_MOVE_AMOUNT = 0.9f;
+    // Cells of the flow field settled per tick, levels up to this size get a new field every tick
+    private static final int FLOW_BUDGET = 16384;
+    // Extra path cost of a closed door, monsters take open doors if the way round is short
+    private static final int CLOSED_DOOR_COST = 10;
 
-    private Mesh mesh;
+    private Match match;
     private Bitmap level;
-    private Shader shader;
-    private Material material;
-    private Transform transform;
+    private String textureName;
+    private long seed;
     private Player player;
-    private ArrayList<Door> doors;
+    private DoorSystem doors;
     private ArrayList<Vector2f> collisionPosStart;
     private ArrayList<Vector2f> collisionPosEnd;
-    private ArrayList<Monster> monsters;
-    private ArrayList<Medkit> medkits;
-    private ArrayList<Medkit> medkitsToRemove;
+    private MonsterSystem monsters;
+    private SectorMap sectors;
+    private FlowField flowField;
+    private MedkitSystem medkits;
     private ArrayList<Vector3f> exitPoints;
+    private EventBus events;
+    private TimerWheel timers;
+    private EventPoller.Handler<GameEvent> eventHandler;
+    private int pendingPlayerDamage;
+
+    // Render thread only, the GL resources are created on the first render
+    private Vertex[] meshVertices;
+    private int[] meshIndices;
+    private Mesh mesh;
+    private Material material;
+    private Transform transform;
+    private Transform gunTransform;
+    private BatchTransform doorBatch;
+    private BatchTransform monsterBatch;
+    private BatchTransform medkitBatch;
+    private float[] doorMVPs;
+    private float[] monsterMVPs;
+    private float[] medkitMVPs;
+    private JobGraph batchGraph;
+    private Snapshot batchSnapshot;
+    private Matrix4f batchViewProjection;
+
+    // Simulation thread only
+    private JobGraph updateGraph;
+
+    public Match getMatch(){
+        return match;
+    }
 
     public Player getPlayer(){
         return player;
     }
 
-    public Level(String levelName, String textureName){
+    public Bitmap getBitmap(){
+        return level;
+    }
+
+    public DoorSystem getDoors(){
+        return doors;
+    }
+
+    public MonsterSystem getMonsters(){
+        return monsters;
+    }
+
+    public SectorMap getSectors(){
+        return sectors;
+    }
+
+    /**
+     * Paths from everywhere toward the player, as of the last completed build.
+     */
+    public FlowField getFlowField(){
+        return flowField;
+    }
+
+    public MedkitSystem getMedkits(){
+        return medkits;
+    }
+
+    public EventBus getEvents(){
+        return events;
+    }
+
+    /**
+     * Timers of the level, fired at the start of each update. Only schedule from outside the update task graph.
+     */
+    public TimerWheel getTimers(){
+        return timers;
+    }
+
+    /**
+     * All randomness of the level (player damage, monster AI) is drawn from streams derived from seed.
+     * Time, input and the next level come from match.
+     */
+    public Level(Match match, String levelName, String textureName, long seed){
         //this.player = player;
+        this.match = match;
         level = new Bitmap(levelName).flipY();
-        material = new Material(new Texture(textureName));
-        transform = new Transform();
-        shader = BasicShader.getInstance();
+        this.textureName = textureName;
+        this.seed = seed;
         exitPoints = new ArrayList<Vector3f>();
+        events = new EventBus();
+        eventHandler = this::handleEvent;
+        timers = new TimerWheel(match.getTick() - 1);
 
         generateLevel();
     }
 
     public void openDoors(Vector3f position, boolean tryExitLevel){
-        for(Door door : doors){
-            if(door.getTransform().getTranslation().sub(position).length() < OPEN_DISTANCE){
-                door.open();
+        float[] doorX = doors.getX();
+        float[] doorZ = doors.getZ();
+        for(int i = 0; i < doors.size(); i++){
+            if(distance(doorX[i], 0, doorZ[i], position) < OPEN_DISTANCE){
+                doors.open(i);
+                monsters.wakeAround((int)Math.floor(doors.getCloseX()[i] / SPOT_WIDTH), (int)Math.floor(doors.getCloseZ()[i] / SPOT_LENGTH));
             }
         }
         if(tryExitLevel){
-            for(Vector3f exitPoint : exitPoints){
-                if(exitPoint.sub(position).length() < OPEN_DISTANCE){
-                    Game.loadNextLevel();
+            for(int i = 0; i < exitPoints.size(); i++){
+                Vector3f exitPoint = exitPoints.get(i);
+                if(distance(exitPoint.getX(), exitPoint.getY(), exitPoint.getZ(), position) < OPEN_DISTANCE){
+                    match.loadNextLevel();
                 }
             }
         }
     }
 
+    private static float distance(float x, float y, float z, Vector3f b){
+        x -= b.getX();
+        y -= b.getY();
+        z -= b.getZ();
+
+        return (float)Math.sqrt(x * x + y * y + z * z);
+    }
+
     public void input(){
         player.input();
     }
 
+    /**
+     * Handles all events published so far. Damage to the player is summed and applied once, after all
+     * other events, and the monsters the events woke are put in a fixed order, so the order parallel
+     * producers published in does not matter.
+     */
+    public void processEvents(){
+        pendingPlayerDamage = 0;
+        int awakeBefore = monsters.getAwakeCount();
+        events.drain(eventHandler);
+        monsters.sortAwakeFrom(awakeBefore);
+
+        if(pendingPlayerDamage != 0)
+            damagePlayer(pendingPlayerDamage);
+    }
+
+    private boolean handleEvent(GameEvent event, long sequence, boolean endOfBatch){
+        switch (event.getType()){
+            case GameEvent.DAMAGE_PLAYER:
+                pendingPlayerDamage += event.getAmount();
+                break;
+            case GameEvent.DAMAGE_MONSTER:
+                int monster = monsters.indexOf(event.getTarget());
+                if(monster >= 0)
+                    monsters.damage(monster, event.getAmount());
+                break;
+            case GameEvent.OPEN_DOORS:
+                VectorPool pool = VectorPool.get();
+                pool.push();
+                openDoors(pool.vector3f().set(event.getX(), event.getY(), event.getZ()), event.getFlag());
+                pool.pop();
+                break;
+            case GameEvent.GUNFIRE:
+                monsters.wakeNear(sectors.getSector(event.getX(), event.getZ()));
+                break;
+            case GameEvent.PICKUP_MEDKIT:
+                int medkit = medkits.indexOf(event.getTarget());
+                if(medkit >= 0){
+                    medkits.removeAt(medkit);
+                    player.damage(-event.getAmount());
+                }
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * Handles the events of the input phase, fires the timers due this tick, then runs the update task graph:
+     *
+     *     player -> doors -> flow field -> monster think -> monster commit -> monster separation
+     *           \-> medkit billboard
+     *           \-> medkit pickup
+     *
+     * Every edge is a data dependency (the player collides with doors, the flow field follows the player and
+     * the doors, monsters walk along it and see the moved doors, medkits face the moved player). Everything
+     * the stages do to each other (damage, opening doors, pickups) is published as events and handled after
+     * the graph, so the stages share no mutable state.
+     */
     public void update(){
-        player.update();
-        for(Door door : doors)
-            door.update();
-        for(Monster monster : monsters)
-            monster.update();
-        for(Medkit medkit : medkits)
-            medkit.update();
-        for(Medkit medkit : medkitsToRemove)
-            medkits.remove(medkit);
-    }
-
-    public void render(){
+        processEvents();
+        timers.advance(match.getTick());
+
+        if(updateGraph == null){
+            updateGraph = new JobGraph("Level.update");
+            JobGraph.Job playerJob = updateGraph.add("player", player::update);
+            JobGraph.Job doorJob = updateGraph.add("doors", doors::update, playerJob);
+            updateGraph.add("medkit billboard", medkits::billboard, playerJob);
+            JobGraph.Job flowJob = updateGraph.add("flow field", this::updateFlowField, doorJob);
+            JobGraph.Job thinkJob = updateGraph.add("monster think", monsters::think, flowJob);
+            JobGraph.Job commitJob = updateGraph.add("monster commit", monsters::commit, thinkJob);
+            updateGraph.add("monster separation", monsters::separate, commitJob);
+            updateGraph.add("medkit pickup", medkits::pickup, playerJob);
+        }
+
+        updateGraph.run(match.getPool());
+        processEvents();
+    }
+
+    /**
+     * Points the flow field at the player's cell, tells it which doors are closed and
+     * continues the flow field build.
+     */
+    private void updateFlowField(){
+        Vector3f position = player.getCamera().getPos();
+        flowField.setTarget((int)Math.floor(position.getX() / SPOT_WIDTH), (int)Math.floor(position.getZ() / SPOT_LENGTH));
+
+        float[] closeX = doors.getCloseX();
+        float[] closeZ = doors.getCloseZ();
+        for(int i = 0; i < doors.size(); i++){
+            int cellX = (int)Math.floor(closeX[i] / SPOT_WIDTH);
+            int cellZ = (int)Math.floor(closeZ[i] / SPOT_LENGTH);
+            int cost = doors.isOpening(i) ? 0 : CLOSED_DOOR_COST;
+            flowField.setCost(cellX, cellZ, cost);
+        }
+
+        flowField.update(FLOW_BUDGET);
+    }
+
+    public JobGraph getUpdateGraph(){
+        return updateGraph;
+    }
+
+    /**
+     * Gives back the texture render() took, once the level is not drawn any more. GL thread only.
+     * A later render() takes it again.
+     */
+    public void cleanUpRender(){
+        if(material == null)
+            return;
+
+        TextureCache.release(material.getTexture());
+        material = null;
+        mesh = null;
+    }
+
+    /**
+     * Draws the level as captured in the snapshot. Has to run on the GL thread, after Transform.updateCamera().
+     */
+    public void render(Snapshot snapshot){
+        if(mesh == null){
+            mesh = new Mesh(meshVertices, meshIndices);
+            material = new Material(TextureCache.acquire(textureName));
+            transform = new Transform();
+            gunTransform = new Transform();
+            doorBatch = new BatchTransform();
+            monsterBatch = new BatchTransform();
+            medkitBatch = new BatchTransform();
+            doorMVPs = new float[0];
+            monsterMVPs = new float[0];
+            medkitMVPs = new float[0];
+
+            // The sprite types are batched concurrently, each into its own buffer
+            batchGraph = new JobGraph("Level.render batching");
+            batchGraph.add("door batch", this::batchDoors);
+            batchGraph.add("monster batch", this::batchMonsters);
+            batchGraph.add("medkit batch", this::batchMedkits);
+        }
+
+        Shader shader = getShader();
+
+        batchSnapshot = snapshot;
+        batchViewProjection = Transform.getViewProjection();
+        batchGraph.run();
+
         shader.bind();
         shader.updateUniforms(transform.getTransformation(), transform.getProjectedTransformation(), material);
         mesh.draw();
         shader.unbind();
-        for(Door door : doors)
-            door.render();
-        for(Monster monster : monsters)
-            monster.render();
-        for(Medkit medkit : medkits)
-            medkit.render();
-        player.render();
+
+        DoorSystem.render(shader, material, doorMVPs, snapshot.getDoorCount());
+        MonsterSystem.render(shader, monsterMVPs, snapshot.getMonsterFrame(), snapshot.getMonsterCount());
+        MedkitSystem.render(shader, medkitMVPs, snapshot.getMedkitCount());
+
+        gunTransform.setTranslation(snapshot.getGunPos());
+        gunTransform.setRotation(0, snapshot.getGunYaw(), 0);
+        Player.renderGun(shader, gunTransform, snapshot.getGunFrame());
     }
 
-    public Vector3f checkCollision(Vector3f oldPos, Vector3f newPos, float objectWidth, float objectLength)
-    {
-        Vector2f collisionVector = new Vector2f(1,1);
-        Vector3f movementVector = newPos.sub(oldPos);
+    private void batchDoors(){
+        Snapshot snapshot = batchSnapshot;
+        int count = snapshot.getDoorCount();
+        if(doorMVPs.length < count * 16)
+            doorMVPs = new float[count * 16];
 
-        if(movementVector.length() > 0)
-        {
-            Vector2f blockSize = new Vector2f(SPOT_WIDTH, SPOT_LENGTH);
-            Vector2f objectSize = new Vector2f(objectWidth, objectLength);
+        doorBatch.computeMVP(batchViewProjection, snapshot.getDoorX(), null, snapshot.getDoorZ(), snapshot.getDoorYaw(),
+                null, null, null, count, doorMVPs);
+    }
 
-            Vector2f oldPos2 = new Vector2f(oldPos.getX(), oldPos.getZ());
-            Vector2f newPos2 = new Vector2f(newPos.getX(), newPos.getZ());
+    private void batchMonsters(){
+        Snapshot snapshot = batchSnapshot;
+        int count = snapshot.getMonsterCount();
+        if(monsterMVPs.length < count * 16)
+            monsterMVPs = new float[count * 16];
 
-            for(int i = 0; i < level.getWidth(); i++)
-                for(int j = 0; j < level.getHeight(); j++)
-                    if((level.getPixel(i,j) & 0xFFFFFF) == 0)
-                        collisionVector = collisionVector.mul(rectCollide(oldPos2, newPos2, objectSize, blockSize.mul(new Vector2f(i,j)), blockSize));
+        monsterBatch.computeMVP(batchViewProjection, snapshot.getMonsterX(), null, snapshot.getMonsterZ(), snapshot.getMonsterYaw(),
+                snapshot.getMonsterScaleX(), snapshot.getMonsterScaleY(), null, count, monsterMVPs);
+    }
 
+    private void batchMedkits(){
+        Snapshot snapshot = batchSnapshot;
+        int count = snapshot.getMedkitCount();
+        if(medkitMVPs.length < count * 16)
+            medkitMVPs = new float[count * 16];
 
-            for(Door door : doors)
+        medkitBatch.computeMVP(batchViewProjection, snapshot.getMedkitX(), null, snapshot.getMedkitZ(), snapshot.getMedkitYaw(),
+                null, null, null, count, medkitMVPs);
+    }
+
+    public Vector3f checkCollision(Vector3f oldPos, Vector3f newPos, float objectWidth, float objectLength){
+        return checkCollision(oldPos, newPos, objectWidth, objectLength, new Vector3f(0, 0, 0));
+    }
+
+    /**
+     * Writes a (0 or 1, 0, 0 or 1) mask into dest telling on which axes the move from oldPos to newPos is free.
+     */
+    public Vector3f checkCollision(Vector3f oldPos, Vector3f newPos, float objectWidth, float objectLength, Vector3f dest)
+    {
+        float collisionX = 1;
+        float collisionY = 1;
+
+        float oldX = oldPos.getX();
+        float oldY = oldPos.getZ();
+        float newX = newPos.getX();
+        float newY = newPos.getZ();
+
+        if(oldX != newX || oldPos.getY() != newPos.getY() || oldY != newY)
+        {
+            // Blocks further away than the object size can never collide, only test the ones around the move
+            int minI = Math.max(0, (int)Math.floor(Math.min(oldX, newX) - objectWidth) - 1);
+            int maxI = Math.min(level.getWidth() - 1, (int)Math.floor(Math.max(oldX, newX) + objectWidth) + 1);
+            int minJ = Math.max(0, (int)Math.floor(Math.min(oldY, newY) - objectLength) - 1);
+            int maxJ = Math.min(level.getHeight() - 1, (int)Math.floor(Math.max(oldY, newY) + objectLength) + 1);
+
+            for(int i = minI; i <= maxI; i++)
+                for(int j = minJ; j <= maxJ; j++)
+                    if((level.getPixel(i,j) & 0xFFFFFF) == 0){
+                        collisionX *= rectCollideX(oldY, newX, objectWidth, objectLength, i * SPOT_WIDTH, j * SPOT_LENGTH, SPOT_WIDTH, SPOT_LENGTH);
+                        collisionY *= rectCollideY(oldX, newY, objectWidth, objectLength, i * SPOT_WIDTH, j * SPOT_LENGTH, SPOT_WIDTH, SPOT_LENGTH);
+                    }
+
+
+            float[] doorX = doors.getX();
+            float[] doorZ = doors.getZ();
+            for(int i = 0; i < doors.size(); i++)
             {
-                Vector2f doorSize = door.getDoorSize();
-                Vector3f doorPos3f = door.getTransform().getTranslation();
-                Vector2f doorPos2f = new Vector2f(doorPos3f.getX(), doorPos3f.getZ());
-                collisionVector = collisionVector.mul(rectCollide(oldPos2, newPos2, objectSize, doorPos2f, doorSize));
+                float doorSizeX = doors.getSizeX(i);
+                float doorSizeY = doors.getSizeZ(i);
+                collisionX *= rectCollideX(oldY, newX, objectWidth, objectLength, doorX[i], doorZ[i], doorSizeX, doorSizeY);
+                collisionY *= rectCollideY(oldX, newY, objectWidth, objectLength, doorX[i], doorZ[i], doorSizeX, doorSizeY);
             }
         }
 
-        return new Vector3f(collisionVector.getX(), 0, collisionVector.getY());
+        return dest.set(collisionX, 0, collisionY);
     }
 
     public Vector2f checkIntersections(Vector2f lineStart, Vector2f lineEnd, boolean hurtMonsters)
     {
-        Vector2f nearestIntersection = null;
+        float fraction = castRay(lineStart, lineEnd, hurtMonsters);
+
+        if(fraction < 0)
+            return null;
+
+        return new Vector2f(lineStart.getX() + (lineEnd.getX() - lineStart.getX()) * fraction,
+                            lineStart.getY() + (lineEnd.getY() - lineStart.getY()) * fraction);
+    }
+
+    /**
+     * Same as checkIntersections, but returns how far along the line the nearest wall or door was hit
+     * (0 to 1), or -1 if nothing was hit. Does not allocate.
+     */
+    public float castRay(Vector2f lineStart, Vector2f lineEnd, boolean hurtMonsters)
+    {
+        float startX = lineStart.getX();
+        float startY = lineStart.getY();
+        float endX = lineEnd.getX();
+        float endY = lineEnd.getY();
+
+        float nearestIntersection = -1;
 
         for(int i = 0; i < collisionPosStart.size(); i++)
         {
-            Vector2f collisionVector = lineIntersect(lineStart, lineEnd, collisionPosStart.get(i), collisionPosEnd.get(i));
-            nearestIntersection = findNearestVector2f(nearestIntersection, collisionVector, lineStart);
+            Vector2f wallStart = collisionPosStart.get(i);
+            Vector2f wallEnd = collisionPosEnd.get(i);
+            float collision = lineIntersect(startX, startY, endX, endY, wallStart.getX(), wallStart.getY(), wallEnd.getX(), wallEnd.getY());
+            nearestIntersection = findNearest(nearestIntersection, collision);
         }
 
-        for(Door door : doors)
+        float[] doorX = doors.getX();
+        float[] doorZ = doors.getZ();
+        for(int i = 0; i < doors.size(); i++)
         {
-            Vector2f doorSize = door.getDoorSize();
-            Vector3f doorPos3f = door.getTransform().getTranslation();
-            Vector2f doorPos2f = new Vector2f(doorPos3f.getX(), doorPos3f.getZ());
-            Vector2f collisionVector = lineIntersectRect(lineStart, lineEnd, doorPos2f, doorSize);
-
-            nearestIntersection = findNearestVector2f(nearestIntersection, collisionVector, lineStart);
+            float collision = lineIntersectRect(startX, startY, endX, endY, doorX[i], doorZ[i], doors.getSizeX(i), doors.getSizeZ(i));
+            nearestIntersection = findNearest(nearestIntersection, collision);
         }
 
         if(hurtMonsters)
         {
-            Vector2f nearestMonsterIntersect = null;
-            Monster nearestMonster = null;
+            float nearestMonsterIntersect = -1;
+            int nearestMonster = -1;
 
-            for(Monster monster : monsters)
+            float[] monsterX = monsters.getX();
+            float[] monsterZ = monsters.getZ();
+            for(int i = 0; i < monsters.size(); i++)
             {
-                Vector2f monsterSize = monster.getSize();
-                Vector3f monsterPos3f = monster.getTransform().getTranslation();
-                Vector2f monsterPos2f = new Vector2f(monsterPos3f.getX(), monsterPos3f.getZ());
-                Vector2f collisionVector = lineIntersectRect(lineStart, lineEnd, monsterPos2f, monsterSize);
+                float collision = lineIntersectRect(startX, startY, endX, endY, monsterX[i], monsterZ[i], MonsterSystem.MONSTER_WIDTH, MonsterSystem.MONSTER_LENGTH);
 
-                nearestMonsterIntersect = findNearestVector2f(nearestMonsterIntersect, collisionVector, lineStart);
-
-                if(nearestMonsterIntersect == collisionVector)
-                    nearestMonster = monster;
-            }
-
-            // positive checks only
-            Vector2f nearestIntersectAbs = null;
-            if(nearestMonsterIntersect != null){
-                nearestMonsterIntersect = new Vector2f(Math.abs(nearestMonsterIntersect.getX()), Math.abs(nearestMonsterIntersect.getY()));
-            }
-            if(nearestMonsterIntersect != null){
-                nearestIntersectAbs = new Vector2f(Math.abs(nearestIntersection.getX()), Math.abs(nearestIntersection.getY()));
-            } else{
-                nearestIntersectAbs = nearestIntersection;
-            }
-            if(lineStart != null){
-                lineStart = new Vector2f(Math.abs(lineStart.getX()), Math.abs(lineStart.getY()));
+                if(collision >= 0 && (nearestMonsterIntersect < 0 || collision < nearestMonsterIntersect)){
+                    nearestMonsterIntersect = collision;
+                    nearestMonster = i;
+                }
             }
 
-            if(nearestMonsterIntersect != null && (nearestIntersection == null ||
-                    nearestMonsterIntersect.sub(lineStart).length() < nearestIntersectAbs.sub(lineStart).length()))
+            if(nearestMonster >= 0 && (nearestIntersection < 0 || nearestMonsterIntersect < nearestIntersection))
             {
-
-                if(nearestMonster != null){
-                    nearestMonster.damage(player.getDamage());
-                }
+                events.publishDamageMonster(monsters.handleAt(nearestMonster), player.getDamage());
             }
         }
 
         return nearestIntersection;
     }
 
-    private Vector2f findNearestVector2f(Vector2f a, Vector2f b, Vector2f positionRelativeTo)
+    private static float findNearest(float a, float b)
     {
-        if(b != null && (a == null ||
-                a.sub(positionRelativeTo).length() > b.sub(positionRelativeTo).length()))
+        if(b >= 0 && (a < 0 || a > b))
             return b;
 
         return a;
@@ -194,68 +463,85 @@ public class Level {
 
     public Vector2f lineIntersectRect(Vector2f lineStart, Vector2f lineEnd, Vector2f rectPos, Vector2f rectSize)
     {
-        Vector2f result = null;
-
-        Vector2f collisionVector = lineIntersect(lineStart, lineEnd, rectPos, new Vector2f(rectPos.getX() + rectSize.getX(), rectPos.getY()));
-        result = findNearestVector2f(result, collisionVector, lineStart);
+        float fraction = lineIntersectRect(lineStart, lineEnd, rectPos.getX(), rectPos.getY(), rectSize.getX(), rectSize.getY());
 
-        collisionVector = lineIntersect(lineStart, lineEnd, rectPos, new Vector2f(rectPos.getX(), rectPos.getY() + rectSize.getY()));
-        result = findNearestVector2f(result, collisionVector, lineStart);
-
-        collisionVector = lineIntersect(lineStart, lineEnd, new Vector2f(rectPos.getX(), rectPos.getY() + rectSize.getY()), rectPos.add(rectSize));
-        result = findNearestVector2f(result, collisionVector, lineStart);
+        if(fraction < 0)
+            return null;
 
-        collisionVector = lineIntersect(lineStart, lineEnd, new Vector2f(rectPos.getX() + rectSize.getX(), rectPos.getY()), rectPos.add(rectSize));
-        result = findNearestVector2f(result, collisionVector, lineStart);
+        return new Vector2f(lineStart.getX() + (lineEnd.getX() - lineStart.getX()) * fraction,
+                            lineStart.getY() + (lineEnd.getY() - lineStart.getY()) * fraction);
+    }
 
-        return result;
+    /**
+     * Returns how far along the line (0 to 1) it first hits the rectangle, or -1 if it misses.
+     */
+    public float lineIntersectRect(Vector2f lineStart, Vector2f lineEnd, float rectX, float rectY, float rectWidth, float rectHeight)
+    {
+        return lineIntersectRect(lineStart.getX(), lineStart.getY(), lineEnd.getX(), lineEnd.getY(), rectX, rectY, rectWidth, rectHeight);
     }
 
-    private float Vector2fCross(Vector2f a, Vector2f b)
+    private static float lineIntersectRect(float startX, float startY, float endX, float endY,
+                                           float rectX, float rectY, float rectWidth, float rectHeight)
     {
-        return a.getX() * b.getY() - a.getY() * b.getX();
+        float result = -1;
+
+        result = findNearest(result, lineIntersect(startX, startY, endX, endY, rectX, rectY, rectX + rectWidth, rectY));
+        result = findNearest(result, lineIntersect(startX, startY, endX, endY, rectX, rectY, rectX, rectY + rectHeight));
+        result = findNearest(result, lineIntersect(startX, startY, endX, endY, rectX, rectY + rectHeight, rectX + rectWidth, rectY + rectHeight));
+        result = findNearest(result, lineIntersect(startX, startY, endX, endY, rectX + rectWidth, rectY, rectX + rectWidth, rectY + rectHeight));
+
+        return result;
     }
 
     //http://stackoverflow.com/questions/563198/how-do-you-detect-where-two-line-segments-intersect
-    private Vector2f lineIntersect(Vector2f lineStart1, Vector2f lineEnd1, Vector2f lineStart2, Vector2f lineEnd2)
+    // Returns how far along the first line the intersection is, or -1 if there is none
+    private static float lineIntersect(float startX1, float startY1, float endX1, float endY1,
+                                       float startX2, float startY2, float endX2, float endY2)
     {
-        Vector2f line1 = lineEnd1.sub(lineStart1);
-        Vector2f line2 = lineEnd2.sub(lineStart2);
+        float line1X = endX1 - startX1;
+        float line1Y = endY1 - startY1;
+        float line2X = endX2 - startX2;
+        float line2Y = endY2 - startY2;
 
-        float cross = Vector2fCross(line1, line2);
+        float cross = line1X * line2Y - line1Y * line2X;
 
         if(cross == 0)
-            return null;
+            return -1;
 
-        Vector2f distanceBetweenLineStarts = lineStart2.sub(lineStart1);
+        float distanceX = startX2 - startX1;
+        float distanceY = startY2 - startY1;
 
-        float a = Vector2fCross(distanceBetweenLineStarts, line2) / cross;
-        float b = Vector2fCross(distanceBetweenLineStarts, line1) / cross;
+        float a = (distanceX * line2Y - distanceY * line2X) / cross;
+        float b = (distanceX * line1Y - distanceY * line1X) / cross;
 
         if(0.0f < a && a < 1.0f && 0.0f < b && b < 1.0f)
-            return lineStart1.add(line1.mul(a));
+            return a;
 
-        return null;
+        return -1;
     }
 
-    private Vector2f rectCollide(Vector2f oldPos, Vector2f newPos, Vector2f size1, Vector2f pos2, Vector2f size2)
+    private static float rectCollideX(float oldY, float newX, float sizeX, float sizeY, float posX, float posY, float size2X, float size2Y)
     {
-        Vector2f result = new Vector2f(0,0);
+        if(newX + sizeX < posX ||
+                newX - sizeX > posX + size2X * size2X ||
+                oldY + sizeY < posY ||
+                oldY - sizeY > posY + size2Y * size2Y)
+            return 1;
 
-        if(newPos.getX() + size1.getX() < pos2.getX() ||
-                newPos.getX() - size1.getX() > pos2.getX() + size2.getX() * size2.getX() ||
-                oldPos.getY() + size1.getY() < pos2.getY() ||
-                oldPos.getY() - size1.getY() > pos2.getY() + size2.getY() * size2.getY())
-            result.setX(1);
+        return 0;
+    }
 
-        if(oldPos.getX() + size1.getX() < pos2.getX() ||
-                oldPos.getX() - size1.getX() > pos2.getX() + size2.getX() * size2.getX() ||
-                newPos.getY() + size1.getY() < pos2.getY() ||
-                newPos.getY() - size1.getY() > pos2.getY() + size2.getY() * size2.getY())
-            result.setY(1);
+    private static float rectCollideY(float oldX, float newY, float sizeX, float sizeY, float posX, float posY, float size2X, float size2Y)
+    {
+        if(oldX + sizeX < posX ||
+                oldX - sizeX > posX + size2X * size2X ||
+                newY + sizeY < posY ||
+                newY - sizeY > posY + size2Y * size2Y)
+            return 1;
 
-        return result;
+        return 0;
     }
+
     private void addFace(ArrayList<Integer> indices, int startLocation, boolean direction){
         if(direction){
             indices.add(startLocation + 2);
@@ -318,8 +604,6 @@ public class Level {
     }
 
     private void addDoor(int x, int y){
-        Transform doorTransform = new Transform();
-
         boolean xDoor = ((level.getPixel(x, y-1) & 0xFFFFFF) == 0) && ((level.getPixel(x, y+1) & 0xFFFFFF) == 0);
         boolean yDoor = ((level.getPixel(x-1, y) & 0xFFFFFF) == 0) && ((level.getPixel(x+1, y) & 0xFFFFFF) == 0);
 
@@ -329,20 +613,13 @@ public class Level {
             System.exit(1);
         }
 
-        Vector3f openPosition = null;
-
         if(yDoor){
-            doorTransform.setTranslation(x, 0, y + (SPOT_LENGTH / 2));
-            openPosition = doorTransform.getTranslation().sub(new Vector3f(DOOR_OPEN_MOVE_AMOUNT, 0.0f, 0.0f));
+            doors.add(x, y + (SPOT_LENGTH / 2), x - DOOR_OPEN_MOVE_AMOUNT, y + (SPOT_LENGTH / 2), false);
         }
 
         if(xDoor){
-            doorTransform.setTranslation(x + (SPOT_WIDTH / 2), 0, y);
-            doorTransform.setRotation(0, 90, 0);
-            openPosition = doorTransform.getTranslation().sub(new Vector3f(0.0f, 0.0f, DOOR_OPEN_MOVE_AMOUNT));
+            doors.add(x + (SPOT_WIDTH / 2), y, x + (SPOT_WIDTH / 2), y - DOOR_OPEN_MOVE_AMOUNT, true);
         }
-
-        doors.add(new Door(doorTransform, material, openPosition));
     }
 
     private void addSpecial(int blueVal, int x, int y){
@@ -350,15 +627,13 @@ public class Level {
             addDoor(x, y);
         }
         if(blueVal == 1){
-            player = new Player(new Vector3f((x + 0.5f) * SPOT_WIDTH, 0.4375f, (y + 0.5f) * SPOT_LENGTH));
+            player = new Player(this, new Vector3f((x + 0.5f) * SPOT_WIDTH, 0.4375f, (y + 0.5f) * SPOT_LENGTH), SplitMix64.seed(seed, 1));
         }
         if(blueVal == 128){
-            Transform monsterTransform = new Transform();
-            monsterTransform.setTranslation(new Vector3f((x + 0.5f) * SPOT_WIDTH, 0, (y + 0.5f) * SPOT_LENGTH));
-            monsters.add(new Monster(monsterTransform));
+            monsters.add((x + 0.5f) * SPOT_WIDTH, (y + 0.5f) * SPOT_LENGTH);
         }
         if(blueVal == 192){
-            medkits.add(new Medkit(new Vector3f((x + 0.5f) * SPOT_WIDTH, 0, (y + 0.5f) * SPOT_LENGTH)));
+            medkits.add((x + 0.5f) * SPOT_WIDTH, (y + 0.5f) * SPOT_LENGTH);
         }
 
         if(blueVal == 97){
@@ -367,15 +642,12 @@ public class Level {
         }
     }
 
-    public void removeMedkit(Medkit medkit){
-        medkitsToRemove.add(medkit);
-    }
-
     private void generateLevel(){
-        monsters = new ArrayList<Monster>();
-        doors = new ArrayList<Door>();
-        medkits = new ArrayList<Medkit>();
-        medkitsToRemove = new ArrayList<Medkit>();
+        sectors = new SectorMap(level);
+        flowField = new FlowField(level.getWidth(), level.getHeight(), CLOSED_DOOR_COST);
+        monsters = new MonsterSystem(this, SplitMix64.seed(seed, 0));
+        doors = new DoorSystem(this);
+        medkits = new MedkitSystem(this);
         collisionPosStart = new ArrayList<Vector2f>();
         collisionPosEnd = new ArrayList<Vector2f>();
 
@@ -386,6 +658,7 @@ public class Level {
             for(int j = 0; j < level.getHeight(); j++){
                 // If it's a wall
                 if((level.getPixel(i,j) & 0xFFFFFF) == 0){
+                    flowField.setCost(i, j, FlowField.BLOCKED);
                     continue;
                 }
 
@@ -440,14 +713,65 @@ public class Level {
         vertices.toArray(vertArray);
         indices.toArray(intArray);
 
-        mesh = new Mesh(vertArray, Util.toIntArray(intArray));
+        meshVertices = vertArray;
+        meshIndices = Util.toIntArray(intArray);
     }
 
     public Shader getShader(){
-        return shader;
+        return BasicShader.getInstance();
     }
 
     public void damagePlayer(int amount){
         player.damage(amount);
     }
+
+    /**
+     * Hash of everything the simulation changes: the player, doors, monsters and medkits.
+     * Two runs are in the same state exactly when their hashes match.
+     */
+    public long getStateHash(){
+        Camera camera = player.getCamera();
+        Quaternion orientation = camera.getOrientation();
+
+        long hash = seed;
+        hash = hash(hash, camera.getPos().getX());
+        hash = hash(hash, camera.getPos().getY());
+        hash = hash(hash, camera.getPos().getZ());
+        hash = hash(hash, orientation.getX());
+        hash = hash(hash, orientation.getY());
+        hash = hash(hash, orientation.getZ());
+        hash = hash(hash, orientation.getW());
+        hash = hash(hash, player.getHealth());
+
+        hash = hash(hash, doors.size());
+        for(int i = 0; i < doors.size(); i++){
+            hash = hash(hash, doors.getX()[i]);
+            hash = hash(hash, doors.getZ()[i]);
+        }
+
+        hash = hash(hash, monsters.size());
+        for(int i = 0; i < monsters.size(); i++){
+            hash = hash(hash, monsters.getX()[i]);
+            hash = hash(hash, monsters.getZ()[i]);
+            hash = hash(hash, monsters.getState()[i]);
+            hash = hash(hash, monsters.getFrame()[i]);
+            hash = hash(hash, monsters.getHealth()[i]);
+        }
+
+        hash = hash(hash, medkits.size());
+        for(int i = 0; i < medkits.size(); i++){
+            hash = hash(hash, medkits.getX()[i]);
+            hash = hash(hash, medkits.getZ()[i]);
+        }
+
+        return hash;
+    }
+
+    private static long hash(long hash, float value){
+        return hash(hash, Float.floatToIntBits(value));
+    }
+
+    private static long hash(long hash, int value){
+        return SplitMix64.mix(hash ^ (value & 0xFFFFFFFFL)) + value;
+    }
 }
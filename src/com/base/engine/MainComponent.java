@@ -8,15 +8,40 @@ public class MainComponent {
     public static final int HEIGHT = 1080;
     public static final String TITLE = "Coffee Engine";
     public static final boolean vsyncEnabled = false;
-    public static final double FRAME_CAP = 5000.0;
-
-    private boolean isRunning;
+    public static final double FRAME_CAP = 240.0;
+    public static final double THROTTLED_FRAME_RATE = 10.0;    // While the window is unfocused or minimized
+    public static final boolean dynamicResolutionEnabled = true;
+    public static final boolean lateLatchEnabled = false;           // Read the look keys again right before drawing
+    public static final double TARGET_FRAME_TIME = 1.0 / 60.0;
+    public static final double TICK_RATE = 60.0;
+    public static final int MAX_CATCH_UP_TICKS = 5;
+
+    private volatile boolean isRunning;
     private Game game;
-
-    public MainComponent(){
+    private FrameBuffer frameBuffer;
+    private ResolutionScaler resolutionScaler;
+    private GpuTimer gpuTimer;
+    private final InputLatency latency = new InputLatency();
+    private final String latencyFile;
+    private final boolean printStats;
+
+    /**
+     * renderer is one of Game's RENDERER_ constants. latencyFile receives the input latency histogram when
+     * the game ends, or is null. With printStats the latency and texture cache statistics are printed then.
+     */
+    public MainComponent(Match match, int renderer, String latencyFile, boolean printStats){
         System.out.println(RenderUtil.getOpenGLVersion());
         isRunning = false;
-        game = new Game();
+        this.latencyFile = latencyFile;
+        this.printStats = printStats;
+        game = new Game(match, lateLatchEnabled, renderer);
+
+        // Only the GL renderer draws at a scaled resolution
+        if(dynamicResolutionEnabled && renderer == Game.RENDERER_GL){
+            frameBuffer = new FrameBuffer(Window.getWidth(), Window.getHeight());
+            resolutionScaler = new ResolutionScaler(TARGET_FRAME_TIME);
+            gpuTimer = new GpuTimer();
+        }
     }
 
     public void start(){
@@ -36,76 +61,165 @@ public class MainComponent {
     }
 
     private void run(){
-        int frames = 0; // Framerate
-        long framesCounter = 0;
-
-        final double frameLength = 1.0 / FRAME_CAP;
+        // With vsync the swap already paces the frames
+        FramePacer framePacer = new FramePacer(Clock.SYSTEM, vsyncEnabled ? 0 : FRAME_CAP, THROTTLED_FRAME_RATE, 1);
+        FramePacer tickPacer = new FramePacer(Clock.SYSTEM, TICK_RATE, TICK_RATE, MAX_CATCH_UP_TICKS);
 
-        long lastTime = Time.getTime(); // Time of previous frame
-        double unprocessedTime = 0;     // How many times to still update game
-        boolean render = false;
         game.start();
-        while(isRunning){
 
-            long startTime = Time.getTime();    // Time of this frame
-            long passedTime = startTime - lastTime; // Time it took last frame to this frame
-            lastTime = startTime;
+        // The simulation runs at a fixed tick on its own thread and publishes a snapshot after every tick
+        Thread simulation = new Thread(() -> simulate(tickPacer), "Simulation");
+        simulation.start();
 
-            unprocessedTime += passedTime / (double)Time.SECOND;
-            framesCounter += passedTime;
+        // Rendering stays on the main thread, which owns the GL context and has to poll the window events
+        while(isRunning){
+            if(Window.isCloseRequested())
+                stop();
 
-            while (unprocessedTime > frameLength){
-                render = true;
+            framePacer.setThrottled(!Window.isFocused() || Window.isIconified());
+            framePacer.waitForNext();
 
-                unprocessedTime -= frameLength;
+            // Render one tick behind, so there usually is a newer snapshot to interpolate towards
+            render(Time.getTime() - tickPacer.getPeriod());
+        }
 
-                if(Window.isCloseRequested())
-                    stop();
+        try {
+            simulation.join();
+        }catch (InterruptedException e){
+            e.printStackTrace();
+        }
 
-                Time.setDelta(frameLength);
+        cleanUp();
+    }
+
+    private void simulate(FramePacer tickPacer){
+        while(isRunning){
+            // After a hitch at most MAX_CATCH_UP_TICKS ticks are run, the rest is dropped
+            int ticks = tickPacer.waitForNext();
+            long tickTime = tickPacer.getDeadline() - (ticks - 1) * tickPacer.getPeriod();
 
+            for(int i = 0; i < ticks && isRunning; i++){
                 game.input();
-                game.update();
-                if(framesCounter >= Time.SECOND){
-                    //System.out.println(frames);
-                    frames=0;
-                    framesCounter = 0;
-                }
+                game.update(tickTime);
+                tickTime += tickPacer.getPeriod();
             }
-            if(render){
-                frames++;
-                render();
-                render = false;
-            }
-            else {
-                try {
-                    Thread.sleep(1);
+        }
+    }
 
-                }catch (InterruptedException e){
-                    e.printStackTrace();
-                }
-            }
+    private void render(long renderTime){
+        if(frameBuffer == null){
+            Window.render();
+            game.resize(Window.getWidth(), Window.getHeight());
+            game.render(renderTime);
+            Window.lateRender();
+            latency.frameSwapped(game.getFrameInputTime(), Window.getLastSwapTime());
+            return;
         }
 
-        cleanUp();
-    }
+        long renderStart = Time.getTime();
 
-    private void render(){
         Window.render();
-        game.render();
+        frameBuffer.resize(Window.getWidth(), Window.getHeight());
+        game.resize(Window.getWidth(), Window.getHeight());
+        gpuTimer.begin();
+        frameBuffer.bind(resolutionScaler.getScaledSize(Window.getWidth()), resolutionScaler.getScaledSize(Window.getHeight()));
+        RenderUtil.clearScreen();
+        game.render(renderTime);
+        frameBuffer.blitToScreen(Window.getWidth(), Window.getHeight());
+        gpuTimer.end();
+        long cpuTime = Time.getTime() - renderStart;
         Window.lateRender();
+        latency.frameSwapped(game.getFrameInputTime(), Window.getLastSwapTime());
+
+        // The scale only changes what the GPU does, so that is what is measured. The swap is left out either
+        // way, with vsync it waits for the display and would never let the frame time drop below the refresh.
+        if(gpuTimer.isSupported()){
+            long gpuTime;
+            while((gpuTime = gpuTimer.poll()) >= 0)
+                resolutionScaler.update(gpuTime / (double)Time.SECOND);
+        }
+        else {
+            resolutionScaler.update(cpuTime / (double)Time.SECOND);
+        }
     }
 
     private void cleanUp(){
+        if(printStats){
+            System.out.println(latency.getSummary());
+            System.out.println(TextureCache.getSummary());
+        }
+        if(latencyFile != null)
+            latency.getHistogram().export(latencyFile);
+
+        game.cleanUp();
+        if(frameBuffer != null)
+            frameBuffer.destroy();
+        if(gpuTimer != null)
+            gpuTimer.destroy();
         Window.destroy();
     }
 
+    /**
+     * Arguments:
+     *     -seed n          seed for all randomness of the run
+     *     -record file     plays deterministically and records the input to file
+     *     -replay file     replays a recording and checks that it reaches the same states
+     *     -latency file    writes the input to photon latency histogram to file as CSV on exit
+     *     -renderer name   gl (default) or raycast for the multi-threaded CPU raycaster
+     *     -stats b         true to print input latency and texture cache statistics on exit
+     */
     public static void main(String[] args){
+        final long tickLength = (long)(Time.SECOND / TICK_RATE);
+
+        long seed = System.nanoTime();
+        String recordFile = null;
+        String replayFile = null;
+        String latencyFile = null;
+        int renderer = Game.RENDERER_GL;
+        boolean printStats = false;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else if(args[i].equals("-record"))
+                recordFile = args[i + 1];
+            else if(args[i].equals("-replay"))
+                replayFile = args[i + 1];
+            else if(args[i].equals("-latency"))
+                latencyFile = args[i + 1];
+            else if(args[i].equals("-renderer"))
+                renderer = parseRenderer(args[i + 1]);
+            else if(args[i].equals("-stats"))
+                printStats = Boolean.parseBoolean(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        // Recording and replaying need deterministic time, otherwise the game runs on the wall clock
+        Match match = new Match(seed, tickLength / (double)Time.SECOND, replayFile != null || recordFile != null);
+        if(replayFile != null){
+            ReplayPlayer replay = new ReplayPlayer(replayFile);
+            if(replay.getTickLength() != tickLength)
+                throw new IllegalArgumentException("Replay was recorded with " + replay.getTickLength() + " ns ticks, this build runs " + tickLength + " ns ticks");
+            match.setReplay(replay);
+        }
+        else if(recordFile != null){
+            match.setRecorder(new ReplayRecorder(recordFile, seed, tickLength));
+        }
+
         Window.createWindow(WIDTH, HEIGHT, TITLE, vsyncEnabled);
         Window.render();
 
-        MainComponent mainGame = new MainComponent();
+        MainComponent mainGame = new MainComponent(match, renderer, latencyFile, printStats);
         mainGame.start();
     }
 
+    private static int parseRenderer(String name){
+        if(name.equals("gl"))
+            return Game.RENDERER_GL;
+        if(name.equals("raycast"))
+            return Game.RENDERER_RAYCAST;
+
+        throw new IllegalArgumentException("Unknown renderer " + name + ", expected gl or raycast");
+    }
 }
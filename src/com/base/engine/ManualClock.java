@@ -0,0 +1,45 @@
+package com.base.engine;
+
+/**
+ * Clock that only moves when told to. sleep() advances it by the requested time plus a fixed oversleep,
+ * to model the scheduler, and spin() by a fixed step, so waiting code can be measured deterministically.
+ */
+public class ManualClock implements Clock {
+    private long time;
+    private long oversleep;
+    private long spinStep;
+
+    public ManualClock(){
+        this(0, 1);
+    }
+
+    public ManualClock(long oversleep, long spinStep){
+        this.time = 0;
+        this.oversleep = oversleep;
+        this.spinStep = spinStep;
+    }
+
+    @Override
+    public long getTime(){
+        return time;
+    }
+
+    @Override
+    public void sleep(long nanos){
+        if(nanos > 0)
+            time += nanos + oversleep;
+    }
+
+    @Override
+    public void spin(){
+        time += spinStep;
+    }
+
+    public void advance(long nanos){
+        time += nanos;
+    }
+
+    public void setTime(long time){
+        this.time = time;
+    }
+}
@@ -0,0 +1,244 @@
+package com.base.engine;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Everything one running game owns: its level, clock, input and recording. Nothing in the simulation
+ * reaches for a global, so any number of matches can run in one JVM, each on whatever thread ticks it.
+ * A match must only be ticked by one thread at a time.
+ *
+ * The windowed game is one match fed by the keyboard, MatchServer runs many headless ones.
+ */
+public class Match {
+    private long seed;
+    private int levelNum;
+    // Written by the simulating thread, read by the render thread
+    private volatile Level level;
+    private volatile boolean running;
+
+    private final double delta;
+    private final boolean deterministic;
+    private long tick;
+
+    // Key states the match plays with instead of the keyboard, indexed by key code, or null
+    private int[] keys;
+    // The live keyboard and mouse, read while keys is null
+    private final InputState input = new InputState();
+    private InputQueue inputQueue = Input.getQueue();
+    // Time of the newest event input() consumed so far
+    private long inputTime = InputLatency.NO_INPUT;
+    // At most one of them is set
+    private ReplayRecorder recorder;
+    private ReplayPlayer replay;
+    private ForkJoinPool pool;
+
+    /**
+     * delta is the length of a tick in seconds. In a deterministic match gameplay time only moves with
+     * the ticks, so a run can be reproduced exactly, otherwise it is the wall clock.
+     */
+    public Match(long seed, double delta, boolean deterministic){
+        this.seed = seed;
+        this.delta = delta;
+        this.deterministic = deterministic;
+        this.pool = JobSystem.getPool();
+    }
+
+    /**
+     * Records the input of the match. Has to be set before start(), and the match has to be deterministic.
+     */
+    public void setRecorder(ReplayRecorder recorder){
+        if(!deterministic)
+            throw new IllegalStateException("Match: only deterministic matches can be recorded");
+        this.recorder = recorder;
+    }
+
+    /**
+     * Replays a recorded run, using its seed. Has to be set before start(), and the match has to be deterministic.
+     */
+    public void setReplay(ReplayPlayer replay){
+        if(!deterministic)
+            throw new IllegalStateException("Match: only deterministic matches can be replayed");
+        this.replay = replay;
+        this.seed = replay.getSeed();
+    }
+
+    /**
+     * Pool the level update runs its jobs on, or null to run them on the ticking thread. Has to be set before start().
+     */
+    public void setPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getPool(){
+        return pool;
+    }
+
+    /**
+     * Loads the first level.
+     */
+    public void start(){
+        levelNum = 0;
+        loadNextLevel();
+    }
+
+    public void loadNextLevel(){
+        levelNum++;
+        level = new Level(this, "Level" + levelNum + ".png", "WolfCollection.png", SplitMix64.seed(seed, levelNum));
+        running = true;
+    }
+
+    public void input(){
+        // Played live: this tick sees everything the window reported since the last one
+        if(keys == null){
+            input.update(inputQueue);
+            if(input.getEventCount() > 0)
+                inputTime = input.getNewestEventTime();
+        }
+
+        if(replay != null){
+            if(!replay.next(this)){
+                System.out.println(replay.getSummary());
+                replay = null;
+            }
+        }
+        else if(recorder != null){
+            recorder.record(this);
+        }
+
+        level.input();
+    }
+
+    /**
+     * Runs one simulation tick.
+     */
+    public void update(){
+        if(running)
+            level.update();
+
+        tick++;
+
+        if(recorder != null)
+            recorder.checkpoint(tick, level.getStateHash());
+        else if(replay != null)
+            replay.checkpoint(tick, level.getStateHash());
+    }
+
+    /**
+     * Writes out the recording, if one is running. Call after the match stopped ticking.
+     */
+    public void cleanUp(){
+        if(recorder != null){
+            recorder.close();
+            recorder = null;
+        }
+        if(replay != null){
+            System.out.println(replay.getSummary());
+            replay = null;
+        }
+    }
+
+    /**
+     * Time gameplay runs on, in nanoseconds.
+     */
+    public long getGameTime(){
+        if(deterministic)
+            return tick * (long)(delta * Time.SECOND);
+
+        return Time.getTime();
+    }
+
+    public long getTick(){
+        return tick;
+    }
+
+    public double getDelta(){
+        return delta;
+    }
+
+    /**
+     * Number of ticks closest to seconds, at least one.
+     */
+    public long toTicks(double seconds){
+        return Math.max(1, Math.round(seconds / delta));
+    }
+
+    public boolean isDeterministic(){
+        return deterministic;
+    }
+
+    /**
+     * Raw GLFW state of a key this tick: GLFW_PRESS on the tick it went down, GLFW_REPEAT while it stays
+     * down, GLFW_RELEASE otherwise.
+     */
+    public int getKeyState(int keyCode){
+        if(keys != null)
+            return keys[keyCode];
+
+        return input.getKeyState(keyCode);
+    }
+
+    /**
+     * Makes the match read the given key states (indexed by key code) instead of the keyboard,
+     * or the keyboard again if null. The array is read every tick, so it can be changed in place.
+     */
+    public void setKeys(int[] keys){
+        this.keys = keys;
+    }
+
+    public boolean getKey(int keyCode){
+        int state = getKeyState(keyCode);
+        return state == GLFW_PRESS || state == GLFW_REPEAT;
+    }
+
+    /**
+     * True on the tick the key went down, even if it was released again before the tick.
+     */
+    public boolean getKeyPress(int keyCode){
+        return getKeyState(keyCode) == GLFW_PRESS;
+    }
+
+    /**
+     * Queue the live input is read from, the window's by default.
+     */
+    public void setInputQueue(InputQueue inputQueue){
+        this.inputQueue = inputQueue;
+    }
+
+    /**
+     * When the newest input event that went into the match so far happened, or InputLatency.NO_INPUT.
+     * Only live input has event times, scripted and replayed key states do not count.
+     */
+    public long getInputTime(){
+        return inputTime;
+    }
+
+    /**
+     * Keyboard and mouse of the live window as of this tick. Key queries should go through getKey() and
+     * getKeyPress(), which also see scripted and replayed input.
+     */
+    public InputState getInput(){
+        return input;
+    }
+
+    public Level getLevel(){
+        return level;
+    }
+
+    public int getLevelNum(){
+        return levelNum;
+    }
+
+    public long getSeed(){
+        return seed;
+    }
+
+    public boolean isRunning(){
+        return running;
+    }
+
+    public void setRunning(boolean running){
+        this.running = running;
+    }
+}
@@ -0,0 +1,297 @@
+package com.base.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many headless bot matches in one JVM, ticking them on a fixed pool of threads.
+ *
+ * Every match is one task, so a match is only ever ticked by one thread at a time while the pool spreads
+ * the matches over the cores. The matches run their level updates serially on the ticking thread: with
+ * many matches there is more parallelism across them than inside one, and no core is left idle for the
+ * job graph to fill.
+ *
+ * Matches either run as fast as possible for a number of ticks (training, benchmarks, see run()), or
+ * in real time at a fixed tick rate (start() and stop()).
+ *
+ * Arguments of main:
+ *     -matches n       matches to host, defaults to 64
+ *     -ticks n         ticks every match runs, defaults to 2000
+ *     -threads n       threads to tick them on, defaults to the number of cores
+ *     -seed n          seed the seeds of the matches are derived from, defaults to 1
+ */
+public class MatchServer {
+    // Tick latency percentiles are taken over this many of the latest ticks of a match
+    public static final int LATENCY_SAMPLES = 1024;
+
+    /**
+     * Tick latency of one match. Written by whichever thread ticks the match, readable from any thread.
+     */
+    public static class MatchStats {
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private long ticks;
+        private long totalTime;
+        private long maxTime;
+        private Throwable failure;
+
+        private synchronized void record(long nanos){
+            samples[(int)(ticks % LATENCY_SAMPLES)] = nanos;
+            ticks++;
+            totalTime += nanos;
+            maxTime = Math.max(maxTime, nanos);
+        }
+
+        private synchronized void fail(Throwable e){
+            failure = e;
+        }
+
+        public synchronized long getTicks(){
+            return ticks;
+        }
+
+        /**
+         * Average tick time in nanoseconds.
+         */
+        public synchronized double getAverage(){
+            return ticks == 0 ? 0 : totalTime / (double)ticks;
+        }
+
+        public synchronized long getMax(){
+            return maxTime;
+        }
+
+        /**
+         * Tick time in nanoseconds that the fraction p of the latest LATENCY_SAMPLES ticks stayed under.
+         */
+        public synchronized long getPercentile(double p){
+            int count = (int)Math.min(ticks, LATENCY_SAMPLES);
+            if(count == 0)
+                return 0;
+
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int)(p * count))];
+        }
+
+        /**
+         * What the match threw, after which it is not ticked anymore, or null.
+         */
+        public synchronized Throwable getFailure(){
+            return failure;
+        }
+    }
+
+    private static class Slot {
+        final Match match;
+        final ScriptedInput script;
+        final MatchStats stats;
+        ScheduledFuture<?> schedule;
+
+        Slot(Match match, ScriptedInput script){
+            this.match = match;
+            this.script = script;
+            this.stats = new MatchStats();
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final List<Slot> slots;
+    private volatile long startTime;
+
+    public MatchServer(int threads){
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threads, task -> {
+            Thread thread = new Thread(task, "Match-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        slots = new ArrayList<Slot>();
+    }
+
+    /**
+     * Adds a deterministic bot match playing with the given seed and loads its first level.
+     * Can not be called while matches are ticking.
+     */
+    public Match addMatch(long seed){
+        if(isStarted())
+            throw new IllegalStateException("MatchServer: can not add matches while they are running");
+
+        Match match = new Match(seed, 1.0 / MainComponent.TICK_RATE, true);
+        match.setPool(null);
+        match.start();
+
+        slots.add(new Slot(match, new ScriptedInput(seed)));
+        return match;
+    }
+
+    /**
+     * Runs ticks ticks of every match as fast as possible and returns when all are done.
+     */
+    public void run(long ticks){
+        if(isStarted())
+            throw new IllegalStateException("MatchServer: matches are already running");
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for(Slot slot : slots){
+            tasks.add(() -> {
+                for(long i = 0; i < ticks && slot.stats.getFailure() == null; i++)
+                    tick(slot);
+                return null;
+            });
+        }
+
+        startTime = Time.getTime();
+        try {
+            for(Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("MatchServer: interrupted while running matches", e);
+        }catch (ExecutionException e){
+            throw new IllegalStateException("MatchServer: match task failed", e.getCause());
+        }
+    }
+
+    /**
+     * Ticks every match in real time at tickRate until stop(). A match whose tick ran long starts its
+     * next one a full period later instead of bursting to catch up.
+     */
+    public void start(double tickRate){
+        if(isStarted())
+            throw new IllegalStateException("MatchServer: matches are already running");
+
+        long period = (long)(Time.SECOND / tickRate);
+        startTime = Time.getTime();
+        for(Slot slot : slots){
+            // scheduleWithFixedDelay never runs a match on two threads at once, and never bursts
+            slot.schedule = executor.scheduleWithFixedDelay(() -> {
+                if(!tick(slot))
+                    throw new IllegalStateException("MatchServer: match failed");
+            }, 0, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void stop(){
+        for(Slot slot : slots){
+            if(slot.schedule != null){
+                slot.schedule.cancel(false);
+                slot.schedule = null;
+            }
+        }
+    }
+
+    private boolean isStarted(){
+        for(Slot slot : slots)
+            if(slot.schedule != null)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Runs one tick of the slot's match. A match that throws is reported and not ticked again,
+     * the other matches keep going.
+     */
+    private boolean tick(Slot slot){
+        long start = Time.getTime();
+        try {
+            slot.script.apply(slot.match);
+            slot.match.input();
+            slot.match.update();
+        }catch (Throwable e){
+            System.err.println("MatchServer: match with seed " + slot.match.getSeed() + " failed at tick " + slot.match.getTick());
+            e.printStackTrace();
+            slot.stats.fail(e);
+            return false;
+        }
+
+        slot.stats.record(Time.getTime() - start);
+        return true;
+    }
+
+    public void shutdown(){
+        stop();
+        executor.shutdownNow();
+        for(Slot slot : slots)
+            slot.match.cleanUp();
+    }
+
+    public int getMatchCount(){
+        return slots.size();
+    }
+
+    public Match getMatch(int i){
+        return slots.get(i).match;
+    }
+
+    public MatchStats getStats(int i){
+        return slots.get(i).stats;
+    }
+
+    public long getTotalTicks(){
+        long ticks = 0;
+        for(Slot slot : slots)
+            ticks += slot.stats.getTicks();
+
+        return ticks;
+    }
+
+    /**
+     * Ticks of all matches together per second, since the last run() or start().
+     */
+    public double getTicksPerSecond(){
+        long elapsed = Time.getTime() - startTime;
+        return elapsed <= 0 ? 0 : getTotalTicks() / (elapsed / (double)Time.SECOND);
+    }
+
+    public static void main(String[] args){
+        int matches = 64;
+        long ticks = 2000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-matches"))
+                matches = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-ticks"))
+                ticks = Long.parseLong(args[i + 1]);
+            else if(args[i].equals("-threads"))
+                threads = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        MatchServer server = new MatchServer(threads);
+        for(int i = 0; i < matches; i++)
+            server.addMatch(SplitMix64.seed(seed, i));
+
+        server.run(ticks);
+        double ticksPerSecond = server.getTicksPerSecond();
+
+        for(int i = 0; i < server.getMatchCount(); i++){
+            Match match = server.getMatch(i);
+            MatchStats stats = server.getStats(i);
+            System.out.println("match " + i + ": level " + match.getLevelNum()
+                    + ", " + stats.getTicks() + " ticks, avg " + HeadlessRunner.micros((long)stats.getAverage())
+                    + " us, p50 " + HeadlessRunner.micros(stats.getPercentile(0.5))
+                    + " us, p99 " + HeadlessRunner.micros(stats.getPercentile(0.99))
+                    + " us, max " + HeadlessRunner.micros(stats.getMax())
+                    + " us, hash " + Long.toHexString(match.getLevel().getStateHash())
+                    + (stats.getFailure() != null ? ", FAILED" : ""));
+        }
+        System.out.println(matches + " matches on " + threads + " threads: " + server.getTotalTicks() + " ticks, "
+                + String.format("%.0f", ticksPerSecond) + " ticks/s");
+
+        server.shutdown();
+    }
+}
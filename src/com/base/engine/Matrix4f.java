@@ -1,64 +1,89 @@
 package com.base.engine;
 
+import java.nio.FloatBuffer;
+
+/**
+ * 4x4 matrix stored as a flat column-major float[16], the layout OpenGL expects,
+ * so it can be uploaded without transposing. get(row, column) and set(row, column) hide the layout.
+ */
 public class Matrix4f {
-    private float [][] m;
+    private float[] m;
 
     public Matrix4f(){
-        m = new float[4][4];
+        m = new float[16];
     }
 
     public Matrix4f Identity(){
-        m[0][0] = 1; m[0][1] = 0; m[0][2] = 0; m[0][3] = 0;
-        m[1][0] = 0; m[1][1] = 1; m[1][2] = 0; m[1][3] = 0;
-        m[2][0] = 0; m[2][1] = 0; m[2][2] = 1; m[2][3] = 0;
-        m[3][0] = 0; m[3][1] = 0; m[3][2] = 0; m[3][3] = 1;
+        m[0] = 1; m[4] = 0; m[8] = 0;  m[12] = 0;
+        m[1] = 0; m[5] = 1; m[9] = 0;  m[13] = 0;
+        m[2] = 0; m[6] = 0; m[10] = 1; m[14] = 0;
+        m[3] = 0; m[7] = 0; m[11] = 0; m[15] = 1;
 
         return this;
     }
 
     public Matrix4f Translation(float x, float y, float z){
-        m[0][0] = 1; m[0][1] = 0; m[0][2] = 0; m[0][3] = x;
-        m[1][0] = 0; m[1][1] = 1; m[1][2] = 0; m[1][3] = y;
-        m[2][0] = 0; m[2][1] = 0; m[2][2] = 1; m[2][3] = z;
-        m[3][0] = 0; m[3][1] = 0; m[3][2] = 0; m[3][3] = 1;
+        m[0] = 1; m[4] = 0; m[8] = 0;  m[12] = x;
+        m[1] = 0; m[5] = 1; m[9] = 0;  m[13] = y;
+        m[2] = 0; m[6] = 0; m[10] = 1; m[14] = z;
+        m[3] = 0; m[7] = 0; m[11] = 0; m[15] = 1;
 
         return this;
     }
 
     public Matrix4f Rotation(float x, float y, float z){
-        Matrix4f rx = new Matrix4f();
-        Matrix4f ry = new Matrix4f();
-        Matrix4f rz = new Matrix4f();
-
-        x = (float)Math.toRadians(x);
-        y = (float)Math.toRadians(y);
-        z = (float)Math.toRadians(z);
-
-        rz.m[0][0] = (float)Math.cos(z); rz.m[0][1] = -(float)Math.sin(z); rz.m[0][2] = 0; rz.m[0][3] = 0;
-        rz.m[1][0] = (float)Math.sin(z); rz.m[1][1] = (float)Math.cos(z); rz.m[1][2] = 0; rz.m[1][3] = 0;
-        rz.m[2][0] = 0; rz.m[2][1] = 0; rz.m[2][2] = 1; rz.m[2][3] = 0;
-        rz.m[3][0] = 0; rz.m[3][1] = 0; rz.m[3][2] = 0; rz.m[3][3] = 1;
-
-        rx.m[0][0] = 1; rx.m[0][1] = 0; rx.m[0][2] = 0; rx.m[0][3] = 0;
-        rx.m[1][0] = 0; rx.m[1][1] = (float)Math.cos(x); rx.m[1][2] = -(float)Math.sin(x); rx.m[1][3] = 0;
-        rx.m[2][0] = 0; rx.m[2][1] = (float)Math.sin(x); rx.m[2][2] = (float)Math.cos(x); rx.m[2][3] = 0;
-        rx.m[3][0] = 0; rx.m[3][1] = 0; rx.m[3][2] = 0; rx.m[3][3] = 1;
-
-        ry.m[0][0] = (float)Math.cos(y); ry.m[0][1] = 0; ry.m[0][2] = -(float)Math.sin(y); ry.m[0][3] = 0;
-        ry.m[1][0] = 0; ry.m[1][1] = 1; ry.m[1][2] = 0; ry.m[1][3] = 0;
-        ry.m[2][0] = (float)Math.sin(y); ry.m[2][1] = 0; ry.m[2][2] = (float)Math.cos(y); ry.m[2][3] = 0;
-        ry.m[3][0] = 0; ry.m[3][1] = 0; ry.m[3][2] = 0; ry.m[3][3] = 1;
+        return InitTransformation(0, 0, 0, x, y, z, 1, 1, 1);
+    }
 
-        m = rz.mul(ry.mul(rx)).getM();
+    public Matrix4f Scale(float x, float y, float z){
+        m[0] = x; m[4] = 0; m[8] = 0;  m[12] = 0;
+        m[1] = 0; m[5] = y; m[9] = 0;  m[13] = 0;
+        m[2] = 0; m[6] = 0; m[10] = z; m[14] = 0;
+        m[3] = 0; m[7] = 0; m[11] = 0; m[15] = 1;
 
         return this;
     }
 
-    public Matrix4f Scale(float x, float y, float z){
-        m[0][0] = x; m[0][1] = 0; m[0][2] = 0; m[0][3] = 0;
-        m[1][0] = 0; m[1][1] = y; m[1][2] = 0; m[1][3] = 0;
-        m[2][0] = 0; m[2][1] = 0; m[2][2] = z; m[2][3] = 0;
-        m[3][0] = 0; m[3][1] = 0; m[3][2] = 0; m[3][3] = 1;
+    public Matrix4f InitTransformation(Vector3f translation, Vector3f rotation, Vector3f scale){
+        return InitTransformation(translation.getX(), translation.getY(), translation.getZ(),
+                                  rotation.getX(), rotation.getY(), rotation.getZ(),
+                                  scale.getX(), scale.getY(), scale.getZ());
+    }
+
+    /**
+     * Translation * Rotation * Scale in one pass. The rotation is in degrees and applied as Z * Y * X.
+     */
+    public Matrix4f InitTransformation(float tx, float ty, float tz, float rx, float ry, float rz, float sx, float sy, float sz){
+        float x = (float)Math.toRadians(rx);
+        float y = (float)Math.toRadians(ry);
+        float z = (float)Math.toRadians(rz);
+
+        float cosX = (float)Math.cos(x);
+        float sinX = (float)Math.sin(x);
+        float cosY = (float)Math.cos(y);
+        float sinY = (float)Math.sin(y);
+        float cosZ = (float)Math.cos(z);
+        float sinZ = (float)Math.sin(z);
+
+        m[0] = cosZ * cosY * sx;
+        m[1] = sinZ * cosY * sx;
+        m[2] = sinY * sx;
+        m[3] = 0;
+
+        m[4] = (-cosZ * sinY * sinX - sinZ * cosX) * sy;
+        m[5] = (-sinZ * sinY * sinX + cosZ * cosX) * sy;
+        m[6] = cosY * sinX * sy;
+        m[7] = 0;
+
+        m[8] = (-cosZ * sinY * cosX + sinZ * sinX) * sz;
+        m[9] = (-sinZ * sinY * cosX - cosZ * sinX) * sz;
+        m[10] = cosY * cosX * sz;
+        m[11] = 0;
+
+        m[12] = tx;
+        m[13] = ty;
+        m[14] = tz;
+        m[15] = 1;
 
         return this;
     }
@@ -68,75 +93,118 @@ public class Matrix4f {
         float tanHalfFoV = (float)Math.tan(Math.toRadians(fov / 2));
         float zRange = zNear - zFar;
 
-        m[0][0] = 1 / (tanHalfFoV * ar);    m[0][1] = 0;                m[0][2] = 0; m[0][3] = 0;
-        m[1][0] = 0;                        m[1][1] = 1 / tanHalfFoV;   m[1][2] = 0; m[1][3] = 0;
-        m[2][0] = 0;                        m[2][1] = 0;                m[2][2] = (-zNear - zFar)/zRange; m[2][3] = 2 * zFar * zNear / zRange;
-        m[3][0] = 0;                        m[3][1] = 0;                m[3][2] = 1; m[3][3] = 0;
+        m[0] = 1 / (tanHalfFoV * ar);   m[4] = 0;                m[8] = 0;                       m[12] = 0;
+        m[1] = 0;                       m[5] = 1 / tanHalfFoV;   m[9] = 0;                       m[13] = 0;
+        m[2] = 0;                       m[6] = 0;                m[10] = (-zNear - zFar)/zRange; m[14] = 2 * zFar * zNear / zRange;
+        m[3] = 0;                       m[7] = 0;                m[11] = 1;                      m[15] = 0;
 
         return this;
     }
 
     public Matrix4f CameraRotation(Vector3f forward, Vector3f up){
-        Vector3f f = forward.normalize();
-
-        Vector3f r = new Vector3f(up.normalize().getX(), up.normalize().getY(), up.normalize().getZ());
-        //System.out.println(f.normalize().getX() + " " + f.normalize().getY() + " " + f.normalize().getZ());
-
-        r = r.cross(f);
-        Vector3f u = f.cross(r);
-
-        return InitRotation(f, u, r);
+        float forwardLength = forward.length();
+        float fx = forward.getX() / forwardLength;
+        float fy = forward.getY() / forwardLength;
+        float fz = forward.getZ() / forwardLength;
+
+        float upLength = up.length();
+        float ux = up.getX() / upLength;
+        float uy = up.getY() / upLength;
+        float uz = up.getZ() / upLength;
+
+        // r = up x f
+        float rx = uy * fz - uz * fy;
+        float ry = uz * fx - ux * fz;
+        float rz = ux * fy - uy * fx;
+
+        // u = f x r
+        ux = fy * rz - fz * ry;
+        uy = fz * rx - fx * rz;
+        uz = fx * ry - fy * rx;
+
+        return InitRotation(fx, fy, fz, ux, uy, uz, rx, ry, rz);
     }
 
     public Matrix4f InitRotation(Vector3f forward, Vector3f up, Vector3f right)
     {
-        Vector3f f = forward;
-        Vector3f r = right;
-        Vector3f u = up;
+        return InitRotation(forward.getX(), forward.getY(), forward.getZ(),
+                            up.getX(), up.getY(), up.getZ(),
+                            right.getX(), right.getY(), right.getZ());
+    }
 
-        m[0][0] = r.getX();	m[0][1] = r.getY();	m[0][2] = r.getZ();	m[0][3] = 0;
-        m[1][0] = u.getX();	m[1][1] = u.getY();	m[1][2] = u.getZ();	m[1][3] = 0;
-        m[2][0] = f.getX();	m[2][1] = f.getY();	m[2][2] = f.getZ();	m[2][3] = 0;
-        m[3][0] = 0;		m[3][1] = 0;		m[3][2] = 0;		m[3][3] = 1;
+    private Matrix4f InitRotation(float fx, float fy, float fz, float ux, float uy, float uz, float rx, float ry, float rz)
+    {
+        m[0] = rx;	m[4] = ry;	m[8] = rz;	m[12] = 0;
+        m[1] = ux;	m[5] = uy;	m[9] = uz;	m[13] = 0;
+        m[2] = fx;	m[6] = fy;	m[10] = fz;	m[14] = 0;
+        m[3] = 0;	m[7] = 0;	m[11] = 0;	m[15] = 1;
 
         return this;
     }
 
     public Matrix4f mul(Matrix4f right){
-        Matrix4f result = new Matrix4f();
-
-        for(int i = 0; i < 4; i++){
-            for(int j = 0; j < 4; j++){
-                result.set(i, j, m[i][0] * right.get(0, j) +
-                                        m[i][1] * right.get(1, j) +
-                                        m[i][2] * right.get(2, j) +
-                                        m[i][3] * right.get(3, j));
-            }
+        return mulInto(right, new Matrix4f());
+    }
+
+    /**
+     * dest = this * right. dest may be this or right.
+     */
+    public Matrix4f mulInto(Matrix4f right, Matrix4f dest){
+        float[] a = m;
+        float[] b = right.m;
+        float[] d = dest.m;
+
+        float a00 = a[0], a01 = a[4], a02 = a[8],  a03 = a[12];
+        float a10 = a[1], a11 = a[5], a12 = a[9],  a13 = a[13];
+        float a20 = a[2], a21 = a[6], a22 = a[10], a23 = a[14];
+        float a30 = a[3], a31 = a[7], a32 = a[11], a33 = a[15];
+
+        for(int column = 0; column < 16; column += 4){
+            float b0 = b[column];
+            float b1 = b[column + 1];
+            float b2 = b[column + 2];
+            float b3 = b[column + 3];
+
+            d[column]     = a00 * b0 + a01 * b1 + a02 * b2 + a03 * b3;
+            d[column + 1] = a10 * b0 + a11 * b1 + a12 * b2 + a13 * b3;
+            d[column + 2] = a20 * b0 + a21 * b1 + a22 * b2 + a23 * b3;
+            d[column + 3] = a30 * b0 + a31 * b1 + a32 * b2 + a33 * b3;
         }
 
-        return result;
+        return dest;
+    }
+
+    /**
+     * Writes the matrix into the buffer in column-major order, ready for glUniformMatrix4fv with transpose = false.
+     */
+    public FloatBuffer store(FloatBuffer buffer){
+        buffer.put(m);
+
+        return buffer;
+    }
+
+    public Matrix4f set(Matrix4f value){
+        System.arraycopy(value.m, 0, m, 0, 16);
+
+        return this;
     }
 
     public float get(int x, int y){
-        return m[x][y];
+        return m[y * 4 + x];
     }
 
     public void set(int x, int y, float value){
-        m[x][y] = value;
+        m[y * 4 + x] = value;
     }
 
-    public float[][] getM() {
-        float[][] result = new float[4][4];
-
-        for(int i = 0; i < 4; i++){
-            for(int j = 0; j < 4; j++){
-                result[i][j] = m[i][j];
-            }
-        }
-        return result;
+    /**
+     * Returns the backing column-major array, changes to it change the matrix.
+     */
+    public float[] getM() {
+        return m;
     }
 
-    public void setM(float[][] m) {
+    public void setM(float[] m) {
         this.m = m;
     }
 
@@ -0,0 +1,92 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Generated test maps for the pathfinding benchmarks, as one wall flag per cell, row by row.
+ * The same size and seed always give the same map.
+ */
+public class MazeGenerator {
+
+    /**
+     * A perfect maze carved with a randomized depth first search: rooms on the odd cells, the walls
+     * between them knocked out, so there is exactly one path between any two free cells.
+     */
+    public static boolean[] maze(int size, long seed){
+        boolean[] walls = new boolean[size * size];
+        Arrays.fill(walls, true);
+
+        int rooms = (size - 1) / 2;
+        boolean[] visited = new boolean[rooms * rooms];
+        int[] stack = new int[rooms * rooms];
+        int[] candidates = new int[4];
+        long[] state = new long[]{SplitMix64.seed(seed, 0)};
+
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        walls[1 + size] = false;
+
+        while(top > 0){
+            int room = stack[top - 1];
+            int roomX = room % rooms;
+            int roomZ = room / rooms;
+
+            int count = 0;
+            for(int d = 0; d < 4; d++){
+                int nx = roomX + FlowField.DIRECTION_X[d];
+                int nz = roomZ + FlowField.DIRECTION_Z[d];
+                if(nx >= 0 && nz >= 0 && nx < rooms && nz < rooms && !visited[nx + nz * rooms])
+                    candidates[count++] = d;
+            }
+
+            if(count == 0){
+                top--;
+                continue;
+            }
+
+            int d = candidates[SplitMix64.nextInt(state, 0, count)];
+            int nx = roomX + FlowField.DIRECTION_X[d];
+            int nz = roomZ + FlowField.DIRECTION_Z[d];
+            visited[nx + nz * rooms] = true;
+            stack[top++] = nx + nz * rooms;
+
+            walls[(roomX * 2 + 1 + FlowField.DIRECTION_X[d]) + (roomZ * 2 + 1 + FlowField.DIRECTION_Z[d]) * size] = false;
+            walls[(nx * 2 + 1) + (nz * 2 + 1) * size] = false;
+        }
+
+        return walls;
+    }
+
+    /**
+     * A grid of square rooms of roomSize cells (walls included), each joined to the room to its right
+     * and below by a doorway at a random place, plus random pillars inside the rooms.
+     */
+    public static boolean[] rooms(int size, int roomSize, long seed){
+        boolean[] walls = new boolean[size * size];
+        long[] state = new long[]{SplitMix64.seed(seed, 1)};
+
+        for(int x = 0; x < size; x++){
+            for(int z = 0; z < size; z++){
+                boolean wall = x % roomSize == 0 || z % roomSize == 0 || x == size - 1 || z == size - 1;
+                // Pillars, never next to a wall so they can not close a doorway
+                if(!wall && x % roomSize > 1 && z % roomSize > 1 && x % roomSize < roomSize - 1 && z % roomSize < roomSize - 1)
+                    wall = SplitMix64.nextInt(state, 0, 16) == 0;
+                walls[x + z * size] = wall;
+            }
+        }
+
+        for(int roomX = 0; roomX * roomSize + roomSize < size; roomX++){
+            for(int roomZ = 0; roomZ * roomSize + roomSize < size; roomZ++){
+                int x = roomX * roomSize;
+                int z = roomZ * roomSize;
+                if(x + roomSize * 2 <= size)
+                    walls[(x + roomSize) + (z + 1 + SplitMix64.nextInt(state, 0, roomSize - 1)) * size] = false;
+                if(z + roomSize * 2 <= size)
+                    walls[(x + 1 + SplitMix64.nextInt(state, 0, roomSize - 1)) + (z + roomSize) * size] = false;
+            }
+        }
+
+        return walls;
+    }
+}
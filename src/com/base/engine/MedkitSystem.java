@@ -0,0 +1,151 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * All medkits of a level, stored as one array per component. Picking one up is published as an event,
+ * the level removes it when it handles the event.
+ */
+public class MedkitSystem extends EntityStore {
+    public static final float PICKUP_DISTANCE = 0.75f;
+    public static final int HEAL_AMOUNT = 25;
+
+    public static final float SCALE = 0.25f;
+
+    public static final float SIZEY = SCALE;
+    public static final float SIZEX = (float)((double)SIZEY / (0.67857142857142857142857142857143 * 2.5));
+    public static final float START = 0;
+
+    public static final float TEX_MAX_X = 1;
+    public static final float TEX_MAX_Y = 1;
+    public static final float TEX_MIN_X = 0;
+    public static final float TEX_MIN_Y = 0;
+
+    public static final String TEXTURE = "MEDIA0.png";
+
+    private static Mesh mesh;
+    private static Material material;
+
+    private float[] x;
+    private float[] z;
+    private float[] yaw;
+    private Level level;
+
+    public MedkitSystem(Level level){
+        this.level = level;
+        x = new float[0];
+        z = new float[0];
+        yaw = new float[0];
+    }
+
+    public int add(float posX, float posZ){
+        int handle = create();
+        int i = size() - 1;
+
+        x[i] = posX;
+        z[i] = posZ;
+        yaw[i] = 0;
+
+        return handle;
+    }
+
+    @Override
+    protected void grow(int capacity){
+        x = Arrays.copyOf(x, capacity);
+        z = Arrays.copyOf(z, capacity);
+        yaw = Arrays.copyOf(yaw, capacity);
+    }
+
+    @Override
+    protected void move(int from, int to){
+        x[to] = x[from];
+        z[to] = z[from];
+        yaw[to] = yaw[from];
+    }
+
+    public void update(){
+        billboard();
+        pickup();
+    }
+
+    /**
+     * Turns every medkit to face the camera.
+     */
+    public void billboard(){
+        Vector3f camPos = level.getPlayer().getCamera().getPos();
+
+        for(int i = 0; i < size(); i++){
+            float directionX = camPos.getX() - x[i];
+            float directionZ = camPos.getZ() - z[i];
+
+            float angleToFaceCamera = (float)Math.toDegrees(Math.atan(directionZ/directionX));
+
+            if(directionX < 0)
+                angleToFaceCamera += 180.0f;
+
+            yaw[i] = angleToFaceCamera + 90.0f;
+        }
+    }
+
+    /**
+     * Publishes a pickup for every medkit in reach, as long as the player is hurt.
+     */
+    public void pickup(){
+        Vector3f camPos = level.getPlayer().getCamera().getPos();
+        Player player = level.getPlayer();
+        EventBus events = level.getEvents();
+
+        for(int i = size() - 1; i >= 0; i--){
+            float directionX = camPos.getX() - x[i];
+            float directionY = camPos.getY();
+            float directionZ = camPos.getZ() - z[i];
+
+            if(Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ) < PICKUP_DISTANCE){
+                if(player.getHealth() < player.getMaxHealth())
+                    events.publishPickupMedkit(handleAt(i), HEAL_AMOUNT);
+            }
+        }
+    }
+
+    /**
+     * Draws count medkits, mvps holding their packed matrices from BatchTransform. Has to run on the GL thread.
+     */
+    public static void render(Shader shader, float[] mvps, int count){
+        if(count == 0)
+            return;
+
+        if(mesh == null){
+            Vertex[] vertices = new Vertex[]{
+                    new Vertex(new Vector3f(-SIZEX,START,START), new Vector2f(TEX_MAX_X,TEX_MAX_Y)),
+                    new Vertex(new Vector3f(-SIZEX,SIZEY,START), new Vector2f(TEX_MAX_X,TEX_MIN_Y)),
+                    new Vertex(new Vector3f(SIZEX,SIZEY,START), new Vector2f(TEX_MIN_X,TEX_MIN_Y)),
+                    new Vertex(new Vector3f(SIZEX,START,START), new Vector2f(TEX_MIN_X,TEX_MAX_Y))
+            };
+
+            int[] indices = new int[]{0,1,2,
+                    0,2,3};
+
+            mesh = new Mesh(vertices, indices);
+            material = new Material(TextureCache.acquire(TEXTURE));
+        }
+
+        shader.bind();
+        for(int i = 0; i < count; i++){
+            shader.updateUniforms(mvps, i, material);
+            mesh.draw();
+        }
+        shader.unbind();
+    }
+
+    public float[] getX(){
+        return x;
+    }
+
+    public float[] getZ(){
+        return z;
+    }
+
+    public float[] getYaw(){
+        return yaw;
+    }
+}
@@ -0,0 +1,947 @@
+package com.base.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * All monsters of a level, stored as one array per component. Monsters always stand on the ground,
+ * so there is no y position.
+ *
+ * update() runs in two phases. The think phase runs the AI of every monster in parallel against a
+ * read-only world: it only writes the monster's own slots, records its move, and publishes what it does
+ * to the rest of the world (open doors, damage the player) as events on the level's EventBus. The commit
+ * phase then applies the moves. Every monster has its own random stream, so the result is bit-identical
+ * however many threads the think phase ran on.
+ *
+ * The think phase is scheduled by distance to the player (AI level of detail). Near monsters think every
+ * tick exactly as before. Mid-range monsters think every LOD_MID_INTERVAL ticks, staggered by index, and
+ * far ones round-robin, at most LOD_FAR_BUDGET of them per tick. A monster that skipped ticks gets the
+ * time it missed (up to LOD_MAX_DELTA) as its delta the next time it thinks.
+ *
+ * Monsters start asleep and cost nothing until something wakes them: the player entering their sector,
+ * a door into their sector opening, gunfire in or next to it, or getting shot. Sectors only connect
+ * through doors, so an asleep monster can not have the player in its line of sight. Dead monsters go
+ * back to sleep for good.
+ *
+ * Hit stun and the death animation run on the level's TimerWheel: being shot schedules the end of the
+ * stun or the next frame of dying, so no monster counts time down every tick.
+ *
+ * After the commit phase the separation phase pushes monsters that overlap each other or the player
+ * apart, with a sweep and prune broadphase finding the overlaps. The player does not get pushed.
+ */
+public class MonsterSystem extends EntityStore {
+    public static final float SCALE = 0.7f;
+
+    public static final float SIZEY = SCALE;
+    public static final float SIZEX = (float)((double)SIZEY / (1.9310344837686206896551724137931 * 2.0));
+    public static final float START = 0;
+
+    public static final float TEX_MAX_X = 1;
+    public static final float TEX_MAX_Y = 1;
+    public static final float TEX_MIN_X = 0;
+    public static final float TEX_MIN_Y = 0;
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_CHASE = 1;
+    public static final int STATE_ATTACK = 2;
+    public static final int STATE_DYING = 3;
+    public static final int STATE_DEAD = 4;
+
+    public static final int FLAG_CAN_LOOK = 1;
+    public static final int FLAG_CAN_ATTACK = 2;
+    public static final int FLAG_HIT_STUN = 4;
+    public static final int FLAG_ASLEEP = 8;
+
+    public static final float MOVE_SPEED = 1;
+    public static final float MOVEMENT_STOP_DISTANCE = 1.5f;
+    public static final float MONSTER_WIDTH = 0.2f;
+    public static final float MONSTER_LENGTH = 0.2f;
+    public static final float SHOOT_DISTANCE = 1000.0f;
+    public static final float SHOT_ANGLE = 10.0f;
+    public static final float ATTACK_CHANCE = 0.05f;
+    public static final int MAX_HEALTH = 100;
+    public static final int DAMAGE_MIN = 5;
+    public static final int DAMAGE_MAX = 25;
+    public static final double HIT_STUN_DURATION = 0.23;
+
+    // Death animation: seconds after death each frame is shown from, the frame and the sprite scale. The last one is the corpse.
+    private static final double[] DEATH_TIMES = new double[]{0, 0.1, 0.3, 0.45, 0.6};
+    private static final int[] DEATH_FRAMES = new int[]{8, 9, 10, 11, 12};
+    private static final float[] DEATH_SCALE_X = new float[]{1, 1.7f, 1.7f, 1.7f, 1.75862068965517241379310f};
+    private static final float[] DEATH_SCALE_Y = new float[]{0.96428571428571428571428571428571f, 0.9f, 0.9f, 0.5f, 0.285714285714285714f};
+
+    // Below this many monsters per task the think phase is not split any further
+    public static final int THINK_BATCH_SIZE = 32;
+
+    // AI level of detail, distances in cells from the player
+    public static final float LOD_NEAR_DISTANCE = 10;
+    public static final float LOD_MID_DISTANCE = 25;
+    public static final int LOD_MID_INTERVAL = 4;
+    public static final int LOD_FAR_BUDGET = 8;
+    // Longest step a monster takes at once after skipping ticks, so it can not move through walls.
+    // Time beyond it is dropped.
+    public static final double LOD_MAX_DELTA = 0.25;
+
+    public static final int LOD_NEAR = 0;
+    public static final int LOD_MID = 1;
+    public static final int LOD_FAR = 2;
+
+    public static final String[] ANIMATIONS = new String[]{
+            "SSWVA1.png", "SSWVB1.png", "SSWVC1.png", "SSWVD1.png",     // Walking
+            "SSWVE0.png", "SSWVF0.png", "SSWVG0.png",                   // Shooting
+            "SSWVH0.png",                                               // Hit
+            "SSWVI0.png", "SSWVJ0.png", "SSWVK0.png", "SSWVL0.png",     // Dying
+            "SSWVM0.png"                                                // Dead
+    };
+
+    private static Material[] frameMaterials;
+    private static Mesh mesh;
+
+    private float[] x;
+    private float[] z;
+    private float[] yaw;
+    private float[] scaleX;
+    private float[] scaleY;
+    private int[] state;
+    private int[] frame;
+    private int[] flags;
+    private int[] health;
+    private int[] hitStunTimer;
+    private int[] deathStep;
+    private long[] rngState;
+
+    // Moves of the current update, written by the think phase, applied by the commit phase
+    private float[] moveX;
+    private float[] moveZ;
+
+    // Time that passed since the monster last thought
+    private double[] pendingDelta;
+    private int[] lod;
+    // The monsters thinking in the current update and the delta each of them thinks with
+    private int[] active;
+    private double[] activeDelta;
+    private int activeCount;
+    private int farCursor;
+    private boolean lodEnabled;
+
+    // Overlapping awake monsters, box 0 is the player and box k + 1 the monster in awake slot k
+    private final SweepAndPrune broadphase = new SweepAndPrune(Player.PLAYER_SIZE * 2);
+    private final SweepAndPrune.PairCallback separateJob = this::pushApart;
+    private float[] pushX;
+    private float[] pushZ;
+    private long lastSeparationTime;
+
+    // Indices of the awake monsters, the only ones the think phase looks at, and every monster's slot in it
+    private int[] awake;
+    private int[] awakeSlot;
+    private int awakeCount;
+    // Handles of the asleep monsters of each sector, all woken at once
+    private int[][] sleepers;
+    private int[] sleeperCount;
+    private int playerSector;
+
+    // AI cost, for profiling output
+    private final int[] lastThinking = new int[3];
+    private final long[] totalThinking = new long[3];
+    private long lastThinkTime;
+    private long totalThinkTime;
+    private long totalAwake;
+    private long thinkRuns;
+
+    // World as seen by the think phase, fixed for the whole update
+    private float camX;
+    private float camY;
+    private float camZ;
+    private double time;
+    private double delta;
+    private EventBus events;
+
+    private Level level;
+    private ForkJoinPool pool;
+    private final JobSystem.RangeJob thinkJob = this::think;
+    private final TimerWheel.Callback endHitStunJob = this::endHitStun;
+    private final TimerWheel.Callback deathStepJob = this::deathStep;
+    private long baseSeed;
+    private long spawned;
+
+    public MonsterSystem(Level level, long seed){
+        this.level = level;
+        this.baseSeed = seed;
+        x = new float[0];
+        z = new float[0];
+        yaw = new float[0];
+        scaleX = new float[0];
+        scaleY = new float[0];
+        state = new int[0];
+        frame = new int[0];
+        flags = new int[0];
+        health = new int[0];
+        hitStunTimer = new int[0];
+        deathStep = new int[0];
+        rngState = new long[0];
+        moveX = new float[0];
+        moveZ = new float[0];
+        pendingDelta = new double[0];
+        lod = new int[0];
+        active = new int[0];
+        activeDelta = new double[0];
+        lodEnabled = true;
+        pushX = new float[0];
+        pushZ = new float[0];
+        awake = new int[0];
+        awakeSlot = new int[0];
+        sleepers = new int[level.getSectors().getSectorCount()][0];
+        sleeperCount = new int[sleepers.length];
+        playerSector = SectorMap.NO_SECTOR;
+        pool = level.getMatch().getPool();
+    }
+
+    /**
+     * Pool the think phase runs on, or null to run it on the calling thread.
+     */
+    public void setPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    /**
+     * With the level of detail disabled every monster thinks every tick.
+     */
+    public void setLodEnabled(boolean lodEnabled){
+        this.lodEnabled = lodEnabled;
+    }
+
+    public int add(float posX, float posZ){
+        int handle = create();
+        int i = size() - 1;
+
+        x[i] = posX;
+        z[i] = posZ;
+        yaw[i] = 0;
+        scaleX[i] = 1;
+        scaleY[i] = 1;
+        state[i] = STATE_IDLE;
+        frame[i] = 0;
+        flags[i] = 0;
+        health[i] = MAX_HEALTH;
+        hitStunTimer[i] = TimerWheel.NULL_TIMER;
+        deathStep[i] = 0;
+        rngState[i] = SplitMix64.seed(baseSeed, spawned++);
+        pendingDelta[i] = 0;
+
+        flags[i] = FLAG_ASLEEP;
+        awakeSlot[i] = -1;
+        int sector = level.getSectors().getSector(posX, posZ);
+        if(sector == SectorMap.NO_SECTOR){
+            wake(i);
+        }
+        else {
+            if(sleeperCount[sector] == sleepers[sector].length)
+                sleepers[sector] = Arrays.copyOf(sleepers[sector], Math.max(4, sleeperCount[sector] * 2));
+            sleepers[sector][sleeperCount[sector]++] = handle;
+        }
+
+        return handle;
+    }
+
+    @Override
+    protected void grow(int capacity){
+        x = Arrays.copyOf(x, capacity);
+        z = Arrays.copyOf(z, capacity);
+        yaw = Arrays.copyOf(yaw, capacity);
+        scaleX = Arrays.copyOf(scaleX, capacity);
+        scaleY = Arrays.copyOf(scaleY, capacity);
+        state = Arrays.copyOf(state, capacity);
+        frame = Arrays.copyOf(frame, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        health = Arrays.copyOf(health, capacity);
+        hitStunTimer = Arrays.copyOf(hitStunTimer, capacity);
+        deathStep = Arrays.copyOf(deathStep, capacity);
+        rngState = Arrays.copyOf(rngState, capacity);
+        moveX = Arrays.copyOf(moveX, capacity);
+        moveZ = Arrays.copyOf(moveZ, capacity);
+        pendingDelta = Arrays.copyOf(pendingDelta, capacity);
+        lod = Arrays.copyOf(lod, capacity);
+        active = Arrays.copyOf(active, capacity);
+        activeDelta = Arrays.copyOf(activeDelta, capacity);
+        pushX = Arrays.copyOf(pushX, capacity);
+        pushZ = Arrays.copyOf(pushZ, capacity);
+        awake = Arrays.copyOf(awake, capacity);
+        awakeSlot = Arrays.copyOf(awakeSlot, capacity);
+    }
+
+    @Override
+    protected void move(int from, int to){
+        x[to] = x[from];
+        z[to] = z[from];
+        yaw[to] = yaw[from];
+        scaleX[to] = scaleX[from];
+        scaleY[to] = scaleY[from];
+        state[to] = state[from];
+        frame[to] = frame[from];
+        flags[to] = flags[from];
+        health[to] = health[from];
+        hitStunTimer[to] = hitStunTimer[from];
+        deathStep[to] = deathStep[from];
+        rngState[to] = rngState[from];
+        pendingDelta[to] = pendingDelta[from];
+        awakeSlot[to] = awakeSlot[from];
+        if(awakeSlot[to] >= 0)
+            awake[awakeSlot[to]] = to;
+    }
+
+    @Override
+    public void removeAt(int index){
+        if(awakeSlot[index] >= 0)
+            removeAwake(index);
+
+        super.removeAt(index);
+    }
+
+    public boolean isAsleep(int i){
+        return (flags[i] & FLAG_ASLEEP) != 0;
+    }
+
+    public void wake(int i){
+        if(!isAsleep(i))
+            return;
+
+        flags[i] &= ~FLAG_ASLEEP;
+        pendingDelta[i] = 0;
+        awakeSlot[i] = awakeCount;
+        awake[awakeCount++] = i;
+    }
+
+    /**
+     * Puts the monster to sleep for good. Only for monsters that have nothing left to do.
+     */
+    private void sleep(int i){
+        flags[i] |= FLAG_ASLEEP;
+        removeAwake(i);
+    }
+
+    private void removeAwake(int i){
+        int slot = awakeSlot[i];
+        int last = awake[--awakeCount];
+        awake[slot] = last;
+        awakeSlot[last] = slot;
+        awakeSlot[i] = -1;
+    }
+
+    /**
+     * Puts the monsters woken since the awake count was start in index order. Events are drained in the
+     * order their producers won the ring, which depends on thread scheduling, while the order of the awake
+     * list decides which far monsters get to think. Sorting after the drain keeps a seed playing the same
+     * on any number of threads.
+     */
+    public void sortAwakeFrom(int start){
+        for(int k = start + 1; k < awakeCount; k++){
+            int i = awake[k];
+            int j = k - 1;
+            while(j >= start && awake[j] > i){
+                awake[j + 1] = awake[j];
+                awakeSlot[awake[j + 1]] = j + 1;
+                j--;
+            }
+            awake[j + 1] = i;
+            awakeSlot[i] = j + 1;
+        }
+    }
+
+    /**
+     * Wakes every monster asleep in sector.
+     */
+    public void wakeSector(int sector){
+        if(sector == SectorMap.NO_SECTOR)
+            return;
+
+        int[] handles = sleepers[sector];
+        for(int k = 0; k < sleeperCount[sector]; k++){
+            int i = indexOf(handles[k]);
+            if(i >= 0)
+                wake(i);
+        }
+        sleeperCount[sector] = 0;
+    }
+
+    /**
+     * Wakes the monsters in sector and in every sector a door leads to from it, e.g. on gunfire.
+     */
+    public void wakeNear(int sector){
+        if(sector == SectorMap.NO_SECTOR)
+            return;
+
+        wakeSector(sector);
+        int[] neighbours = level.getSectors().getNeighbours(sector);
+        for(int k = 0; k < neighbours.length; k++)
+            wakeSector(neighbours[k]);
+    }
+
+    /**
+     * Wakes the monsters of the sectors touching the cell, e.g. both sides of a door that opened.
+     */
+    public void wakeAround(int cellX, int cellZ){
+        SectorMap sectors = level.getSectors();
+        wakeSector(sectors.getSector(cellX, cellZ));
+        wakeSector(sectors.getSector(cellX - 1, cellZ));
+        wakeSector(sectors.getSector(cellX + 1, cellZ));
+        wakeSector(sectors.getSector(cellX, cellZ - 1));
+        wakeSector(sectors.getSector(cellX, cellZ + 1));
+    }
+
+    public void damage(int i, int amount){
+        health[i] -= amount;
+        // Shots at the dying and the dead change nothing else
+        if(state[i] == STATE_DYING || state[i] == STATE_DEAD)
+            return;
+
+        wake(i);
+        Match match = level.getMatch();
+        TimerWheel timers = level.getTimers();
+        timers.cancel(hitStunTimer[i]);
+
+        if(health[i] <= 0){
+            state[i] = STATE_DYING;
+            flags[i] &= ~FLAG_HIT_STUN;
+            hitStunTimer[i] = TimerWheel.NULL_TIMER;
+            deathStep[i] = 0;
+            showDeathStep(i);
+            timers.schedule(match.getTick() + match.toTicks(DEATH_TIMES[1]), deathStepJob, handleAt(i));
+        }
+        else {
+            flags[i] |= FLAG_HIT_STUN;
+            frame[i] = 7;
+            hitStunTimer[i] = timers.schedule(match.getTick() + match.toTicks(HIT_STUN_DURATION), endHitStunJob, handleAt(i));
+        }
+    }
+
+    private void endHitStun(int handle){
+        int i = indexOf(handle);
+        if(i < 0)
+            return;
+
+        hitStunTimer[i] = TimerWheel.NULL_TIMER;
+        flags[i] &= ~FLAG_HIT_STUN;
+        if(state[i] == STATE_IDLE)
+            state[i] = STATE_CHASE;
+    }
+
+    /**
+     * Shows the next frame of the death animation, and once the corpse is down puts the monster to sleep.
+     */
+    private void deathStep(int handle){
+        int i = indexOf(handle);
+        if(i < 0)
+            return;
+
+        int step = ++deathStep[i];
+        showDeathStep(i);
+
+        if(step == DEATH_TIMES.length - 1){
+            state[i] = STATE_DEAD;
+            if(!isAsleep(i))
+                sleep(i);
+        }
+        else {
+            Match match = level.getMatch();
+            level.getTimers().schedule(match.getTick() + match.toTicks(DEATH_TIMES[step + 1] - DEATH_TIMES[step]), deathStepJob, handle);
+        }
+    }
+
+    private void showDeathStep(int i){
+        frame[i] = DEATH_FRAMES[deathStep[i]];
+        setScale(i, DEATH_SCALE_X[deathStep[i]], DEATH_SCALE_Y[deathStep[i]]);
+    }
+
+    public void update(){
+        think();
+        commit();
+        separate();
+    }
+
+    /**
+     * The think phase. Reads the world but only writes the monsters' own slots and publishes events.
+     */
+    public void think(){
+        Match match = level.getMatch();
+        Vector3f camPos = level.getPlayer().getCamera().getPos();
+        camX = camPos.getX();
+        camY = camPos.getY();
+        camZ = camPos.getZ();
+        time = match.getGameTime()/(double)Time.SECOND;
+        delta = match.getDelta();
+        events = level.getEvents();
+
+        long start = Time.getTime();
+        schedule(match.getTick());
+        JobSystem.parallelFor(0, activeCount, THINK_BATCH_SIZE, thinkJob, pool);
+
+        lastThinkTime = Time.getTime() - start;
+        totalThinkTime += lastThinkTime;
+        totalAwake += awakeCount;
+        thinkRuns++;
+    }
+
+    /**
+     * Picks the monsters that think in this update by their distance to the player.
+     */
+    private void schedule(long tick){
+        int sector = level.getSectors().getSector(camX, camZ);
+        if(sector != playerSector){
+            playerSector = sector;
+            wakeSector(sector);
+        }
+
+        activeCount = 0;
+        Arrays.fill(lastThinking, 0);
+
+        int farCount = 0;
+        for(int a = 0; a < awakeCount; a++){
+            int i = awake[a];
+            pendingDelta[i] += delta;
+
+            float directionX = camX - x[i];
+            float directionZ = camZ - z[i];
+            float distanceSquared = directionX * directionX + directionZ * directionZ;
+
+            if(!lodEnabled || distanceSquared < LOD_NEAR_DISTANCE * LOD_NEAR_DISTANCE)
+                lod[i] = LOD_NEAR;
+            else if(distanceSquared < LOD_MID_DISTANCE * LOD_MID_DISTANCE)
+                lod[i] = LOD_MID;
+            else
+                lod[i] = LOD_FAR;
+
+            if(lod[i] == LOD_NEAR || (lod[i] == LOD_MID && (tick + i) % LOD_MID_INTERVAL == 0))
+                activate(i);
+            else if(lod[i] == LOD_FAR)
+                farCount++;
+        }
+
+        // The far ones take turns, continuing after the last one that thought
+        int budget = Math.min(farCount, LOD_FAR_BUDGET);
+        for(int k = 0; k < awakeCount && budget > 0; k++){
+            int a = (farCursor + k) % awakeCount;
+            int i = awake[a];
+            if(lod[i] == LOD_FAR){
+                activate(i);
+                budget--;
+                farCursor = a + 1;
+            }
+        }
+    }
+
+    private void activate(int i){
+        active[activeCount] = i;
+        activeDelta[activeCount] = Math.min(pendingDelta[i], LOD_MAX_DELTA);
+        activeCount++;
+
+        pendingDelta[i] = 0;
+        lastThinking[lod[i]]++;
+        totalThinking[lod[i]]++;
+    }
+
+    /**
+     * Runs the AI of the active monsters start to end - 1. Must not write anything but their own slots.
+     */
+    private void think(int start, int end){
+        VectorPool pool = VectorPool.get();
+        pool.push();
+
+        Vector3f orientation = pool.vector3f();
+
+        for(int k = start; k < end; k++){
+            int i = active[k];
+            double delta = activeDelta[k];
+
+            moveX[i] = 0;
+            moveZ[i] = 0;
+
+            float directionX = camX - x[i];
+            float directionY = camY;
+            float directionZ = camZ - z[i];
+            float distance = (float)Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+            orientation.set(directionX / distance, directionY / distance, directionZ / distance);
+
+            billboard(i, orientation);
+            if((flags[i] & FLAG_HIT_STUN) == 0){
+                switch (state[i]){
+                    case STATE_IDLE:
+                        idleUpdate(i, orientation);
+                        break;
+                    case STATE_CHASE:
+                        chaseUpdate(i, orientation, distance, delta);
+                        break;
+                    case STATE_ATTACK:
+                        attackUpdate(i, orientation);
+                        break;
+                    // Dying is animated by timers, nothing to do for the dying and the dead
+                }
+            }
+        }
+
+        pool.pop();
+    }
+
+    /**
+     * The commit phase. Applies the moves of the think phase.
+     */
+    public void commit(){
+        for(int k = 0; k < activeCount; k++){
+            int i = active[k];
+            x[i] += moveX[i];
+            z[i] += moveZ[i];
+        }
+    }
+
+    /**
+     * The separation phase. Pushes every living awake monster out of the others and out of the player,
+     * half each for two monsters, along the axis they overlap least on. Walls and doors stop the push, and
+     * whatever overlap is left gets resolved over the next ticks. Sleeping monsters do not move, so they
+     * are left out like in every other phase.
+     *
+     * Box 0 of the broadphase is the player, box k + 1 the monster in awake slot k, whose push is in pushX[k].
+     */
+    public void separate(){
+        long start = Time.getTime();
+        int count = awakeCount;
+
+        broadphase.setCount(count + 1);
+        broadphase.setBox(0, camX, camZ, Player.PLAYER_SIZE, Player.PLAYER_SIZE);
+        for(int k = 0; k < count; k++){
+            int i = awake[k];
+            pushX[k] = 0;
+            pushZ[k] = 0;
+            broadphase.setBox(k + 1, x[i], z[i], MONSTER_WIDTH, MONSTER_LENGTH);
+            if(state[i] == STATE_DYING || state[i] == STATE_DEAD)
+                broadphase.setEnabled(k + 1, false);
+        }
+
+        broadphase.update(separateJob);
+
+        VectorPool pool = VectorPool.get();
+        pool.push();
+
+        Vector3f oldPos = pool.vector3f();
+        Vector3f newPos = pool.vector3f();
+        Vector3f collisionVector = pool.vector3f();
+        for(int k = 0; k < count; k++){
+            if(pushX[k] == 0 && pushZ[k] == 0)
+                continue;
+
+            // In a crowd the pushes add up, never push further than a monster is wide
+            int i = awake[k];
+            float pushedX = Math.max(-MONSTER_WIDTH, Math.min(MONSTER_WIDTH, pushX[k]));
+            float pushedZ = Math.max(-MONSTER_LENGTH, Math.min(MONSTER_LENGTH, pushZ[k]));
+
+            oldPos.set(x[i], 0, z[i]);
+            newPos.set(x[i] + pushedX, 0, z[i] + pushedZ);
+            level.checkCollision(oldPos, newPos, MONSTER_WIDTH, MONSTER_LENGTH, collisionVector);
+            x[i] += pushedX * collisionVector.getX();
+            z[i] += pushedZ * collisionVector.getZ();
+        }
+
+        pool.pop();
+        lastSeparationTime = Time.getTime() - start;
+    }
+
+    private void pushApart(int a, int b){
+        // The player is box 0, make it a so b is always a monster
+        if(b < a){
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+
+        int slot = b - 1;
+        int i = awake[slot];
+        int otherSlot = a - 1;
+        float otherX = a == 0 ? camX : x[awake[otherSlot]];
+        float otherZ = a == 0 ? camZ : z[awake[otherSlot]];
+        float otherWidth = a == 0 ? Player.PLAYER_SIZE : MONSTER_WIDTH;
+        float otherLength = a == 0 ? Player.PLAYER_SIZE : MONSTER_LENGTH;
+
+        float directionX = x[i] - otherX;
+        float directionZ = z[i] - otherZ;
+        float overlapX = MONSTER_WIDTH + otherWidth - Math.abs(directionX);
+        float overlapZ = MONSTER_LENGTH + otherLength - Math.abs(directionZ);
+
+        float separationX = 0;
+        float separationZ = 0;
+        if(overlapX < overlapZ)
+            separationX = directionX < 0 ? -overlapX : overlapX;
+        else
+            separationZ = directionZ < 0 ? -overlapZ : overlapZ;
+
+        if(a == 0){
+            pushX[slot] += separationX;
+            pushZ[slot] += separationZ;
+        }
+        else {
+            pushX[slot] += separationX / 2;
+            pushZ[slot] += separationZ / 2;
+            pushX[otherSlot] -= separationX / 2;
+            pushZ[otherSlot] -= separationZ / 2;
+        }
+    }
+
+    private void idleUpdate(int i, Vector3f orientation){
+        double timeDecimals = time - (double)((int)time);
+
+        if(timeDecimals < 0.5){
+            flags[i] |= FLAG_CAN_LOOK;
+            frame[i] = 0;
+        }
+        else{
+            frame[i] = 1;
+            if((flags[i] & FLAG_CAN_LOOK) != 0){
+                VectorPool pool = VectorPool.get();
+                pool.push();
+
+                Vector2f lineStart = pool.vector2f().set(x[i], z[i]);
+                Vector2f castDirection = orientation.getXZ(pool.vector2f());
+                Vector2f lineEnd = lineStart.add(castDirection.mulLocal(SHOOT_DISTANCE), pool.vector2f());
+
+                float collision = level.castRay(lineStart, lineEnd, false);
+
+                Vector2f playerIntersectVector = pool.vector2f().set(camX, camZ);
+                if((collision < 0 ||
+                                playerIntersectVector.subLocal(lineStart).length() < castDirection.length() * collision)){
+                    System.out.println("Seen player");
+                    state[i] = STATE_CHASE;
+                }
+
+                pool.pop();
+                flags[i] &= ~FLAG_CAN_LOOK;
+            }
+        }
+    }
+
+    private void chaseUpdate(int i, Vector3f orientation, float distance, double delta){
+        double timeDecimals = time - (double)((int)time);
+
+        if(timeDecimals < 0.25){
+            frame[i] = 0;
+        }
+        else if(timeDecimals < 0.5){
+            frame[i] = 1;
+        }
+        else if(timeDecimals < 0.75){
+            frame[i] = 2;
+        }
+        else {
+            frame[i] = 3;
+        }
+
+        if(SplitMix64.nextDouble(rngState, i) < ATTACK_CHANCE * delta){
+            state[i] = STATE_ATTACK;
+        }
+
+        if(distance > MOVEMENT_STOP_DISTANCE){
+            VectorPool pool = VectorPool.get();
+            pool.push();
+
+            float moveAmount = MOVE_SPEED * (float)delta;
+            Vector3f direction = steer(i, orientation, pool.vector3f());
+            Vector3f oldPos = pool.vector3f().set(x[i], 0, z[i]);
+            Vector3f newPos = pool.vector3f().set(oldPos).mulAdd(direction, moveAmount);
+
+            Vector3f collisionVector = level.checkCollision(oldPos, newPos, MONSTER_WIDTH, MONSTER_LENGTH, pool.vector3f());
+
+            Vector3f movementVector = collisionVector.mulLocal(direction);
+
+            if(movementVector.getX() != direction.getX() || movementVector.getY() != direction.getY() || movementVector.getZ() != direction.getZ())
+                events.publishOpenDoors(x[i], 0, z[i], false);
+            if(movementVector.length() > 0){
+                moveX[i] = movementVector.getX() * moveAmount;
+                moveZ[i] = movementVector.getZ() * moveAmount;
+            }
+
+            pool.pop();
+        } else {
+            state[i] = STATE_ATTACK;
+        }
+    }
+
+    /**
+     * Writes the direction a chasing monster walks in into dest: toward the center of the next cell
+     * on the level's flow field, or straight at the player once next to them or if the field has no path.
+     */
+    private Vector3f steer(int i, Vector3f orientation, Vector3f dest){
+        int cellX = (int)Math.floor(x[i]);
+        int cellZ = (int)Math.floor(z[i]);
+        FlowField flowField = level.getFlowField();
+        int direction = flowField.getDirection(cellX, cellZ);
+
+        if(direction == FlowField.NO_DIRECTION
+                || (Math.abs(cellX - (int)Math.floor(camX)) <= 1 && Math.abs(cellZ - (int)Math.floor(camZ)) <= 1))
+            return dest.set(orientation);
+
+        float directionX = cellX + FlowField.DIRECTION_X[direction] + 0.5f - x[i];
+        float directionZ = cellZ + FlowField.DIRECTION_Z[direction] + 0.5f - z[i];
+        float length = (float)Math.sqrt(directionX * directionX + directionZ * directionZ);
+
+        return dest.set(directionX / length, 0, directionZ / length);
+    }
+
+    private void attackUpdate(int i, Vector3f orientation){
+        double timeDecimals = time - (double)((int)time);
+
+        if(timeDecimals < 0.25){
+            frame[i] = 4;
+        }
+        else if(timeDecimals < 0.5){
+            frame[i] = 5;
+        }
+        else if(timeDecimals < 0.75){
+            frame[i] = 6;
+            if((flags[i] & FLAG_CAN_ATTACK) != 0){
+                VectorPool pool = VectorPool.get();
+                pool.push();
+
+                Vector2f lineStart = pool.vector2f().set(x[i], z[i]);
+                Vector2f castDirection = orientation.getXZ(pool.vector2f());
+                castDirection.rotate((SplitMix64.nextFloat(rngState, i) - 0.5f) * SHOT_ANGLE, castDirection);
+                Vector2f lineEnd = lineStart.add(castDirection.mulLocal(SHOOT_DISTANCE), pool.vector2f());
+
+                float collision = level.castRay(lineStart, lineEnd, false);
+
+                float playerIntersect = level.lineIntersectRect(lineStart, lineEnd, camX, camZ, Player.PLAYER_SIZE, Player.PLAYER_SIZE);
+
+                if (playerIntersect >= 0 &&
+                        (collision < 0 || playerIntersect < collision)) {
+                    events.publishDamagePlayer(SplitMix64.nextInt(rngState, i, DAMAGE_MAX - DAMAGE_MIN) + DAMAGE_MIN);
+                }
+
+                pool.pop();
+
+                state[i] = STATE_CHASE;
+                flags[i] &= ~FLAG_CAN_ATTACK;
+            }
+        } else {
+            flags[i] |= FLAG_CAN_ATTACK;
+            frame[i] = 5;
+        }
+    }
+
+    private void setScale(int i, float x, float y){
+        scaleX[i] = x;
+        scaleY[i] = y;
+    }
+
+    private void billboard(int i, Vector3f directionToCam){
+        float angleToFaceCamera = (float)Math.toDegrees(Math.atan(directionToCam.getZ()/directionToCam.getX()));
+
+        if(directionToCam.getX() < 0)
+            angleToFaceCamera += 180.0f;
+
+        yaw[i] = angleToFaceCamera + 90.0f;
+    }
+
+    /**
+     * Draws count monsters, mvps holding their packed matrices from BatchTransform. Has to run on the GL thread.
+     */
+    public static void render(Shader shader, float[] mvps, int[] frames, int count){
+        if(count == 0)
+            return;
+
+        if(mesh == null){
+            Vertex[] vertices = new Vertex[]{
+                    new Vertex(new Vector3f(-SIZEX,START,START), new Vector2f(TEX_MAX_X,TEX_MAX_Y)),
+                    new Vertex(new Vector3f(-SIZEX,SIZEY,START), new Vector2f(TEX_MAX_X,TEX_MIN_Y)),
+                    new Vertex(new Vector3f(SIZEX,SIZEY,START), new Vector2f(TEX_MIN_X,TEX_MIN_Y)),
+                    new Vertex(new Vector3f(SIZEX,START,START), new Vector2f(TEX_MIN_X,TEX_MAX_Y))
+            };
+
+            int[] indices = new int[]{0,1,2,
+                                        0,2,3};
+
+            mesh = new Mesh(vertices, indices);
+
+            frameMaterials = new Material[ANIMATIONS.length];
+            for(int i = 0; i < ANIMATIONS.length; i++)
+                frameMaterials[i] = new Material(TextureCache.acquire(ANIMATIONS[i]));
+        }
+
+        shader.bind();
+        for(int i = 0; i < count; i++){
+            shader.updateUniforms(mvps, i, frameMaterials[frames[i]]);
+            mesh.draw();
+        }
+        shader.unbind();
+    }
+
+    public float[] getX(){
+        return x;
+    }
+
+    public float[] getZ(){
+        return z;
+    }
+
+    public float[] getYaw(){
+        return yaw;
+    }
+
+    public float[] getScaleX(){
+        return scaleX;
+    }
+
+    public float[] getScaleY(){
+        return scaleY;
+    }
+
+    public int[] getState(){
+        return state;
+    }
+
+    public int[] getFrame(){
+        return frame;
+    }
+
+    public int[] getHealth(){
+        return health;
+    }
+
+    /**
+     * Nanoseconds the last think phase took, scheduling included.
+     */
+    public long getLastThinkTime(){
+        return lastThinkTime;
+    }
+
+    /**
+     * How many monsters of the given LOD_ level thought in the last update.
+     */
+    public int getLastThinking(int lodLevel){
+        return lastThinking[lodLevel];
+    }
+
+    /**
+     * Nanoseconds the last separation phase took.
+     */
+    public long getLastSeparationTime(){
+        return lastSeparationTime;
+    }
+
+    /**
+     * Overlapping pairs the last separation phase pushed apart.
+     */
+    public int getLastOverlaps(){
+        return broadphase.getLastPairs();
+    }
+
+    public int getAwakeCount(){
+        return awakeCount;
+    }
+
+    /**
+     * Average AI cost per update, for profiling output.
+     */
+    public String getLodStats(){
+        double runs = Math.max(1, thinkRuns);
+        return "AI " + String.format("%.1f", totalThinkTime / runs / 1000.0) + " us per tick, "
+                + String.format("%.1f", totalAwake / runs) + " of " + size() + " monsters awake, "
+                + String.format("%.1f", totalThinking[LOD_NEAR] / runs) + " near, "
+                + String.format("%.1f", totalThinking[LOD_MID] / runs) + " mid and "
+                + String.format("%.1f", totalThinking[LOD_FAR] / runs) + " far thought per tick";
+    }
+}
@@ -2,8 +2,6 @@ package com.base.engine;
 
 import org.lwjglx.Sys;
 
-import java.util.Random;
-
 import static org.lwjgl.glfw.GLFW.*;
 
 public class Player {
@@ -21,7 +19,7 @@ public class Player {
 
     private static final float MOUSE_SENSITIVITY = 0.5f;
     private static final float MOVE_SPEED = 6f;
-    private static final float LOOK_SPEED = 6f;
+    public static final float LOOK_SPEED = 6f;
     public static final float PLAYER_SIZE = 0.25f;
     public static final float SHOOT_DISTANCE = 1000.0f;
     public static final int DAMAGE_MIN = 20;
@@ -29,41 +27,31 @@ public class Player {
     public static final int MAX_HEALTH = 100000;
     public static final double ATTACK_DELAY = .4;
 
-    private static final Vector3f zeroVector = new Vector3f(0,0,0);
-    private Random rand;
+    public static final int GUN_READY = 0;
+    public static final int GUN_FIRING = 1;
+    private static final String[] GUN_TEXTURES = new String[]{"PISGB0.png", "PISFA0.png"};
+
+    private Level level;
+    private long[] rngState;
     private int health;
     private Camera camera;
     private Vector3f movementVector;
-    private double lastAttackTime;
     private boolean canAttack;
+    private final TimerWheel.Callback readyJob = this::ready;
     private static Mesh mesh;
-    private static Material gunMaterial;
-
-    private Transform gunTransform;
-
-    public Player(Vector3f position){
-        if(mesh == null){
-            // TODO: Add top/bottom face if you set height less than level height
-            Vertex[] vertices = new Vertex[]{
-                    new Vertex(new Vector3f(-SIZEX,START,START), new Vector2f(TEX_MAX_X,TEX_MAX_Y)),
-                    new Vertex(new Vector3f(-SIZEX,SIZEY,START), new Vector2f(TEX_MAX_X,TEX_MIN_Y)),
-                    new Vertex(new Vector3f(SIZEX,SIZEY,START), new Vector2f(TEX_MIN_X,TEX_MIN_Y)),
-                    new Vertex(new Vector3f(SIZEX,START,START), new Vector2f(TEX_MIN_X,TEX_MAX_Y))
-            };
-
-            int[] indices = new int[]{0,1,2,
-                    0,2,3};
-
-            mesh = new Mesh(vertices, indices);
-        }
-
-        if(gunMaterial == null){
-            gunMaterial = new Material(new Texture("PISGB0.png"));
-        }
-        gunTransform = new Transform();
-        gunTransform.setTranslation(new Vector3f(10,0,7));
-        movementVector = zeroVector;
-        rand = new Random();
+    private static Material[] gunMaterials;
+
+    private Vector3f gunPosition;
+    private float gunYaw;
+    private int gunFrame;
+
+    public Player(Level level, Vector3f position, long seed){
+        this.level = level;
+        gunPosition = new Vector3f(10,0,7);
+        gunYaw = 0;
+        gunFrame = GUN_READY;
+        movementVector = new Vector3f(0,0,0);
+        rngState = new long[]{seed};
         health = MAX_HEALTH;
         camera = new Camera(position, new Vector3f(0,0,1), new Vector3f(0,1,0));
         canAttack = true;
@@ -78,116 +66,159 @@ public class Player {
         System.out.println(health);
 
         if(health <= 0){
-            Game.setIsRunning(false);
+            level.getMatch().setRunning(false);
             System.out.println("YOU DIED!");
         }
     }
 
     public int getDamage(){
-        return rand.nextInt(DAMAGE_MAX - DAMAGE_MIN) + DAMAGE_MIN;
+        return SplitMix64.nextInt(rngState, 0, DAMAGE_MAX - DAMAGE_MIN) + DAMAGE_MIN;
     }
 
     public void input(){
-        float rotAmount = (float)(LOOK_SPEED * Time.getDelta());
-        movementVector = zeroVector;
+        Match match = level.getMatch();
+        float rotAmount = (float)(LOOK_SPEED * match.getDelta());
+        VectorPool pool = VectorPool.get();
+        pool.push();
+
+        movementVector.set(0, 0, 0);
 
-        if(Input.getKey(GLFW_KEY_W)){
-            movementVector = movementVector.add(camera.getForward());
+        if(match.getKey(GLFW_KEY_W)){
+            movementVector.addLocal(camera.getForward());
             //camera.move(camera.getForward(), movAmount);
         }
-        if(Input.getKey(GLFW_KEY_S)){
-            movementVector = movementVector.sub(camera.getForward());
+        if(match.getKey(GLFW_KEY_S)){
+            movementVector.subLocal(camera.getForward());
             //camera.move(camera.getForward(), -movAmount);
         }
-        if(Input.getKey(GLFW_KEY_A)){
-            movementVector = movementVector.add(camera.getLeft());
+        if(match.getKey(GLFW_KEY_A)){
+            movementVector.addLocal(camera.getLeft(pool.vector3f()));
             //camera.move(camera.getLeft(), movAmount);
         }
-        if(Input.getKey(GLFW_KEY_D)){
-            movementVector = movementVector.add(camera.getRight());
+        if(match.getKey(GLFW_KEY_D)){
+            movementVector.addLocal(camera.getRight(pool.vector3f()));
             //camera.move(camera.getRight(), movAmount);
         }
         //Input.cursorPosition();
 
-        if(Input.getKey(GLFW_KEY_UP)){
+        if(match.getKey(GLFW_KEY_UP)){
             camera.rotateX(-rotAmount);
         }
-        if(Input.getKey(GLFW_KEY_DOWN)){
+        if(match.getKey(GLFW_KEY_DOWN)){
             camera.rotateX(rotAmount);
         }
-        if(Input.getKey(GLFW_KEY_LEFT)){
+        if(match.getKey(GLFW_KEY_LEFT)){
             camera.rotateY(-rotAmount);
         }
-        if(Input.getKey(GLFW_KEY_RIGHT)){
+        if(match.getKey(GLFW_KEY_RIGHT)){
             camera.rotateY(rotAmount);
         }
 
-        if(Input.getKey(GLFW_KEY_E)){
-            Game.getLevel().openDoors(camera.getPos(), true);
+        if(match.getKey(GLFW_KEY_E)){
+            Vector3f pos = camera.getPos();
+            level.getEvents().publishOpenDoors(pos.getX(), pos.getY(), pos.getZ(), true);
         }
-        if(!canAttack)
-            handleCanAttack();
-
-        if(Input.getKeyPress(GLFW_KEY_SPACE) && canAttack){
+        if(match.getKeyPress(GLFW_KEY_SPACE) && canAttack){
             canAttack = false;
-            lastAttackTime = Time.getTime()/(double)Time.SECOND;
+            level.getTimers().schedule(match.getTick() + match.toTicks(ATTACK_DELAY), readyJob, 0);
 
-            gunMaterial = new Material(new Texture("PISFA0.png"));
+            gunFrame = GUN_FIRING;
 
-            Vector2f lineStart = new Vector2f(camera.getPos().getX(), camera.getPos().getZ());
-            Vector2f castDirection = new Vector2f(camera.getForward().getX(), camera.getForward().getZ()).normalize();
-            Vector2f lineEnd = lineStart.add(castDirection.mul(SHOOT_DISTANCE));
+            Vector2f lineStart = camera.getPos().getXZ(pool.vector2f());
+            Vector2f castDirection = camera.getForward().getXZ(pool.vector2f()).normalizeLocal();
+            Vector2f lineEnd = lineStart.add(castDirection.mulLocal(SHOOT_DISTANCE), pool.vector2f());
 
-            Game.getLevel().checkIntersections(lineStart, lineEnd, true);
+            level.castRay(lineStart, lineEnd, true);
+            Vector3f pos = camera.getPos();
+            level.getEvents().publishGunfire(pos.getX(), pos.getY(), pos.getZ());
         }
-    }
 
-    private void handleCanAttack(){
-        double time = Time.getTime()/(double)Time.SECOND;
+        pool.pop();
+    }
 
-        if((time - lastAttackTime) > ATTACK_DELAY){
-            gunMaterial = new Material(new Texture("PISGB0.png"));
-            canAttack = true;
-        }
+    /**
+     * End of the attack cooldown.
+     */
+    private void ready(int target){
+        gunFrame = GUN_READY;
+        canAttack = true;
     }
 
     public void update(){
         // Player movement
-        float movAmount = (float)(MOVE_SPEED * Time.getDelta());
+        float movAmount = (float)(MOVE_SPEED * level.getMatch().getDelta());
+        VectorPool pool = VectorPool.get();
+        pool.push();
+
         movementVector.setY(0);
         if(movementVector.length() > 0){
-            movementVector = movementVector.normalize();
+            movementVector.normalizeLocal();
         }
         Vector3f oldPos = camera.getPos();
-        Vector3f newPos = oldPos.add(movementVector.mul(movAmount));
+        Vector3f newPos = pool.vector3f().set(oldPos).mulAdd(movementVector, movAmount);
 
-        Vector3f collisionVector = Game.getLevel().checkCollision(oldPos, newPos, PLAYER_SIZE, PLAYER_SIZE);
-        movementVector = movementVector.mul(collisionVector);
+        Vector3f collisionVector = level.checkCollision(oldPos, newPos, PLAYER_SIZE, PLAYER_SIZE, pool.vector3f());
+        movementVector.mulLocal(collisionVector);
 
         if(movementVector.length() > 0)
             camera.move(movementVector, movAmount);
 
         // Gun movement
-        gunTransform.setTranslation(camera.getPos().add(camera.getForward().normalize().mul(0.105f)));
-        gunTransform.getTranslation().setY(gunTransform.getTranslation().getY() + GUN_OFFSET);
-        Vector3f directionToCam = Transform.getCamera().getPos().sub(gunTransform.getTranslation());
+        gunPosition.set(camera.getPos()).mulAdd(camera.getForward(), 0.105f);
+        gunPosition.setY(gunPosition.getY() + GUN_OFFSET);
+        Vector3f directionToCam = camera.getPos().sub(gunPosition, pool.vector3f());
 
         float angleToFaceCamera = (float)Math.toDegrees(Math.atan(directionToCam.getZ()/directionToCam.getX()));
 
         if(directionToCam.getX() < 0)
             angleToFaceCamera += 180.0f;
 
-        gunTransform.getRotation().setY(angleToFaceCamera + 90.0f);
+        gunYaw = angleToFaceCamera + 90.0f;
+
+        pool.pop();
     }
 
-    public void render(){
-        Shader shader = Game.getLevel().getShader();
+    /**
+     * Draws the gun at the given transform. Has to run on the GL thread.
+     */
+    public static void renderGun(Shader shader, Transform gunTransform, int gunFrame){
+        if(mesh == null){
+            // TODO: Add top/bottom face if you set height less than level height
+            Vertex[] vertices = new Vertex[]{
+                    new Vertex(new Vector3f(-SIZEX,START,START), new Vector2f(TEX_MAX_X,TEX_MAX_Y)),
+                    new Vertex(new Vector3f(-SIZEX,SIZEY,START), new Vector2f(TEX_MAX_X,TEX_MIN_Y)),
+                    new Vertex(new Vector3f(SIZEX,SIZEY,START), new Vector2f(TEX_MIN_X,TEX_MIN_Y)),
+                    new Vertex(new Vector3f(SIZEX,START,START), new Vector2f(TEX_MIN_X,TEX_MAX_Y))
+            };
+
+            int[] indices = new int[]{0,1,2,
+                    0,2,3};
+
+            mesh = new Mesh(vertices, indices);
+
+            gunMaterials = new Material[GUN_TEXTURES.length];
+            for(int i = 0; i < GUN_TEXTURES.length; i++)
+                gunMaterials[i] = new Material(TextureCache.acquire(GUN_TEXTURES[i]));
+        }
+
         shader.bind();
-        shader.updateUniforms(gunTransform.getTransformation(), gunTransform.getProjectedTransformation(), gunMaterial);
+        shader.updateUniforms(gunTransform.getTransformation(), gunTransform.getProjectedTransformation(), gunMaterials[gunFrame]);
         mesh.draw();
         shader.unbind();
     }
 
+    public Vector3f getGunPosition(){
+        return gunPosition;
+    }
+
+    public float getGunYaw(){
+        return gunYaw;
+    }
+
+    public int getGunFrame(){
+        return gunFrame;
+    }
+
     public int getMaxHealth(){
         return  MAX_HEALTH;
     }
@@ -14,6 +14,70 @@ public class Quaternion {
         this.w = w;
     }
 
+    /**
+     * Rotation by angle radians around a normalized axis, same direction as Vector3f.rotate(angle, axis).
+     */
+    public Quaternion InitRotation(Vector3f axis, float angle){
+        float sinHalfAngle = (float)Math.sin(angle / 2);
+        float cosHalfAngle = (float)Math.cos(angle / 2);
+
+        return set(axis.getX() * sinHalfAngle, axis.getY() * sinHalfAngle, axis.getZ() * sinHalfAngle, cosHalfAngle);
+    }
+
+    /**
+     * Rotation that turns +z into forward and +y into up. The vectors do not have to be normalized or exactly perpendicular.
+     */
+    public Quaternion InitRotation(Vector3f forward, Vector3f up){
+        float forwardLength = forward.length();
+        float fx = forward.getX() / forwardLength;
+        float fy = forward.getY() / forwardLength;
+        float fz = forward.getZ() / forwardLength;
+
+        // r = up x f, u = f x r
+        float rx = up.getY() * fz - up.getZ() * fy;
+        float ry = up.getZ() * fx - up.getX() * fz;
+        float rz = up.getX() * fy - up.getY() * fx;
+        float rightLength = (float)Math.sqrt(rx * rx + ry * ry + rz * rz);
+        rx /= rightLength;
+        ry /= rightLength;
+        rz /= rightLength;
+
+        float ux = fy * rz - fz * ry;
+        float uy = fz * rx - fx * rz;
+        float uz = fx * ry - fy * rx;
+
+        // Rotation matrix with columns r, u, f to quaternion
+        float trace = rx + uy + fz;
+        if(trace > 0){
+            float s = 0.5f / (float)Math.sqrt(trace + 1.0f);
+            set((uz - fy) * s, (fx - rz) * s, (ry - ux) * s, 0.25f / s);
+        } else if(rx > uy && rx > fz){
+            float s = 2.0f * (float)Math.sqrt(1.0f + rx - uy - fz);
+            set(0.25f * s, (ux + ry) / s, (fx + rz) / s, (uz - fy) / s);
+        } else if(uy > fz){
+            float s = 2.0f * (float)Math.sqrt(1.0f + uy - rx - fz);
+            set((ux + ry) / s, 0.25f * s, (fy + uz) / s, (fx - rz) / s);
+        } else {
+            float s = 2.0f * (float)Math.sqrt(1.0f + fz - rx - uy);
+            set((fx + rz) / s, (fy + uz) / s, 0.25f * s, (ry - ux) / s);
+        }
+
+        return normalizeLocal();
+    }
+
+    public Quaternion set(float x, float y, float z, float w){
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+
+        return this;
+    }
+
+    public Quaternion set(Quaternion value){
+        return set(value.getX(), value.getY(), value.getZ(), value.getW());
+    }
+
     public float length(){
         return (float)Math.sqrt(x * x + y * y + z * z + w * w);
     }
@@ -24,6 +88,12 @@ public class Quaternion {
         return new Quaternion(x/length, y/length, z/length, w/length);
     }
 
+    public Quaternion normalizeLocal(){
+        float length = length();
+
+        return set(x/length, y/length, z/length, w/length);
+    }
+
     public Quaternion conjugate(){
         return new Quaternion(-x, -y, -z, w);
     }
@@ -32,11 +102,23 @@ public class Quaternion {
         float w_ = w * right.getW() - x * right.getX() - y * right.getY() - z * right.getZ();
         float x_ = x * right.getW() + w * right.getX() + y * right.getZ() - z * right.getY();
         float y_ = y * right.getW() + w * right.getY() + z * right.getX() - x * right.getZ();
-        float z_ = z * right.getW() + w * right.getZ() + x + right.getY() - y * right.getX();
+        float z_ = z * right.getW() + w * right.getZ() + x * right.getY() - y * right.getX();
 
         return new Quaternion(x_, y_, z_, w_);
     }
 
+    /**
+     * dest = this * right. dest may be this or right.
+     */
+    public Quaternion mul(Quaternion right, Quaternion dest){
+        float w_ = w * right.getW() - x * right.getX() - y * right.getY() - z * right.getZ();
+        float x_ = x * right.getW() + w * right.getX() + y * right.getZ() - z * right.getY();
+        float y_ = y * right.getW() + w * right.getY() + z * right.getX() - x * right.getZ();
+        float z_ = z * right.getW() + w * right.getZ() + x * right.getY() - y * right.getX();
+
+        return dest.set(x_, y_, z_, w_);
+    }
+
     public Quaternion mul(Vector3f right){
         float w_ = -x * right.getX() - y * right.getY() - z * right.getZ();
         float x_ =  w * right.getX() + y * right.getZ() - z * right.getY();
@@ -0,0 +1,519 @@
+package com.base.engine;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Software renderer that draws a level with a classic column raycaster into an int[] framebuffer.
+ * It does not touch OpenGL at all, the screen columns are split across a ForkJoinPool.
+ *
+ * The output matches the GL renderer: same field of view, same atlas layout, same sprite sizes.
+ */
+public class RaycastRenderer {
+    private static final float FOV = 70f;
+    private static final int COLUMN_THRESHOLD = 16;     // Smallest column range handed to a single task
+    private static final int MAX_STEPS = 4096;
+
+    private static final int NUM_TEX_EXPONENT = 4;
+    private static final int NUM_TEXTURES = (int)Math.pow(2, NUM_TEX_EXPONENT);
+    private static final int DOOR_TEX_X = 2;            // The door occupies u 0.5-0.75, v 0.75-1 in the atlas
+    private static final int DOOR_TEX_Y = 3;
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private float[] zBuffer;
+    private final ForkJoinPool pool;
+
+    private final Bitmap atlas;
+    private final int tileSize;
+    private final Bitmap[] monsterFrames;
+    private final Bitmap medkitTexture;
+
+    // Per level lookup tables
+    private Bitmap map;
+    private int[] wallTiles;
+    private int[] floorTiles;
+    private int[] doorGrid;            // Door index per cell, -1 for none
+    private DoorSystem doors;
+    private float[] doorX;             // Where the doors are this frame
+    private float[] doorZ;
+
+    // Per frame camera state
+    private float posX;
+    private float posZ;
+    private float eyeY;
+    private float dirX;
+    private float dirZ;
+    private float rightX;
+    private float rightZ;
+    private float tanHalfFovX;
+    private float focalY;
+    private float horizon;
+
+    // Per frame sprites, sorted back to front
+    private int spriteCount;
+    private int[] spriteOrder = new int[64];
+    private float[] spriteDepth = new float[64];
+    private float[] spriteScreenX = new float[64];
+    private float[] spriteHalfWidth = new float[64];
+    private float[] spriteTop = new float[64];
+    private float[] spriteBottom = new float[64];
+    private Bitmap[] spriteTexture = new Bitmap[64];
+
+    public RaycastRenderer(int width, int height){
+        this(width, height, ForkJoinPool.commonPool());
+    }
+
+    public RaycastRenderer(int width, int height, ForkJoinPool pool){
+        this(width, height, pool, "WolfCollection.png");
+    }
+
+    public RaycastRenderer(int width, int height, ForkJoinPool pool, String atlasName){
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.zBuffer = new float[width];
+        this.pool = pool;
+
+        atlas = Bitmap.fromTexture(atlasName);
+        tileSize = atlas.getWidth() / NUM_TEX_EXPONENT;
+
+        monsterFrames = new Bitmap[MonsterSystem.ANIMATIONS.length];
+        for(int i = 0; i < monsterFrames.length; i++)
+            monsterFrames[i] = Bitmap.fromTexture(MonsterSystem.ANIMATIONS[i]);
+        medkitTexture = Bitmap.fromTexture(MedkitSystem.TEXTURE);
+    }
+
+    /**
+     * Draws at a new size from the next frame on, after the window was resized.
+     */
+    public void resize(int width, int height){
+        if(width == this.width && height == this.height)
+            return;
+
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        zBuffer = new float[width];
+    }
+
+    public int[] render(Level level){
+        return render(level.getBitmap(), level.getPlayer().getCamera(), level.getDoors(), level.getMonsters(), level.getMedkits());
+    }
+
+    public int[] render(Bitmap map, Camera camera){
+        return render(map, camera, null, null, null);
+    }
+
+    public int[] render(Bitmap map, Camera camera, DoorSystem doors, MonsterSystem monsters, MedkitSystem medkits){
+        setMap(map);
+        setCamera(camera);
+        if(doors != null)
+            buildDoorGrid(doors, doors.getX(), doors.getZ(), doors.size());
+        else
+            buildDoorGrid(null, null, null, 0);
+
+        spriteCount = 0;
+        if(monsters != null)
+            addMonsters(monsters.getX(), monsters.getZ(), monsters.getScaleX(), monsters.getScaleY(), monsters.getFrame(), monsters.size());
+        if(medkits != null)
+            addMedkits(medkits.getX(), medkits.getZ(), medkits.size());
+        sortSprites();
+
+        pool.invoke(new ColumnTask(0, width));
+
+        return pixels;
+    }
+
+    /**
+     * Draws the level as captured in the snapshot, seen from camera, so it can run on the render thread
+     * while the simulation goes on. Only reads what never changes after loading from the level itself.
+     */
+    public int[] render(Snapshot snapshot, Camera camera){
+        Level level = snapshot.getLevel();
+        setMap(level.getBitmap());
+        setCamera(camera);
+        // Doors are only added while the level loads, so the snapshot has them in the order of the DoorSystem
+        buildDoorGrid(level.getDoors(), snapshot.getDoorX(), snapshot.getDoorZ(), snapshot.getDoorCount());
+
+        spriteCount = 0;
+        addMonsters(snapshot.getMonsterX(), snapshot.getMonsterZ(), snapshot.getMonsterScaleX(), snapshot.getMonsterScaleY(),
+                snapshot.getMonsterFrame(), snapshot.getMonsterCount());
+        addMedkits(snapshot.getMedkitX(), snapshot.getMedkitZ(), snapshot.getMedkitCount());
+        sortSprites();
+
+        pool.invoke(new ColumnTask(0, width));
+
+        return pixels;
+    }
+
+    private void setMap(Bitmap map){
+        if(this.map == map)
+            return;
+
+        this.map = map;
+        int size = map.getWidth() * map.getHeight();
+        wallTiles = new int[size];
+        floorTiles = new int[size];
+        doorGrid = new int[size];
+
+        for(int i = 0; i < size; i++){
+            int pixel = map.getPixels()[i];
+            wallTiles[i] = tileIndex((pixel & 0xFF0000) >> 16);
+            floorTiles[i] = tileIndex((pixel & 0x00FF00) >> 8);
+        }
+    }
+
+    // Same layout as Level.calcTexCoords, packed as (tileX << 16) | tileY
+    private static int tileIndex(int value){
+        int texX = value / NUM_TEXTURES;
+        int texY = texX % NUM_TEX_EXPONENT;
+        texX /= NUM_TEX_EXPONENT;
+
+        return ((NUM_TEX_EXPONENT - 1 - texX) << 16) | (NUM_TEX_EXPONENT - 1 - texY);
+    }
+
+    private void setCamera(Camera camera){
+        Vector3f pos = camera.getPos();
+        Vector3f forward = camera.getForward();
+
+        posX = pos.getX();
+        posZ = pos.getZ();
+        eyeY = pos.getY();
+
+        float horizontalLength = (float)Math.sqrt(forward.getX() * forward.getX() + forward.getZ() * forward.getZ());
+        if(horizontalLength < 1e-6f){
+            dirX = 0;
+            dirZ = 1;
+            horizontalLength = 1e-6f;
+        } else {
+            dirX = forward.getX() / horizontalLength;
+            dirZ = forward.getZ() / horizontalLength;
+        }
+        rightX = dirZ;
+        rightZ = -dirX;
+
+        float tanHalfFovY = (float)Math.tan(Math.toRadians(FOV / 2));
+        tanHalfFovX = tanHalfFovY * width / (float)height;
+        focalY = (height / 2f) / tanHalfFovY;
+        // Looking up or down shears the image instead of rotating it
+        horizon = height / 2f + forward.getY() / horizontalLength * focalY;
+    }
+
+    private void buildDoorGrid(DoorSystem doors, float[] doorX, float[] doorZ, int count){
+        this.doors = doors;
+        this.doorX = doorX;
+        this.doorZ = doorZ;
+        Arrays.fill(doorGrid, -1);
+
+        for(int i = 0; i < count; i++){
+            int x = (int)Math.floor(doors.getCloseX()[i]);
+            int z = (int)Math.floor(doors.getCloseZ()[i]);
+            if(x >= 0 && z >= 0 && x < map.getWidth() && z < map.getHeight())
+                doorGrid[x + z * map.getWidth()] = i;
+        }
+    }
+
+    private void addMonsters(float[] x, float[] z, float[] scaleX, float[] scaleY, int[] frame, int count){
+        for(int i = 0; i < count; i++)
+            addSprite(x[i], z[i], MonsterSystem.SIZEX * scaleX[i], MonsterSystem.SIZEY * scaleY[i], monsterFrames[frame[i]]);
+    }
+
+    private void addMedkits(float[] x, float[] z, int count){
+        for(int i = 0; i < count; i++)
+            addSprite(x[i], z[i], MedkitSystem.SIZEX, MedkitSystem.SIZEY, medkitTexture);
+    }
+
+    private void sortSprites(){
+        // Insertion sort back to front, sprite counts are small and mostly sorted from the last frame
+        for(int i = 1; i < spriteCount; i++){
+            int index = spriteOrder[i];
+            int j = i - 1;
+            while(j >= 0 && spriteDepth[spriteOrder[j]] < spriteDepth[index]){
+                spriteOrder[j + 1] = spriteOrder[j];
+                j--;
+            }
+            spriteOrder[j + 1] = index;
+        }
+    }
+
+    // Sprites stand on the floor
+    private void addSprite(float x, float z, float halfWidth, float spriteHeight, Bitmap texture){
+        float relX = x - posX;
+        float relZ = z - posZ;
+        float depth = relX * dirX + relZ * dirZ;
+
+        if(depth < 0.01f)
+            return;
+
+        if(spriteCount == spriteDepth.length)
+            growSprites();
+
+        int i = spriteCount++;
+        float lateral = relX * rightX + relZ * rightZ;
+        float pixelsPerUnit = width / 2f / (depth * tanHalfFovX);
+
+        spriteOrder[i] = i;
+        spriteDepth[i] = depth;
+        spriteScreenX[i] = width / 2f + lateral * pixelsPerUnit;
+        spriteHalfWidth[i] = halfWidth * pixelsPerUnit;
+        spriteTop[i] = horizon - (spriteHeight - eyeY) / depth * focalY;
+        spriteBottom[i] = horizon + eyeY / depth * focalY;
+        spriteTexture[i] = texture;
+    }
+
+    private void growSprites(){
+        int size = spriteDepth.length * 2;
+        spriteOrder = Arrays.copyOf(spriteOrder, size);
+        spriteDepth = Arrays.copyOf(spriteDepth, size);
+        spriteScreenX = Arrays.copyOf(spriteScreenX, size);
+        spriteHalfWidth = Arrays.copyOf(spriteHalfWidth, size);
+        spriteTop = Arrays.copyOf(spriteTop, size);
+        spriteBottom = Arrays.copyOf(spriteBottom, size);
+        spriteTexture = Arrays.copyOf(spriteTexture, size);
+    }
+
+    private boolean isWall(int x, int z){
+        if(x < 0 || z < 0 || x >= map.getWidth() || z >= map.getHeight())
+            return true;
+        return (map.getPixel(x, z) & 0xFFFFFF) == 0;
+    }
+
+    private void renderColumns(int start, int end){
+        for(int x = start; x < end; x++)
+            renderColumn(x);
+
+        for(int i = 0; i < spriteCount; i++)
+            renderSprite(spriteOrder[i], start, end);
+    }
+
+    private void renderColumn(int x){
+        float cameraX = 2f * (x + 0.5f) / width - 1f;
+        float rayX = dirX + rightX * cameraX * tanHalfFovX;
+        float rayZ = dirZ + rightZ * cameraX * tanHalfFovX;
+
+        int mapX = (int)Math.floor(posX);
+        int mapZ = (int)Math.floor(posZ);
+        int mapWidth = map.getWidth();
+
+        float deltaDistX = rayX == 0 ? Float.MAX_VALUE : Math.abs(1f / rayX);
+        float deltaDistZ = rayZ == 0 ? Float.MAX_VALUE : Math.abs(1f / rayZ);
+        int stepX = rayX < 0 ? -1 : 1;
+        int stepZ = rayZ < 0 ? -1 : 1;
+        float sideDistX = rayX < 0 ? (posX - mapX) * deltaDistX : (mapX + 1f - posX) * deltaDistX;
+        float sideDistZ = rayZ < 0 ? (posZ - mapZ) * deltaDistZ : (mapZ + 1f - posZ) * deltaDistZ;
+
+        float distance = Float.MAX_VALUE;
+        int tileX = 0;
+        int tileY = 0;
+        float texU = 0;
+
+        int lastOpen = isWall(mapX, mapZ) ? -1 : mapX + mapZ * mapWidth;
+
+        for(int step = 0; step < MAX_STEPS; step++){
+            int cell = mapX + mapZ * mapWidth;
+            int door = lastOpen >= 0 && lastOpen == cell ? doorGrid[cell] : -1;
+
+            if(door >= 0){
+                float hit = doorHit(door, mapX, mapZ, rayX, rayZ);
+                if(hit >= 0){
+                    distance = hit;
+                    tileX = DOOR_TEX_X;
+                    tileY = DOOR_TEX_Y;
+                    texU = doors.isXDoor(door) ? posZ + hit * rayZ - doorZ[door] : posX + hit * rayX - doorX[door];
+                    break;
+                }
+            }
+
+            boolean sideX;
+            if(sideDistX < sideDistZ){
+                distance = sideDistX;
+                sideDistX += deltaDistX;
+                mapX += stepX;
+                sideX = true;
+            } else {
+                distance = sideDistZ;
+                sideDistZ += deltaDistZ;
+                mapZ += stepZ;
+                sideX = false;
+            }
+
+            if(isWall(mapX, mapZ)){
+                // Walls take the texture of the open cell in front of them
+                int tile = lastOpen >= 0 ? wallTiles[lastOpen] : 0;
+                tileX = tile >> 16;
+                tileY = tile & 0xFFFF;
+
+                float hit = sideX ? posZ + distance * rayZ : posX + distance * rayX;
+                texU = hit - (float)Math.floor(hit);
+                break;
+            }
+
+            lastOpen = mapX + mapZ * mapWidth;
+        }
+
+        zBuffer[x] = distance;
+
+        float wallTop = horizon - (1f - eyeY) / distance * focalY;
+        float wallBottom = horizon + eyeY / distance * focalY;
+        int top = Math.max(0, (int)Math.ceil(wallTop - 0.5f));
+        int bottom = Math.min(height, (int)Math.ceil(wallBottom - 0.5f));
+
+        int texX = tileX * tileSize + Math.min(tileSize - 1, (int)(texU * tileSize));
+        int[] atlasPixels = atlas.getPixels();
+        int atlasWidth = atlas.getWidth();
+        float wallHeight = wallBottom - wallTop;
+
+        for(int y = top; y < bottom; y++){
+            int texY = tileY * tileSize + Math.min(tileSize - 1, (int)((y + 0.5f - wallTop) / wallHeight * tileSize));
+            pixels[x + y * width] = atlasPixels[texX + texY * atlasWidth];
+        }
+
+        // Ceiling
+        for(int y = 0; y < Math.min(top, height); y++){
+            float rowDistance = (1f - eyeY) * focalY / (horizon - (y + 0.5f));
+            pixels[x + y * width] = floorPixel(rayX, rayZ, rowDistance);
+        }
+
+        // Floor
+        for(int y = Math.max(bottom, 0); y < height; y++){
+            float rowDistance = eyeY * focalY / ((y + 0.5f) - horizon);
+            pixels[x + y * width] = floorPixel(rayX, rayZ, rowDistance);
+        }
+    }
+
+    // Returns the distance to the door plane, or -1 if the ray passes through the open part of the cell
+    private float doorHit(int door, int mapX, int mapZ, float rayX, float rayZ){
+        float doorX = this.doorX[door];
+        float doorZ = this.doorZ[door];
+
+        if(doors.isXDoor(door)){
+            if(rayX == 0)
+                return -1;
+            float planeX = doorX - DoorSystem.WIDTH / 2;
+            float t = (planeX - posX) / rayX;
+            float hitZ = posZ + t * rayZ;
+            if(t < 0 || hitZ < mapZ || hitZ >= mapZ + 1 || hitZ < doorZ || hitZ >= doorZ + DoorSystem.LENGTH)
+                return -1;
+            return t;
+        }
+
+        if(rayZ == 0)
+            return -1;
+        float planeZ = doorZ + DoorSystem.WIDTH / 2;
+        float t = (planeZ - posZ) / rayZ;
+        float hitX = posX + t * rayX;
+        if(t < 0 || hitX < mapX || hitX >= mapX + 1 || hitX < doorX || hitX >= doorX + DoorSystem.LENGTH)
+            return -1;
+        return t;
+    }
+
+    private int floorPixel(float rayX, float rayZ, float rowDistance){
+        float worldX = posX + rayX * rowDistance;
+        float worldZ = posZ + rayZ * rowDistance;
+        int cellX = (int)Math.floor(worldX);
+        int cellZ = (int)Math.floor(worldZ);
+
+        if(cellX < 0 || cellZ < 0 || cellX >= map.getWidth() || cellZ >= map.getHeight())
+            return 0xFF000000;
+
+        int tile = floorTiles[cellX + cellZ * map.getWidth()];
+        int texX = (tile >> 16) * tileSize + Math.min(tileSize - 1, (int)((worldX - cellX) * tileSize));
+        int texY = (tile & 0xFFFF) * tileSize + Math.min(tileSize - 1, (int)((1f - (worldZ - cellZ)) * tileSize));
+
+        return atlas.getPixels()[texX + texY * atlas.getWidth()];
+    }
+
+    private void renderSprite(int i, int start, int end){
+        float left = spriteScreenX[i] - spriteHalfWidth[i];
+        float right = spriteScreenX[i] + spriteHalfWidth[i];
+        int firstColumn = Math.max(start, (int)Math.ceil(left - 0.5f));
+        int lastColumn = Math.min(end, (int)Math.ceil(right - 0.5f));
+
+        if(firstColumn >= lastColumn)
+            return;
+
+        Bitmap texture = spriteTexture[i];
+        int[] texturePixels = texture.getPixels();
+        int textureWidth = texture.getWidth();
+        int textureHeight = texture.getHeight();
+        float spriteWidth = right - left;
+        float spriteHeight = spriteBottom[i] - spriteTop[i];
+        int top = Math.max(0, (int)Math.ceil(spriteTop[i] - 0.5f));
+        int bottom = Math.min(height, (int)Math.ceil(spriteBottom[i] - 0.5f));
+
+        for(int x = firstColumn; x < lastColumn; x++){
+            if(spriteDepth[i] >= zBuffer[x])
+                continue;
+
+            // The GL quads map u = 1 to their left edge
+            int texX = Math.min(textureWidth - 1, (int)((1f - (x + 0.5f - left) / spriteWidth) * textureWidth));
+
+            for(int y = top; y < bottom; y++){
+                int texY = Math.min(textureHeight - 1, (int)((y + 0.5f - spriteTop[i]) / spriteHeight * textureHeight));
+                int color = texturePixels[texX + texY * textureWidth];
+                if((color >>> 24) != 0)
+                    pixels[x + y * width] = color;
+            }
+        }
+    }
+
+    public void saveImage(String fileName){
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+
+        try {
+            ImageIO.write(image, "png", new File(fileName));
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    public int[] getPixels(){
+        return pixels;
+    }
+
+    /**
+     * Sprites in front of the camera in the last frame.
+     */
+    public int getSpriteCount(){
+        return spriteCount;
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    private class ColumnTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        ColumnTask(int start, int end){
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute(){
+            if(end - start <= COLUMN_THRESHOLD){
+                renderColumns(start, end);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new ColumnTask(start, middle), new ColumnTask(middle, end));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.base.engine;
+
+import org.lwjgl.glfw.GLFW;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Plays back a file written by ReplayRecorder: feeds the recorded key states to a Match tick by tick and
+ * compares the state hashes at the recorded checkpoints.
+ */
+public class ReplayPlayer {
+    private long seed;
+    private long tickLength;
+    private int[] keyCodes;
+
+    // Runs, expanded from the file
+    private int[] runLengths;
+    private int[] runStates;
+    private int runCount;
+
+    private long[] checkpointTicks;
+    private long[] checkpointHashes;
+
+    private int run;
+    private int tickInRun;
+    private long ticks;
+    private long totalTicks;
+    private int nextCheckpoint;
+    private int matched;
+    private int mismatched;
+    private int[] keys;
+
+    public ReplayPlayer(String fileName){
+        keys = new int[GLFW.GLFW_KEY_LAST + 1];
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))){
+            if(in.readInt() != ReplayRecorder.MAGIC)
+                throw new IllegalArgumentException("ReplayPlayer: " + fileName + " is not a replay");
+            int version = in.readInt();
+            if(version != ReplayRecorder.VERSION)
+                throw new IllegalArgumentException("ReplayPlayer: " + fileName + " has version " + version + ", expected " + ReplayRecorder.VERSION);
+
+            seed = in.readLong();
+            tickLength = in.readLong();
+            keyCodes = new int[in.readInt()];
+            for(int i = 0; i < keyCodes.length; i++)
+                keyCodes[i] = in.readInt();
+
+            runLengths = new int[16];
+            runStates = new int[16];
+            int length;
+            while((length = (int)readVarInt(in)) != 0){
+                if(runCount == runLengths.length){
+                    runLengths = Arrays.copyOf(runLengths, runCount * 2);
+                    runStates = Arrays.copyOf(runStates, runCount * 2);
+                }
+                runLengths[runCount] = length;
+                runStates[runCount] = (int)readVarInt(in);
+                totalTicks += length;
+                runCount++;
+            }
+
+            int checkpointCount = in.readInt();
+            checkpointTicks = new long[checkpointCount];
+            checkpointHashes = new long[checkpointCount];
+            for(int i = 0; i < checkpointCount; i++){
+                checkpointTicks[i] = readVarInt(in);
+                checkpointHashes[i] = in.readLong();
+            }
+        } catch (IOException e){
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sets up match with the key states of the next tick. Returns false once the recording is over,
+     * after which the match reads the keyboard again.
+     */
+    public boolean next(Match match){
+        if(run >= runCount){
+            match.setKeys(null);
+            return false;
+        }
+
+        int state = runStates[run];
+        for(int i = 0; i < keyCodes.length; i++)
+            keys[keyCodes[i]] = (state >>> (i * 2)) & 3;
+        match.setKeys(keys);
+
+        ticks++;
+        if(++tickInRun == runLengths[run]){
+            tickInRun = 0;
+            run++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares the state hash after a tick with the recorded one, if there is a checkpoint for that tick.
+     */
+    public void checkpoint(long tick, long hash){
+        while(nextCheckpoint < checkpointTicks.length && checkpointTicks[nextCheckpoint] < tick)
+            nextCheckpoint++;
+
+        if(nextCheckpoint >= checkpointTicks.length || checkpointTicks[nextCheckpoint] != tick)
+            return;
+
+        if(checkpointHashes[nextCheckpoint] == hash){
+            matched++;
+        }
+        else {
+            if(mismatched == 0)
+                System.err.println("Replay diverged at tick " + tick);
+            mismatched++;
+        }
+        nextCheckpoint++;
+    }
+
+    public boolean isFinished(){
+        return run >= runCount;
+    }
+
+    public long getSeed(){
+        return seed;
+    }
+
+    public long getTickLength(){
+        return tickLength;
+    }
+
+    public long getTicks(){
+        return ticks;
+    }
+
+    public long getTotalTicks(){
+        return totalTicks;
+    }
+
+    public int getMatchedCheckpoints(){
+        return matched;
+    }
+
+    public int getMismatchedCheckpoints(){
+        return mismatched;
+    }
+
+    public String getSummary(){
+        return "Replayed " + ticks + " of " + totalTicks + " ticks, " + matched + " checkpoints matched, "
+                + mismatched + " mismatched";
+    }
+
+    private static long readVarInt(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+
+        return value;
+    }
+}
@@ -0,0 +1,138 @@
+package com.base.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Records the input of every simulation tick, so a deterministic run can be replayed by ReplayPlayer.
+ *
+ * File layout (big endian):
+ *     int MAGIC, int VERSION, long seed, long tick length in ns, int key count, int[] key codes
+ *     runs of (varint tick count, varint packed key states), ended by a run of 0 ticks
+ *     int checkpoint count, (varint tick, long state hash) per checkpoint
+ *
+ * The packed key states hold 2 bits (the GLFW state) per recorded key. Held keys repeat the same state
+ * tick after tick, so run-length encoding usually stores seconds of input in a few bytes.
+ */
+public class ReplayRecorder {
+    public static final int MAGIC = 0x57524543;     // "WREC"
+    public static final int VERSION = 1;
+    public static final int HASH_INTERVAL = 60;     // Ticks between state hash checkpoints
+
+    public static final int[] RECORDED_KEYS = new int[]{
+            GLFW_KEY_W, GLFW_KEY_S, GLFW_KEY_A, GLFW_KEY_D,
+            GLFW_KEY_UP, GLFW_KEY_DOWN, GLFW_KEY_LEFT, GLFW_KEY_RIGHT,
+            GLFW_KEY_E, GLFW_KEY_SPACE
+    };
+
+    private DataOutputStream out;
+    private int runState;
+    private int runLength;
+    private long ticks;
+
+    private long[] checkpointTicks;
+    private long[] checkpointHashes;
+    private int checkpointCount;
+
+    public ReplayRecorder(String fileName, long seed, long tickLength){
+        checkpointTicks = new long[16];
+        checkpointHashes = new long[16];
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeLong(tickLength);
+            out.writeInt(RECORDED_KEYS.length);
+            for(int key : RECORDED_KEYS)
+                out.writeInt(key);
+        } catch (IOException e){
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Records the key states the coming tick of match will see. Call once per tick, before the level reads input.
+     */
+    public void record(Match match){
+        int state = 0;
+        for(int i = 0; i < RECORDED_KEYS.length; i++)
+            state |= match.getKeyState(RECORDED_KEYS[i]) << (i * 2);
+
+        if(runLength > 0 && state != runState)
+            writeRun();
+
+        runState = state;
+        runLength++;
+        ticks++;
+    }
+
+    /**
+     * Stores the state hash after a tick. Only every HASH_INTERVAL-th tick is kept.
+     */
+    public void checkpoint(long tick, long hash){
+        if(tick % HASH_INTERVAL != 0)
+            return;
+
+        if(checkpointCount == checkpointTicks.length){
+            checkpointTicks = Arrays.copyOf(checkpointTicks, checkpointCount * 2);
+            checkpointHashes = Arrays.copyOf(checkpointHashes, checkpointCount * 2);
+        }
+
+        checkpointTicks[checkpointCount] = tick;
+        checkpointHashes[checkpointCount] = hash;
+        checkpointCount++;
+    }
+
+    public void close(){
+        if(out == null)
+            return;
+
+        try {
+            if(runLength > 0)
+                writeRun();
+            writeVarInt(out, 0);
+
+            out.writeInt(checkpointCount);
+            for(int i = 0; i < checkpointCount; i++){
+                writeVarInt(out, checkpointTicks[i]);
+                out.writeLong(checkpointHashes[i]);
+            }
+
+            out.close();
+            out = null;
+        } catch (IOException e){
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        System.out.println("Recorded " + ticks + " ticks, " + checkpointCount + " checkpoints");
+    }
+
+    private void writeRun(){
+        try {
+            writeVarInt(out, runLength);
+            writeVarInt(out, runState);
+        } catch (IOException e){
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        runLength = 0;
+    }
+
+    static void writeVarInt(DataOutputStream out, long value) throws IOException {
+        while((value & ~0x7FL) != 0){
+            out.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+}
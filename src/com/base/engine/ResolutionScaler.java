@@ -0,0 +1,105 @@
+package com.base.engine;
+
+/**
+ * Picks the render resolution scale that keeps the measured frame time close to a target.
+ *
+ * The controller smooths the incoming frame times, only reacts once the average leaves a
+ * dead band around the target and waits a few frames after every change so the new
+ * resolution can show up in the measurements. It has no GL dependencies, so it can be
+ * driven with synthetic frame-time traces.
+ */
+public class ResolutionScaler {
+    public static final float DEFAULT_MIN_SCALE = 0.5f;
+    public static final float DEFAULT_MAX_SCALE = 1.0f;
+
+    private static final double SMOOTHING = 0.1;
+    static final double UPPER_THRESHOLD = 1.05;   // Above target * this we scale down
+    static final double LOWER_THRESHOLD = 0.85;   // Below target * this we scale up
+    static final float MAX_STEP_DOWN = 0.1f;
+    static final float MAX_STEP_UP = 0.05f;
+    static final int COOLDOWN_DOWN = 10;          // Frames to wait after a change before scaling down again
+    static final int COOLDOWN_UP = 60;            // Frames to wait after a change before scaling up again
+
+    private final double targetFrameTime;
+    private final float minScale;
+    private final float maxScale;
+
+    private float scale;
+    private double averageFrameTime;
+    private int framesSinceChange;
+
+    public ResolutionScaler(double targetFrameTime){
+        this(targetFrameTime, DEFAULT_MIN_SCALE, DEFAULT_MAX_SCALE);
+    }
+
+    public ResolutionScaler(double targetFrameTime, float minScale, float maxScale){
+        if(targetFrameTime <= 0 || minScale <= 0 || minScale > maxScale)
+            throw new IllegalArgumentException("Invalid resolution scaler settings.");
+
+        this.targetFrameTime = targetFrameTime;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.scale = maxScale;
+        this.averageFrameTime = -1;
+        this.framesSinceChange = 0;
+    }
+
+    /**
+     * Feeds the time the last frame took (in seconds) and returns the scale to use for the next one.
+     */
+    public float update(double frameTime){
+        if(averageFrameTime < 0)
+            averageFrameTime = frameTime;
+        else
+            averageFrameTime += (frameTime - averageFrameTime) * SMOOTHING;
+
+        framesSinceChange++;
+
+        float newScale = scale;
+        // Pixel cost grows with the square of the scale
+        float idealScale = (float)(scale * Math.sqrt(targetFrameTime / averageFrameTime));
+
+        if(averageFrameTime > targetFrameTime * UPPER_THRESHOLD && framesSinceChange >= COOLDOWN_DOWN){
+            newScale = Math.max(idealScale, scale - MAX_STEP_DOWN);
+        }
+        else if(averageFrameTime < targetFrameTime * LOWER_THRESHOLD && framesSinceChange >= COOLDOWN_UP){
+            newScale = Math.min(idealScale, scale + MAX_STEP_UP);
+        }
+
+        newScale = Math.max(minScale, Math.min(maxScale, newScale));
+
+        if(newScale != scale){
+            // The old measurements were taken at another resolution, rescale them to the new pixel count
+            float ratio = newScale / scale;
+            averageFrameTime *= ratio * ratio;
+            scale = newScale;
+            framesSinceChange = 0;
+        }
+
+        return scale;
+    }
+
+    public int getScaledSize(int size){
+        return Math.max(1, Math.round(size * scale));
+    }
+
+    public float getScale(){
+        return scale;
+    }
+
+    public double getAverageFrameTime(){
+        return averageFrameTime;
+    }
+
+    public double getTargetFrameTime(){
+        return targetFrameTime;
+    }
+
+    public float getMinScale(){
+        return minScale;
+    }
+
+    public float getMaxScale(){
+        return maxScale;
+    }
+}
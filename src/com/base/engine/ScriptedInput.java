@@ -0,0 +1,33 @@
+package com.base.engine;
+
+/**
+ * Stand-in for a player: random key states, but mostly walking forward and rarely opening doors, so the
+ * player actually gets around the level. The same seed always plays the same way.
+ */
+public class ScriptedInput {
+    // New key states are picked every this many ticks
+    public static final int STEP = 20;
+
+    private final long[] state;
+    private final int[] keys;
+
+    public ScriptedInput(long seed){
+        state = new long[]{SplitMix64.seed(seed, 2)};
+        keys = new int[Input.keys.length()];
+    }
+
+    /**
+     * Sets up match with the key states of its coming tick. Call once per tick, before Match.input().
+     */
+    public void apply(Match match){
+        if(match.getTick() % STEP == 0){
+            int[] recorded = ReplayRecorder.RECORDED_KEYS;
+            for(int i = 0; i < recorded.length; i++)
+                keys[recorded[i]] = SplitMix64.nextInt(state, 0, 3);
+
+            keys[recorded[0]] = SplitMix64.nextInt(state, 0, 4) != 0 ? 1 : 0;
+        }
+
+        match.setKeys(keys);
+    }
+}
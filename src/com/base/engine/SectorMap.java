@@ -0,0 +1,145 @@
+package com.base.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a level into sectors: the areas of floor connected without passing through a door. Doors are
+ * the only way from one sector into another, so nothing in a sector can see or reach the rest of the
+ * level while its doors are closed.
+ *
+ * Door cells belong to no sector. Two sectors are neighbours if a door lies between them.
+ */
+public class SectorMap {
+    public static final int NO_SECTOR = -1;
+
+    // Blue value of door cells in the level bitmap, see Level.addSpecial()
+    private static final int DOOR = 16;
+
+    private final int width;
+    private final int height;
+    private final int[] sectors;
+    private int sectorCount;
+    private int[][] neighbours;
+
+    public SectorMap(Bitmap level){
+        width = level.getWidth();
+        height = level.getHeight();
+        sectors = new int[width * height];
+        Arrays.fill(sectors, NO_SECTOR);
+
+        int[] queue = new int[width * height];
+        for(int i = 0; i < width; i++){
+            for(int j = 0; j < height; j++){
+                if(isFloor(level, i, j) && sectors[i + j * width] == NO_SECTOR)
+                    fill(level, i, j, sectorCount++, queue);
+            }
+        }
+
+        findNeighbours(level);
+    }
+
+    private static boolean isFloor(Bitmap level, int x, int z){
+        int pixel = level.getPixel(x, z);
+        return (pixel & 0xFFFFFF) != 0 && (pixel & 0x0000FF) != DOOR;
+    }
+
+    /**
+     * Breadth first flood fill of the sector around x, z.
+     */
+    private void fill(Bitmap level, int x, int z, int sector, int[] queue){
+        int head = 0;
+        int tail = 0;
+
+        sectors[x + z * width] = sector;
+        queue[tail++] = x + z * width;
+
+        while(head < tail){
+            int cell = queue[head++];
+            int cellX = cell % width;
+            int cellZ = cell / width;
+
+            tail = visit(level, cellX - 1, cellZ, sector, queue, tail);
+            tail = visit(level, cellX + 1, cellZ, sector, queue, tail);
+            tail = visit(level, cellX, cellZ - 1, sector, queue, tail);
+            tail = visit(level, cellX, cellZ + 1, sector, queue, tail);
+        }
+    }
+
+    private int visit(Bitmap level, int x, int z, int sector, int[] queue, int tail){
+        if(x < 0 || z < 0 || x >= width || z >= height)
+            return tail;
+
+        int cell = x + z * width;
+        if(sectors[cell] != NO_SECTOR || !isFloor(level, x, z))
+            return tail;
+
+        sectors[cell] = sector;
+        queue[tail++] = cell;
+        return tail;
+    }
+
+    private void findNeighbours(Bitmap level){
+        List<List<Integer>> lists = new ArrayList<List<Integer>>();
+        for(int i = 0; i < sectorCount; i++)
+            lists.add(new ArrayList<Integer>());
+
+        int[] around = new int[4];
+        for(int i = 0; i < width; i++){
+            for(int j = 0; j < height; j++){
+                if((level.getPixel(i, j) & 0x0000FF) != DOOR)
+                    continue;
+
+                around[0] = getSector(i - 1, j);
+                around[1] = getSector(i + 1, j);
+                around[2] = getSector(i, j - 1);
+                around[3] = getSector(i, j + 1);
+
+                for(int a = 0; a < around.length; a++){
+                    for(int b = 0; b < around.length; b++){
+                        if(around[a] != NO_SECTOR && around[b] != NO_SECTOR && around[a] != around[b]
+                                && !lists.get(around[a]).contains(around[b]))
+                            lists.get(around[a]).add(around[b]);
+                    }
+                }
+            }
+        }
+
+        neighbours = new int[sectorCount][];
+        for(int i = 0; i < sectorCount; i++){
+            List<Integer> list = lists.get(i);
+            neighbours[i] = new int[list.size()];
+            for(int j = 0; j < list.size(); j++)
+                neighbours[i][j] = list.get(j);
+        }
+    }
+
+    /**
+     * Sector of the cell, or NO_SECTOR for walls, doors and cells outside the level.
+     */
+    public int getSector(int cellX, int cellZ){
+        if(cellX < 0 || cellZ < 0 || cellX >= width || cellZ >= height)
+            return NO_SECTOR;
+
+        return sectors[cellX + cellZ * width];
+    }
+
+    /**
+     * Sector of the cell the world position x, z lies in.
+     */
+    public int getSector(float x, float z){
+        return getSector((int)Math.floor(x), (int)Math.floor(z));
+    }
+
+    public int getSectorCount(){
+        return sectorCount;
+    }
+
+    /**
+     * Sectors a door leads to from sector. Do not modify the returned array.
+     */
+    public int[] getNeighbours(int sector){
+        return neighbours[sector];
+    }
+}
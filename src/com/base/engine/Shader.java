@@ -2,6 +2,7 @@ package com.base.engine;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.nio.FloatBuffer;
 import java.util.HashMap;
 
 import static org.lwjgl.opengl.GL20.*;
@@ -9,6 +10,8 @@ import static org.lwjgl.opengl.GL32.GL_GEOMETRY_SHADER;
 
 public class Shader {
 
+    private static final FloatBuffer matrixBuffer = Util.createFloatBuffer(4 * 4);
+
     private int program;
     private HashMap<String, Integer> uniforms;
 
@@ -105,6 +108,13 @@ public class Shader {
 
     }
 
+    /**
+     * Same as updateUniforms, with the projected matrix taken from a packed array written by BatchTransform.
+     */
+    public void updateUniforms(float[] projectedMatrices, int index, Material material){
+
+    }
+
     public void setUniformi(String uniformName, int value){
         glUniform1i(uniforms.get(uniformName), value);
     }
@@ -118,7 +128,18 @@ public class Shader {
     }
 
     public void setUniform(String uniformName, Matrix4f value){
-        glUniformMatrix4fv(uniforms.get(uniformName), true, Util.createFlippedBuffer(value));
+        matrixBuffer.clear();
+        value.store(matrixBuffer).flip();
+        glUniformMatrix4fv(uniforms.get(uniformName), false, matrixBuffer);
+    }
+
+    /**
+     * Uploads the index-th matrix of a packed column-major array, as written by BatchTransform.
+     */
+    public void setUniform(String uniformName, float[] matrices, int index){
+        matrixBuffer.clear();
+        matrixBuffer.put(matrices, index * 16, 16).flip();
+        glUniformMatrix4fv(uniforms.get(uniformName), false, matrixBuffer);
     }
 
     public static String loadShader(String fileName){
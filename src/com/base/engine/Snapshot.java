@@ -0,0 +1,319 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Everything the renderer needs from one simulation tick, copied out of the level so the render thread
+ * never reads state the simulation thread is changing. A snapshot is only written by its owner:
+ * the simulation thread fills one through capture() before publishing it in a SnapshotBuffer,
+ * the render thread blends two into its own copy with interpolate().
+ */
+public class Snapshot {
+    private Level level;
+    private long tick;
+    private long time;
+    private long inputTime = InputLatency.NO_INPUT;
+
+    private final Vector3f cameraPos = new Vector3f(0, 0, 0);
+    private final Quaternion cameraOrientation = new Quaternion(0, 0, 0, 1);
+
+    private final Vector3f gunPos = new Vector3f(0, 0, 0);
+    private float gunYaw;
+    private int gunFrame;
+
+    private int doorCount;
+    private int[] doorHandle = new int[0];
+    private float[] doorX = new float[0];
+    private float[] doorZ = new float[0];
+    private float[] doorYaw = new float[0];
+
+    private int monsterCount;
+    private int[] monsterHandle = new int[0];
+    private float[] monsterX = new float[0];
+    private float[] monsterZ = new float[0];
+    private float[] monsterYaw = new float[0];
+    private float[] monsterScaleX = new float[0];
+    private float[] monsterScaleY = new float[0];
+    private int[] monsterFrame = new int[0];
+
+    private int medkitCount;
+    private int[] medkitHandle = new int[0];
+    private float[] medkitX = new float[0];
+    private float[] medkitZ = new float[0];
+    private float[] medkitYaw = new float[0];
+
+    /**
+     * Copies the state of the level after the given tick. time is when that tick was due, inputTime when
+     * the newest input event the level has seen happened, both in Time.getTime() units.
+     */
+    public void capture(Level level, long tick, long time, long inputTime){
+        this.level = level;
+        this.tick = tick;
+        this.time = time;
+        this.inputTime = inputTime;
+
+        Player player = level.getPlayer();
+        Camera camera = player.getCamera();
+        cameraPos.set(camera.getPos());
+        cameraOrientation.set(camera.getOrientation());
+        gunPos.set(player.getGunPosition());
+        gunYaw = player.getGunYaw();
+        gunFrame = player.getGunFrame();
+
+        DoorSystem doors = level.getDoors();
+        doorCount = doors.size();
+        ensureDoorCapacity(doorCount);
+        for(int i = 0; i < doorCount; i++)
+            doorHandle[i] = doors.handleAt(i);
+        System.arraycopy(doors.getX(), 0, doorX, 0, doorCount);
+        System.arraycopy(doors.getZ(), 0, doorZ, 0, doorCount);
+        System.arraycopy(doors.getYaw(), 0, doorYaw, 0, doorCount);
+
+        MonsterSystem monsters = level.getMonsters();
+        monsterCount = monsters.size();
+        ensureMonsterCapacity(monsterCount);
+        for(int i = 0; i < monsterCount; i++)
+            monsterHandle[i] = monsters.handleAt(i);
+        System.arraycopy(monsters.getX(), 0, monsterX, 0, monsterCount);
+        System.arraycopy(monsters.getZ(), 0, monsterZ, 0, monsterCount);
+        System.arraycopy(monsters.getYaw(), 0, monsterYaw, 0, monsterCount);
+        System.arraycopy(monsters.getScaleX(), 0, monsterScaleX, 0, monsterCount);
+        System.arraycopy(monsters.getScaleY(), 0, monsterScaleY, 0, monsterCount);
+        System.arraycopy(monsters.getFrame(), 0, monsterFrame, 0, monsterCount);
+
+        MedkitSystem medkits = level.getMedkits();
+        medkitCount = medkits.size();
+        ensureMedkitCapacity(medkitCount);
+        for(int i = 0; i < medkitCount; i++)
+            medkitHandle[i] = medkits.handleAt(i);
+        System.arraycopy(medkits.getX(), 0, medkitX, 0, medkitCount);
+        System.arraycopy(medkits.getZ(), 0, medkitZ, 0, medkitCount);
+        System.arraycopy(medkits.getYaw(), 0, medkitYaw, 0, medkitCount);
+    }
+
+    public void set(Snapshot other){
+        interpolate(other, other, 1);
+    }
+
+    /**
+     * Blends from previous (alpha 0) to current (alpha 1). Positions and angles are interpolated, discrete state
+     * like animation frames is taken from current. Entities that did not exist in previous, or snapshots from
+     * different levels, are not interpolated.
+     */
+    public void interpolate(Snapshot previous, Snapshot current, float alpha){
+        if(previous.level != current.level)
+            previous = current;
+
+        level = current.level;
+        tick = current.tick;
+        time = previous.time + (long)((current.time - previous.time) * (double)alpha);
+        inputTime = current.inputTime;
+
+        previous.cameraPos.lerp(current.cameraPos, alpha, cameraPos);
+        nlerp(previous.cameraOrientation, current.cameraOrientation, alpha, cameraOrientation);
+
+        previous.gunPos.lerp(current.gunPos, alpha, gunPos);
+        gunYaw = lerpAngle(previous.gunYaw, current.gunYaw, alpha);
+        gunFrame = current.gunFrame;
+
+        doorCount = current.doorCount;
+        ensureDoorCapacity(doorCount);
+        for(int i = 0; i < doorCount; i++){
+            doorHandle[i] = current.doorHandle[i];
+            if(i < previous.doorCount && previous.doorHandle[i] == current.doorHandle[i]){
+                doorX[i] = lerp(previous.doorX[i], current.doorX[i], alpha);
+                doorZ[i] = lerp(previous.doorZ[i], current.doorZ[i], alpha);
+            } else {
+                doorX[i] = current.doorX[i];
+                doorZ[i] = current.doorZ[i];
+            }
+            doorYaw[i] = current.doorYaw[i];
+        }
+
+        monsterCount = current.monsterCount;
+        ensureMonsterCapacity(monsterCount);
+        for(int i = 0; i < monsterCount; i++){
+            monsterHandle[i] = current.monsterHandle[i];
+            if(i < previous.monsterCount && previous.monsterHandle[i] == current.monsterHandle[i]){
+                monsterX[i] = lerp(previous.monsterX[i], current.monsterX[i], alpha);
+                monsterZ[i] = lerp(previous.monsterZ[i], current.monsterZ[i], alpha);
+                monsterYaw[i] = lerpAngle(previous.monsterYaw[i], current.monsterYaw[i], alpha);
+            } else {
+                monsterX[i] = current.monsterX[i];
+                monsterZ[i] = current.monsterZ[i];
+                monsterYaw[i] = current.monsterYaw[i];
+            }
+            monsterScaleX[i] = current.monsterScaleX[i];
+            monsterScaleY[i] = current.monsterScaleY[i];
+            monsterFrame[i] = current.monsterFrame[i];
+        }
+
+        medkitCount = current.medkitCount;
+        ensureMedkitCapacity(medkitCount);
+        for(int i = 0; i < medkitCount; i++){
+            medkitHandle[i] = current.medkitHandle[i];
+            medkitX[i] = current.medkitX[i];
+            medkitZ[i] = current.medkitZ[i];
+            if(i < previous.medkitCount && previous.medkitHandle[i] == current.medkitHandle[i])
+                medkitYaw[i] = lerpAngle(previous.medkitYaw[i], current.medkitYaw[i], alpha);
+            else
+                medkitYaw[i] = current.medkitYaw[i];
+        }
+    }
+
+    private static float lerp(float a, float b, float alpha){
+        return a + (b - a) * alpha;
+    }
+
+    // Degrees, along the shorter way around
+    private static float lerpAngle(float a, float b, float alpha){
+        float difference = (b - a) % 360.0f;
+        if(difference > 180.0f)
+            difference -= 360.0f;
+        else if(difference < -180.0f)
+            difference += 360.0f;
+
+        return a + difference * alpha;
+    }
+
+    private static void nlerp(Quaternion a, Quaternion b, float alpha, Quaternion dest){
+        float sign = a.getX() * b.getX() + a.getY() * b.getY() + a.getZ() * b.getZ() + a.getW() * b.getW() < 0 ? -1 : 1;
+
+        dest.set(a.getX() + (b.getX() * sign - a.getX()) * alpha,
+                 a.getY() + (b.getY() * sign - a.getY()) * alpha,
+                 a.getZ() + (b.getZ() * sign - a.getZ()) * alpha,
+                 a.getW() + (b.getW() * sign - a.getW()) * alpha).normalizeLocal();
+    }
+
+    private void ensureDoorCapacity(int count){
+        if(doorX.length >= count)
+            return;
+
+        doorHandle = Arrays.copyOf(doorHandle, count);
+        doorX = Arrays.copyOf(doorX, count);
+        doorZ = Arrays.copyOf(doorZ, count);
+        doorYaw = Arrays.copyOf(doorYaw, count);
+    }
+
+    private void ensureMonsterCapacity(int count){
+        if(monsterX.length >= count)
+            return;
+
+        monsterHandle = Arrays.copyOf(monsterHandle, count);
+        monsterX = Arrays.copyOf(monsterX, count);
+        monsterZ = Arrays.copyOf(monsterZ, count);
+        monsterYaw = Arrays.copyOf(monsterYaw, count);
+        monsterScaleX = Arrays.copyOf(monsterScaleX, count);
+        monsterScaleY = Arrays.copyOf(monsterScaleY, count);
+        monsterFrame = Arrays.copyOf(monsterFrame, count);
+    }
+
+    private void ensureMedkitCapacity(int count){
+        if(medkitX.length >= count)
+            return;
+
+        medkitHandle = Arrays.copyOf(medkitHandle, count);
+        medkitX = Arrays.copyOf(medkitX, count);
+        medkitZ = Arrays.copyOf(medkitZ, count);
+        medkitYaw = Arrays.copyOf(medkitYaw, count);
+    }
+
+    public Level getLevel(){
+        return level;
+    }
+
+    public long getTick(){
+        return tick;
+    }
+
+    public long getTime(){
+        return time;
+    }
+
+    /**
+     * When the newest input event behind this snapshot happened, or InputLatency.NO_INPUT.
+     */
+    public long getInputTime(){
+        return inputTime;
+    }
+
+    public Vector3f getCameraPos(){
+        return cameraPos;
+    }
+
+    public Quaternion getCameraOrientation(){
+        return cameraOrientation;
+    }
+
+    public Vector3f getGunPos(){
+        return gunPos;
+    }
+
+    public float getGunYaw(){
+        return gunYaw;
+    }
+
+    public int getGunFrame(){
+        return gunFrame;
+    }
+
+    public int getDoorCount(){
+        return doorCount;
+    }
+
+    public float[] getDoorX(){
+        return doorX;
+    }
+
+    public float[] getDoorZ(){
+        return doorZ;
+    }
+
+    public float[] getDoorYaw(){
+        return doorYaw;
+    }
+
+    public int getMonsterCount(){
+        return monsterCount;
+    }
+
+    public float[] getMonsterX(){
+        return monsterX;
+    }
+
+    public float[] getMonsterZ(){
+        return monsterZ;
+    }
+
+    public float[] getMonsterYaw(){
+        return monsterYaw;
+    }
+
+    public float[] getMonsterScaleX(){
+        return monsterScaleX;
+    }
+
+    public float[] getMonsterScaleY(){
+        return monsterScaleY;
+    }
+
+    public int[] getMonsterFrame(){
+        return monsterFrame;
+    }
+
+    public int getMedkitCount(){
+        return medkitCount;
+    }
+
+    public float[] getMedkitX(){
+        return medkitX;
+    }
+
+    public float[] getMedkitZ(){
+        return medkitZ;
+    }
+
+    public float[] getMedkitYaw(){
+        return medkitYaw;
+    }
+}
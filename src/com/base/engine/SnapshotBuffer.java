@@ -0,0 +1,57 @@
+package com.base.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer handing snapshots from one writer thread to one reader thread.
+ *
+ * The writer always owns one buffer and the reader another, the third sits in the middle. publish() swaps
+ * the writer's buffer with the middle one and marks it fresh, update() swaps the reader's buffer with the
+ * middle one if it is fresh. Neither side ever waits, and the reader always gets the newest published snapshot.
+ */
+public class SnapshotBuffer {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final Snapshot[] buffers;
+    private final AtomicInteger middle;
+    private int back;       // Only touched by the writer
+    private int front;      // Only touched by the reader
+
+    public SnapshotBuffer(){
+        buffers = new Snapshot[]{new Snapshot(), new Snapshot(), new Snapshot()};
+        back = 0;
+        middle = new AtomicInteger(1);
+        front = 2;
+    }
+
+    /**
+     * The buffer the writer fills before calling publish().
+     */
+    public Snapshot getWriteBuffer(){
+        return buffers[back];
+    }
+
+    public void publish(){
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    public boolean hasUpdate(){
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Makes the newest published snapshot the read buffer. Returns false if nothing was published since the last call.
+     */
+    public boolean update(){
+        if(!hasUpdate())
+            return false;
+
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    public Snapshot getReadBuffer(){
+        return buffers[front];
+    }
+}
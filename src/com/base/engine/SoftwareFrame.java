@@ -0,0 +1,87 @@
+package com.base.engine;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_BGRA;
+import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_8_8_8_8_REV;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Puts an image drawn on the CPU on the screen: the ARGB pixels, top row first, are uploaded into a
+ * texture and blitted to the window, flipped and scaled to fit. No shaders involved. GL thread only.
+ */
+public class SoftwareFrame {
+    private int width;
+    private int height;
+    private IntBuffer buffer;
+    private final int texture;
+    private final int fbo;
+
+    public SoftwareFrame(int width, int height){
+        texture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        allocate(width, height);
+
+        fbo = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, texture, 0);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Takes images of a new size, after the window was resized.
+     */
+    public void resize(int width, int height){
+        if(width == this.width && height == this.height)
+            return;
+
+        allocate(width, height);
+    }
+
+    private void allocate(int width, int height){
+        this.width = width;
+        this.height = height;
+        buffer = BufferUtils.createIntBuffer(width * height);
+
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, 0);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Shows pixels, width * height of them, on the whole window.
+     */
+    public void draw(int[] pixels, int screenWidth, int screenHeight){
+        buffer.clear();
+        buffer.put(pixels, 0, width * height).flip();
+
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, width, height, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, buffer);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        // The pixels start at the top, GL at the bottom
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, fbo);
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+        glBlitFramebuffer(0, 0, width, height, 0, screenHeight, screenWidth, 0, GL_COLOR_BUFFER_BIT, GL_NEAREST);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    public void destroy(){
+        glDeleteFramebuffers(fbo);
+        glDeleteTextures(texture);
+    }
+}
@@ -0,0 +1,48 @@
+package com.base.engine;
+
+/**
+ * SplitMix64 random numbers on a state kept in a long[], so every entity in a store can have its own
+ * stream without a java.util.Random object per entity.
+ */
+public class SplitMix64 {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    public static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long nextLong(long[] states, int index){
+        states[index] += GOLDEN_GAMMA;
+        return mix(states[index]);
+    }
+
+    /**
+     * Uniform in [0, 1).
+     */
+    public static double nextDouble(long[] states, int index){
+        return (nextLong(states, index) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Uniform in [0, 1).
+     */
+    public static float nextFloat(long[] states, int index){
+        return (nextLong(states, index) >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * Uniform in [0, bound).
+     */
+    public static int nextInt(long[] states, int index, int bound){
+        return (int)(((nextLong(states, index) >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * Seed for the n-th stream derived from one base seed.
+     */
+    public static long seed(long baseSeed, long n){
+        return mix(baseSeed + n * GOLDEN_GAMMA);
+    }
+}
@@ -0,0 +1,231 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Broadphase over axis aligned boxes on the ground plane: finds every pair of boxes that overlap.
+ *
+ * The boxes are kept in a list sorted by their low x edge that persists across updates. Things move
+ * a little per tick, so the list is almost sorted already and an insertion sort puts it back in order
+ * with a few swaps. A sweep along the list then only tests boxes whose x ranges overlap.
+ *
+ * Sorting along x alone, every box would test all boxes in a strip across the whole world, which gets
+ * longer as the world grows. So the list is sorted by row first: the ground is cut into rows along z
+ * at least as high as any box, and a box can only overlap boxes in its own row and the rows next to
+ * it. The sweep runs over the box's own row and, with a second cursor, over the next one. That keeps
+ * the cost per box constant for a given crowd density, however many boxes there are.
+ *
+ * The boxes themselves are stored in the sorted order, so the sweep reads memory front to back.
+ *
+ * Boxes are addressed by id, 0 to getCount() - 1. Ids are not stable: when the owner swaps entities
+ * around it just sets the boxes of the affected ids again, and the next sort fixes the order.
+ */
+public class SweepAndPrune {
+    public interface PairCallback {
+        /**
+         * Called for every overlapping pair, a before b in the sorted order.
+         */
+        void overlap(int a, int b);
+    }
+
+    private final float rowHeight;
+
+    // Boxes sorted by row, then minX, the id of each and the place of each id
+    private int[] rows;
+    private float[] minX;
+    private float[] minZ;
+    private float[] maxX;
+    private float[] maxZ;
+    private boolean[] enabled;
+    private int[] ids;
+    private int[] places;
+    private int count;
+
+    private long lastSwaps;
+    private int lastPairs;
+
+    /**
+     * rowHeight is the z size of the largest box that will be set.
+     */
+    public SweepAndPrune(float rowHeight){
+        this.rowHeight = rowHeight;
+        rows = new int[0];
+        minX = new float[0];
+        minZ = new float[0];
+        maxX = new float[0];
+        maxZ = new float[0];
+        enabled = new boolean[0];
+        ids = new int[0];
+        places = new int[0];
+    }
+
+    /**
+     * Changes the number of boxes. Boxes of new ids are empty and disabled until set.
+     */
+    public void setCount(int count){
+        if(count > minX.length){
+            int capacity = Math.max(count, minX.length * 2);
+            rows = Arrays.copyOf(rows, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minZ = Arrays.copyOf(minZ, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxZ = Arrays.copyOf(maxZ, capacity);
+            enabled = Arrays.copyOf(enabled, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            places = Arrays.copyOf(places, capacity);
+        }
+
+        if(count < this.count){
+            // Drop the removed ids, keeping the others in order
+            int kept = 0;
+            for(int k = 0; k < this.count; k++){
+                if(ids[k] < count){
+                    copy(k, kept);
+                    kept++;
+                }
+            }
+        }
+        else {
+            // New ones go to the end, the next sort moves them into place
+            for(int k = this.count; k < count; k++){
+                rows[k] = Integer.MAX_VALUE;
+                minX[k] = Float.MAX_VALUE;
+                maxX[k] = Float.MAX_VALUE;
+                enabled[k] = false;
+                ids[k] = k;
+                places[k] = k;
+            }
+        }
+
+        this.count = count;
+    }
+
+    public int getCount(){
+        return count;
+    }
+
+    /**
+     * Sets the box of the id to centerX, centerZ plus and minus halfX, halfZ.
+     */
+    public void setBox(int id, float centerX, float centerZ, float halfX, float halfZ){
+        if(halfZ * 2 > rowHeight)
+            throw new IllegalArgumentException("SweepAndPrune: box is " + halfZ * 2 + " high, rows are " + rowHeight);
+
+        int k = places[id];
+        rows[k] = (int)Math.floor((centerZ - halfZ) / rowHeight);
+        minX[k] = centerX - halfX;
+        maxX[k] = centerX + halfX;
+        minZ[k] = centerZ - halfZ;
+        maxZ[k] = centerZ + halfZ;
+        enabled[k] = true;
+    }
+
+    /**
+     * Disabled boxes keep their place in the order but overlap nothing.
+     */
+    public void setEnabled(int id, boolean enabled){
+        this.enabled[places[id]] = enabled;
+    }
+
+    /**
+     * Sorts the list again after the boxes moved and reports every overlapping pair of enabled boxes.
+     */
+    public void update(PairCallback callback){
+        sort();
+
+        float maxWidth = 0;
+        for(int k = 0; k < count; k++)
+            if(enabled[k])
+                maxWidth = Math.max(maxWidth, maxX[k] - minX[k]);
+
+        int pairs = 0;
+        int next = 0;
+        for(int k = 0; k < count; k++){
+            if(!enabled[k])
+                continue;
+
+            int row = rows[k];
+            float aMinX = minX[k];
+            float aMaxX = maxX[k];
+            float aMinZ = minZ[k];
+            float aMaxZ = maxZ[k];
+
+            // In its own row only the boxes after this one, up to the first one right of it
+            for(int j = k + 1; j < count && rows[j] == row && minX[j] <= aMaxX; j++){
+                if(enabled[j] && minZ[j] <= aMaxZ && maxZ[j] >= aMinZ){
+                    callback.overlap(ids[k], ids[j]);
+                    pairs++;
+                }
+            }
+
+            // In the next row, from the first box that can reach this one. The cursor only moves forward.
+            float reach = aMinX - maxWidth;
+            while(next < count && (rows[next] <= row || (rows[next] == row + 1 && minX[next] < reach)))
+                next++;
+            for(int j = next; j < count && rows[j] == row + 1 && minX[j] <= aMaxX; j++){
+                if(enabled[j] && maxX[j] >= aMinX && minZ[j] <= aMaxZ && maxZ[j] >= aMinZ){
+                    callback.overlap(ids[k], ids[j]);
+                    pairs++;
+                }
+            }
+        }
+
+        lastPairs = pairs;
+    }
+
+    private void sort(){
+        long swaps = 0;
+        for(int k = 1; k < count; k++){
+            int keyRow = rows[k];
+            float key = minX[k];
+            if(rows[k - 1] < keyRow || (rows[k - 1] == keyRow && minX[k - 1] <= key))
+                continue;
+
+            float keyMaxX = maxX[k];
+            float keyMinZ = minZ[k];
+            float keyMaxZ = maxZ[k];
+            boolean keyEnabled = enabled[k];
+            int keyId = ids[k];
+
+            int j = k - 1;
+            while(j >= 0 && (rows[j] > keyRow || (rows[j] == keyRow && minX[j] > key))){
+                copy(j, j + 1);
+                j--;
+                swaps++;
+            }
+
+            rows[j + 1] = keyRow;
+            minX[j + 1] = key;
+            maxX[j + 1] = keyMaxX;
+            minZ[j + 1] = keyMinZ;
+            maxZ[j + 1] = keyMaxZ;
+            enabled[j + 1] = keyEnabled;
+            ids[j + 1] = keyId;
+            places[keyId] = j + 1;
+        }
+
+        lastSwaps = swaps;
+    }
+
+    private void copy(int from, int to){
+        rows[to] = rows[from];
+        minX[to] = minX[from];
+        maxX[to] = maxX[from];
+        minZ[to] = minZ[from];
+        maxZ[to] = maxZ[from];
+        enabled[to] = enabled[from];
+        ids[to] = ids[from];
+        places[ids[to]] = to;
+    }
+
+    /**
+     * Places the last sort had to move boxes by, near the number of boxes when things move coherently.
+     */
+    public long getLastSwaps(){
+        return lastSwaps;
+    }
+
+    public int getLastPairs(){
+        return lastPairs;
+    }
+}
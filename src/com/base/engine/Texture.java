@@ -12,15 +12,26 @@ import java.nio.ByteBuffer;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL30.glGenerateMipmap;
 
+/**
+ * A GL texture. Textures loaded from files should come from TextureCache, which shares them and deletes
+ * them once nothing uses them any more.
+ */
 public class Texture {
     private int id;
+    private String fileName;
+    private int width;
+    private int height;
 
     public Texture(int id){
         this.id = id;
     }
 
+    /**
+     * Reads and uploads the file every time, see TextureCache.acquire().
+     */
     public Texture(String fileName){
-        this(loadTexture(fileName));
+        this.fileName = fileName;
+        this.id = loadTexture(fileName);
     }
 
     public void bind(){
@@ -31,14 +42,46 @@ public class Texture {
         return id;
     }
 
+    /**
+     * File the texture was loaded from, or null.
+     */
+    public String getFileName(){
+        return fileName;
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Bytes the texture takes on the GPU, its top level only.
+     */
+    public long getSize(){
+        return (long)width * height * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Frees the GL texture. The texture must not be bound afterwards.
+     */
+    public void delete(){
+        glDeleteTextures(id);
+        id = 0;
+    }
+
     private static final int BYTES_PER_PIXEL = 4;//3 for RGB, 4 for RGBA
-    private static int loadTexture(String fileName){
+    private int loadTexture(String fileName){
 
         BufferedImage image;
 
         try {
 
             image = ImageIO.read(new File("./res/textures/" + fileName));
+            width = image.getWidth();
+            height = image.getHeight();
 
             int[] pixels = new int[image.getWidth() * image.getHeight()];
             image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
@@ -0,0 +1,107 @@
+package com.base.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Textures shared by file name. The first acquire() of a file reads, decodes and uploads it, every
+ * further one returns the same Texture without touching the disk. Each acquire() has to be matched by a
+ * release(), the GL texture is deleted when the last user released it.
+ *
+ * GL thread only.
+ */
+public class TextureCache {
+    private static class Entry {
+        final Texture texture;
+        int references;
+
+        Entry(Texture texture){
+            this.texture = texture;
+        }
+    }
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static long hits;
+    private static long misses;
+    private static long residentBytes;
+
+    /**
+     * The texture of the file, loaded if no one holds it yet.
+     */
+    public static Texture acquire(String fileName){
+        Entry entry = entries.get(fileName);
+        if(entry != null){
+            hits++;
+        }
+        else {
+            misses++;
+            entry = new Entry(new Texture(fileName));
+            entries.put(fileName, entry);
+            residentBytes += entry.texture.getSize();
+        }
+
+        entry.references++;
+        return entry.texture;
+    }
+
+    /**
+     * Gives up one reference taken by acquire(). The texture must not be used by the caller afterwards.
+     */
+    public static void release(Texture texture){
+        Entry entry = entries.get(texture.getFileName());
+        if(entry == null || entry.texture != texture)
+            throw new IllegalArgumentException("TextureCache: " + texture.getFileName() + " did not come from the cache");
+
+        entry.references--;
+        if(entry.references == 0){
+            entries.remove(texture.getFileName());
+            residentBytes -= texture.getSize();
+            texture.delete();
+        }
+    }
+
+    /**
+     * Deletes every texture still held, when the GL context is about to go away.
+     */
+    public static void destroy(){
+        for(Entry entry : entries.values())
+            entry.texture.delete();
+        entries.clear();
+        residentBytes = 0;
+    }
+
+    /**
+     * References held on the file's texture, 0 if it is not loaded.
+     */
+    public static int getReferences(String fileName){
+        Entry entry = entries.get(fileName);
+        return entry == null ? 0 : entry.references;
+    }
+
+    public static long getHits(){
+        return hits;
+    }
+
+    public static long getMisses(){
+        return misses;
+    }
+
+    /**
+     * Textures currently loaded.
+     */
+    public static int getResidentCount(){
+        return entries.size();
+    }
+
+    /**
+     * GPU memory of the loaded textures, see Texture.getSize().
+     */
+    public static long getResidentBytes(){
+        return residentBytes;
+    }
+
+    public static String getSummary(){
+        return "textures: " + entries.size() + " resident, " + String.format("%.1f", residentBytes / 1024.0) + " KiB, "
+                + hits + " hits, " + misses + " misses";
+    }
+}
@@ -7,17 +7,10 @@ public class Time {
 
     public static final long SECOND = 1000000000L;
 
-    private static double delta;
-
+    /**
+     * Wall clock in nanoseconds. Gameplay time, the tick counter and the tick length belong to each Match.
+     */
     public static long getTime(){
         return System.nanoTime();
     }
-
-    public static double getDelta(){
-        return delta;
-    }
-
-    public static void setDelta(double delta){
-        Time.delta = delta;
-    }
 }
@@ -0,0 +1,273 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Calls back when a simulation tick is reached: doors closing, cooldowns running out, stuns ending,
+ * the next frame of an animation. Nothing has to poll a clock, only what is due does any work.
+ *
+ * A hierarchical timing wheel. Level 0 has a slot for each of the next SLOTS ticks, every higher level
+ * a slot for each of the next SLOTS spans of the level below. A timer goes into the lowest level whose
+ * range reaches its tick, and is moved down a level when that level comes around to its span, until it
+ * sits in the level 0 slot of its own tick. Timers further out than the top level wait in its last slot
+ * and are placed again every time it comes around.
+ *
+ * Timers live in a pool of parallel arrays with a free list and are linked into their slot both ways, so
+ * scheduling and cancelling are O(1) and allocate nothing once the pool is large enough. A timer is
+ * addressed by a handle that stops working once it fired or got cancelled, even if its node is reused.
+ * Timers due on the same tick fire in the order they were scheduled.
+ *
+ * Not thread safe. Callbacks may schedule and cancel timers.
+ */
+public class TimerWheel {
+    public static final int NULL_TIMER = -1;
+
+    public interface Callback {
+        /**
+         * target is the value given to schedule(), usually an entity handle.
+         */
+        void fire(int target);
+    }
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7FF;       // Keeps handles positive
+    private static final int NONE = -1;
+
+    // Timer pool, unused nodes are chained through next
+    private long[] deadline;
+    private Callback[] callbacks;
+    private int[] targets;
+    private int[] next;
+    private int[] previous;
+    private int[] slotOf;
+    private int[] generations;
+    private int freeList;
+    private int nodeCount;
+
+    // First and last timer of every slot of every level, level by level
+    private final int[] heads;
+    private final int[] tails;
+
+    private long now;
+    private int count;
+    private long fired;
+
+    /**
+     * now is the last tick that counts as passed, timers fire from now + 1 on.
+     */
+    public TimerWheel(long now){
+        this.now = now;
+
+        heads = new int[LEVELS * SLOTS];
+        tails = new int[LEVELS * SLOTS];
+        Arrays.fill(heads, NONE);
+        Arrays.fill(tails, NONE);
+
+        deadline = new long[0];
+        callbacks = new Callback[0];
+        targets = new int[0];
+        next = new int[0];
+        previous = new int[0];
+        slotOf = new int[0];
+        generations = new int[0];
+        freeList = NONE;
+    }
+
+    /**
+     * Calls callback with target on tick, or on the next tick if tick already passed. Returns a handle
+     * for cancel().
+     */
+    public int schedule(long tick, Callback callback, int target){
+        if(freeList == NONE)
+            grow();
+
+        int node = freeList;
+        freeList = next[node];
+
+        deadline[node] = Math.max(tick, now + 1);
+        callbacks[node] = callback;
+        targets[node] = target;
+        insert(node);
+        count++;
+
+        return (generations[node] << INDEX_BITS) | node;
+    }
+
+    /**
+     * Calls callback with target ticks from now, at least one.
+     */
+    public int scheduleIn(long ticks, Callback callback, int target){
+        return schedule(now + ticks, callback, target);
+    }
+
+    /**
+     * Stops the timer from firing. Returns false if it already fired or got cancelled.
+     */
+    public boolean cancel(int timer){
+        if(!isScheduled(timer))
+            return false;
+
+        int node = timer & INDEX_MASK;
+        unlink(node);
+        release(node);
+        return true;
+    }
+
+    public boolean isScheduled(int timer){
+        if(timer == NULL_TIMER)
+            return false;
+
+        int node = timer & INDEX_MASK;
+        return node < nodeCount && slotOf[node] != NONE && generations[node] == (timer >>> INDEX_BITS);
+    }
+
+    /**
+     * Tick the timer fires on.
+     */
+    public long getDeadline(int timer){
+        if(!isScheduled(timer))
+            throw new IllegalArgumentException("TimerWheel: timer " + timer + " is not scheduled");
+
+        return deadline[timer & INDEX_MASK];
+    }
+
+    /**
+     * Moves time forward to tick, firing everything due up to and including it, in order of their ticks.
+     */
+    public void advance(long tick){
+        while(now < tick){
+            now++;
+
+            // Bring the spans that start now down, from the top so their timers can fall all the way
+            int top = 0;
+            while(top < LEVELS - 1 && (now & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0)
+                top++;
+            for(int level = top; level > 0; level--)
+                cascade(level);
+
+            // Timers reinserted by callbacks never land in this slot again, they are due later
+            int slot = (int)(now & SLOT_MASK);
+            while(heads[slot] != NONE){
+                int node = heads[slot];
+                Callback callback = callbacks[node];
+                int target = targets[node];
+                unlink(node);
+                release(node);
+                fired++;
+                callback.fire(target);
+            }
+        }
+    }
+
+    /**
+     * Places the timers of the level's slot for the current span again, one level or more lower.
+     */
+    private void cascade(int level){
+        int slot = level * SLOTS + (int)((now >>> (SLOT_BITS * level)) & SLOT_MASK);
+        int node = heads[slot];
+        heads[slot] = NONE;
+        tails[slot] = NONE;
+
+        while(node != NONE){
+            int following = next[node];
+            insert(node);
+            node = following;
+        }
+    }
+
+    private void insert(int node){
+        long tick = deadline[node];
+        long distance = tick ^ now;
+
+        int slot;
+        int level = 0;
+        while(level < LEVELS - 1 && (distance >>> (SLOT_BITS * (level + 1))) != 0)
+            level++;
+
+        if(tick - now >= 1L << (SLOT_BITS * LEVELS)){
+            // Beyond the top level, wait in its slot that comes around last
+            slot = (LEVELS - 1) * SLOTS + (int)(((now >>> (SLOT_BITS * (LEVELS - 1))) - 1) & SLOT_MASK);
+        }
+        else {
+            // In the top level the slot of a tick up to SLOTS spans ahead can be behind the current one, it wraps around
+            slot = level * SLOTS + (int)((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        }
+
+        // Append, so timers of the same tick fire in the order they were scheduled
+        slotOf[node] = slot;
+        next[node] = NONE;
+        previous[node] = tails[slot];
+        if(tails[slot] == NONE)
+            heads[slot] = node;
+        else
+            next[tails[slot]] = node;
+        tails[slot] = node;
+    }
+
+    private void unlink(int node){
+        int slot = slotOf[node];
+        if(previous[node] == NONE)
+            heads[slot] = next[node];
+        else
+            next[previous[node]] = next[node];
+
+        if(next[node] == NONE)
+            tails[slot] = previous[node];
+        else
+            previous[next[node]] = previous[node];
+    }
+
+    private void release(int node){
+        slotOf[node] = NONE;
+        callbacks[node] = null;
+        generations[node] = (generations[node] + 1) & GENERATION_MASK;
+        next[node] = freeList;
+        freeList = node;
+        count--;
+    }
+
+    private void grow(){
+        int capacity = Math.max(16, nodeCount * 2);
+        if(capacity > INDEX_MASK + 1)
+            throw new IllegalStateException("TimerWheel is full: more than " + (INDEX_MASK + 1) + " timers");
+
+        deadline = Arrays.copyOf(deadline, capacity);
+        callbacks = Arrays.copyOf(callbacks, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        next = Arrays.copyOf(next, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+
+        for(int node = capacity - 1; node >= nodeCount; node--){
+            slotOf[node] = NONE;
+            next[node] = freeList;
+            freeList = node;
+        }
+        nodeCount = capacity;
+    }
+
+    /**
+     * Last tick that passed.
+     */
+    public long getNow(){
+        return now;
+    }
+
+    /**
+     * Timers waiting to fire.
+     */
+    public int getCount(){
+        return count;
+    }
+
+    public long getFired(){
+        return fired;
+    }
+}
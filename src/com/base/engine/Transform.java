@@ -10,42 +10,89 @@ public class Transform {
     private static float height;
     private static float fov;
 
+    // Per frame camera context, rebuilt by updateCamera() only when the camera or projection changed
+    private static final Matrix4f projectionMatrix = new Matrix4f();
+    private static final Matrix4f viewProjection = new Matrix4f();
+    private static boolean projectionDirty = true;
+    private static int viewProjectionVersion = 0;
+    private static Camera lastCamera;
+    private static int lastCameraVersion;
+
     private Vector3f translation;
     private Vector3f rotation;
     private Vector3f scale;
 
+    private Matrix4f transformation;
+    private Matrix4f projectedTransformation;
+    private boolean dirty;
+    private int projectedVersion;
+
     public Transform(){
         translation = new Vector3f(0,0,0);
         rotation = new Vector3f(0,0,0);
         scale = new Vector3f(1, 1, 1);
+
+        transformation = new Matrix4f();
+        projectedTransformation = new Matrix4f();
+        dirty = true;
+        projectedVersion = -1;
+    }
+
+    /**
+     * Computes projection * view of the given camera once for the frame. Has to be called before any
+     * getProjectedTransformation(). The camera is the one being rendered from, which with interpolation
+     * is not the gameplay camera returned by getCamera().
+     */
+    public static void updateCamera(Camera renderCamera){
+        if(!projectionDirty && lastCamera == renderCamera && lastCameraVersion == renderCamera.getVersion())
+            return;
+
+        lastCamera = renderCamera;
+        lastCameraVersion = renderCamera.getVersion();
+
+        if(projectionDirty){
+            projectionMatrix.Projection(fov, width, height, zNear, zFar);
+            projectionDirty = false;
+        }
+
+        projectionMatrix.mulInto(renderCamera.getViewMatrix(), viewProjection);
+        viewProjectionVersion++;
+    }
+
+    public static Matrix4f getViewProjection(){
+        return viewProjection;
     }
 
+    /**
+     * The returned matrix belongs to this Transform, it is only rebuilt when the translation, rotation or scale changed.
+     */
     public Matrix4f getTransformation(){
-        Matrix4f translationMat = new Matrix4f().Translation(translation.getX(), translation.getY(), translation.getZ());
-        Matrix4f rotationMat = new Matrix4f().Rotation(rotation.getX(), rotation.getY(), rotation.getZ());
-        Matrix4f scaleMat = new Matrix4f().Scale(scale.getX(), scale.getY(), scale.getZ());
+        if(dirty){
+            transformation.InitTransformation(translation, rotation, scale);
+            dirty = false;
+            projectedVersion = -1;
+        }
 
-        return translationMat.mul(rotationMat.mul(scaleMat));
+        return transformation;
     }
 
+    /**
+     * The returned matrix belongs to this Transform, it is only rebuilt when this Transform or the camera changed.
+     */
     public Matrix4f getProjectedTransformation(){
         Matrix4f transformationMatrix = getTransformation();
-        Matrix4f projectionMatrix = new Matrix4f().Projection(fov, width, height, zNear, zFar);
-        //camera.setForward(new Vector3f(0, 1, 0));
-        //camera.setUp(new Vector3f(0,0,1));
-        //System.out.println(camera.getPos().toString());
-
-        Matrix4f camRotation = new Matrix4f().CameraRotation(camera.getForward(), camera.getUp());
-        Matrix4f cameraTranslation = new Matrix4f().Translation(-camera.getPos().getX(), -camera.getPos().getY(), -camera.getPos().getZ());
-
-        //camRotation.Identity();
-        //System.out.println(cameraTranslation.get(3,2));
 
-        //return projectionMatrix.mul(cameraTranslation.mul(transformationMatrix));
-        return projectionMatrix.mul(camRotation.mul(cameraTranslation.mul(transformationMatrix)));
+        if(projectedVersion != viewProjectionVersion){
+            viewProjection.mulInto(transformationMatrix, projectedTransformation);
+            projectedVersion = viewProjectionVersion;
+        }
 
+        return projectedTransformation;
     }
 
+    /**
+     * Do not modify the returned vector, use setTranslation so the cached matrices get rebuilt.
+     */
     public Vector3f getTranslation() {
         return translation;
     }
@@ -56,38 +103,57 @@ public class Transform {
         Transform.height = height;
         Transform.zNear = zNear;
         Transform.zFar = zFar;
+        projectionDirty = true;
     }
 
     public void setTranslation(Vector3f translation) {
-        this.translation = translation;
+        setTranslation(translation.getX(), translation.getY(), translation.getZ());
     }
 
     public void setTranslation(float x, float y, float z) {
-        this.translation = new Vector3f(x, y, z);
+        if(translation.getX() == x && translation.getY() == y && translation.getZ() == z)
+            return;
+
+        this.translation.set(x, y, z);
+        dirty = true;
     }
 
+    /**
+     * Do not modify the returned vector, use setRotation so the cached matrices get rebuilt.
+     */
     public Vector3f getRotation() {
         return rotation;
     }
 
     public void setRotation(Vector3f rotation) {
-        this.rotation = rotation;
+        setRotation(rotation.getX(), rotation.getY(), rotation.getZ());
     }
 
     public void setRotation(float x, float y, float z) {
-        this.rotation = new Vector3f(x, y, z);
+        if(rotation.getX() == x && rotation.getY() == y && rotation.getZ() == z)
+            return;
+
+        this.rotation.set(x, y, z);
+        dirty = true;
     }
 
+    /**
+     * Do not modify the returned vector, use setScale so the cached matrices get rebuilt.
+     */
     public Vector3f getScale() {
         return scale;
     }
 
     public void setScale(Vector3f scale) {
-        this.scale = scale;
+        setScale(scale.getX(), scale.getY(), scale.getZ());
     }
 
     public void setScale(float x, float y, float z) {
-        this.scale = new Vector3f(x, y, z);
+        if(scale.getX() == x && scale.getY() == y && scale.getZ() == z)
+            return;
+
+        this.scale.set(x, y, z);
+        dirty = true;
     }
 
     public static Camera getCamera() {
@@ -96,5 +162,6 @@ public class Transform {
 
     public static void setCamera(Camera camera) {
         Transform.camera = camera;
+        projectionDirty = true;
     }
 }
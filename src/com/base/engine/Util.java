@@ -46,11 +46,7 @@ public class Util {
     public static FloatBuffer createFlippedBuffer(Matrix4f value){
         FloatBuffer buffer = createFloatBuffer(4 * 4);
 
-        for(int i = 0; i < 4; i++){
-            for(int j = 0; j < 4; j++){
-                buffer.put(value.get(i,j));
-            }
-        }
+        value.store(buffer);
         buffer.flip();
 
         return buffer;
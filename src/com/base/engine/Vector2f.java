@@ -17,18 +17,26 @@ public class Vector2f {
         return x * right.getX() + y * right.getY();
     }
 
+    public float lengthSquared(){
+        return x * x + y * y;
+    }
+
     public Vector2f normalize(){
         float length = length();
 
-        return new Vector2f(x/length, x/length);
+        return new Vector2f(x/length, y/length);
     }
 
     public Vector2f rotate(float angle){
+        return rotate(angle, new Vector2f(0, 0));
+    }
+
+    public Vector2f rotate(float angle, Vector2f dest){
         double rad = Math.toRadians(angle);
         double cos = Math.cos(rad);
         double sin = Math.sin(rad);
 
-        return new Vector2f((float)(x * cos - y * sin), (float)(x * sin + y * cos));
+        return dest.set((float)(x * cos - y * sin), (float)(x * sin + y * cos));
     }
 
     public Vector2f add(Vector2f right){
@@ -63,6 +71,68 @@ public class Vector2f {
         return new Vector2f(x / right, y / right);
     }
 
+    // In place and out parameter variants, these never allocate
+
+    public Vector2f set(float x, float y){
+        this.x = x;
+        this.y = y;
+
+        return this;
+    }
+
+    public Vector2f set(Vector2f value){
+        return set(value.getX(), value.getY());
+    }
+
+    public Vector2f add(Vector2f right, Vector2f dest){
+        return dest.set(x + right.getX(), y + right.getY());
+    }
+
+    public Vector2f sub(Vector2f right, Vector2f dest){
+        return dest.set(x - right.getX(), y - right.getY());
+    }
+
+    public Vector2f mul(Vector2f right, Vector2f dest){
+        return dest.set(x * right.getX(), y * right.getY());
+    }
+
+    public Vector2f mul(float right, Vector2f dest){
+        return dest.set(x * right, y * right);
+    }
+
+    public Vector2f normalize(Vector2f dest){
+        float length = length();
+
+        return dest.set(x / length, y / length);
+    }
+
+    public Vector2f addLocal(Vector2f right){
+        return add(right, this);
+    }
+
+    public Vector2f subLocal(Vector2f right){
+        return sub(right, this);
+    }
+
+    public Vector2f mulLocal(Vector2f right){
+        return mul(right, this);
+    }
+
+    public Vector2f mulLocal(float right){
+        return mul(right, this);
+    }
+
+    public Vector2f normalizeLocal(){
+        return normalize(this);
+    }
+
+    /**
+     * this += value * scale
+     */
+    public Vector2f mulAdd(Vector2f value, float scale){
+        return set(x + value.getX() * scale, y + value.getY() * scale);
+    }
+
     public String toString(){
         return "(" + x + ", " + y + ")";
     }
@@ -15,6 +15,10 @@ public class Vector3f {
         return (float)Math.sqrt(x * x + y * y + z * z);
     }
 
+    public float lengthSquared(){
+        return x * x + y * y + z * z;
+    }
+
     public float dot(Vector3f right){
         return x * right.getX() + y * right.getY() + z * right.getZ();
     }
@@ -25,12 +29,26 @@ public class Vector3f {
         return new Vector3f(x / length, y / length, z / length);
     }
 
+    public Vector3f normalize(Vector3f dest){
+        float length = length();
+
+        return dest.set(x / length, y / length, z / length);
+    }
+
+    public Vector3f normalizeLocal(){
+        return normalize(this);
+    }
+
     public Vector3f cross(Vector3f right){
+        return cross(right, new Vector3f(0, 0, 0));
+    }
+
+    public Vector3f cross(Vector3f right, Vector3f dest){
         float x_ = y * right.getZ() - z * right.getY();
         float y_ = z * right.getX() - x * right.getZ();
         float z_ = x * right.getY() - y * right.getX();
 
-        return new Vector3f(x_, y_, z_);
+        return dest.set(x_, y_, z_);
     }
 
     public Vector3f rotate(float angle, Vector3f axis){
@@ -67,6 +85,18 @@ public class Vector3f {
         return new Vector3f(w.getX(), w.getY(), w.getZ());*/
     }
 
+    public Vector3f rotate(float angle, Vector3f axis, Vector3f dest){
+        float sinAngle = (float)Math.sin(-angle);
+        float cosAngle = (float)Math.cos(-angle);
+        float axisDot = dot(axis) * (1 - cosAngle);
+
+        float x_ = (y * axis.getZ() - z * axis.getY()) * sinAngle + x * cosAngle + axis.getX() * axisDot;
+        float y_ = (z * axis.getX() - x * axis.getZ()) * sinAngle + y * cosAngle + axis.getY() * axisDot;
+        float z_ = (x * axis.getY() - y * axis.getX()) * sinAngle + z * cosAngle + axis.getZ() * axisDot;
+
+        return dest.set(x_, y_, z_);
+    }
+
     public Vector3f rotate(Quaternion rotation)
     {
         Quaternion conj = rotation.conjugate();
@@ -76,6 +106,25 @@ public class Vector3f {
         return new Vector3f(w.getX(), w.getY(), w.getZ());
     }
 
+    /**
+     * Same as rotate(Quaternion), for a normalized rotation, without the intermediate quaternions.
+     */
+    public Vector3f rotate(Quaternion rotation, Vector3f dest){
+        float qx = rotation.getX();
+        float qy = rotation.getY();
+        float qz = rotation.getZ();
+        float qw = rotation.getW();
+
+        // t = 2 * (q x v), v' = v + w * t + q x t
+        float tx = 2 * (qy * z - qz * y);
+        float ty = 2 * (qz * x - qx * z);
+        float tz = 2 * (qx * y - qy * x);
+
+        return dest.set(x + qw * tx + (qy * tz - qz * ty),
+                        y + qw * ty + (qz * tx - qx * tz),
+                        z + qw * tz + (qx * ty - qy * tx));
+    }
+
     public Vector3f Abs()
     {
         return new Vector3f(Math.abs(x), Math.abs(y), Math.abs(z));
@@ -113,6 +162,71 @@ public class Vector3f {
         return new Vector3f(x / right, y / right, z / right);
     }
 
+    // In place and out parameter variants, these never allocate
+
+    public Vector3f set(float x, float y, float z){
+        this.x = x;
+        this.y = y;
+        this.z = z;
+
+        return this;
+    }
+
+    public Vector3f set(Vector3f value){
+        return set(value.getX(), value.getY(), value.getZ());
+    }
+
+    public Vector3f add(Vector3f right, Vector3f dest){
+        return dest.set(x + right.getX(), y + right.getY(), z + right.getZ());
+    }
+
+    public Vector3f sub(Vector3f right, Vector3f dest){
+        return dest.set(x - right.getX(), y - right.getY(), z - right.getZ());
+    }
+
+    public Vector3f mul(Vector3f right, Vector3f dest){
+        return dest.set(x * right.getX(), y * right.getY(), z * right.getZ());
+    }
+
+    public Vector3f mul(float right, Vector3f dest){
+        return dest.set(x * right, y * right, z * right);
+    }
+
+    public Vector3f div(float right, Vector3f dest){
+        return dest.set(x / right, y / right, z / right);
+    }
+
+    public Vector3f addLocal(Vector3f right){
+        return add(right, this);
+    }
+
+    public Vector3f subLocal(Vector3f right){
+        return sub(right, this);
+    }
+
+    public Vector3f mulLocal(Vector3f right){
+        return mul(right, this);
+    }
+
+    public Vector3f mulLocal(float right){
+        return mul(right, this);
+    }
+
+    public Vector3f divLocal(float right){
+        return div(right, this);
+    }
+
+    /**
+     * this += value * scale
+     */
+    public Vector3f mulAdd(Vector3f value, float scale){
+        return set(x + value.getX() * scale, y + value.getY() * scale, z + value.getZ() * scale);
+    }
+
+    public Vector3f lerp(Vector3f end, float lerpFactor, Vector3f dest){
+        return dest.set(x + (end.getX() - x) * lerpFactor, y + (end.getY() - y) * lerpFactor, z + (end.getZ() - z) * lerpFactor);
+    }
+
     public float getX() {
         return x;
     }
@@ -145,6 +259,8 @@ public class Vector3f {
     public Vector2f getZY() { return new Vector2f(z, y); }
     public Vector2f getXZ() { return new Vector2f(x, z); }
 
+    public Vector2f getXZ(Vector2f dest) { return dest.set(x, z); }
+
     public String toString(){
         return "(" + x + ", " + y + ", " + z + ")";
     }
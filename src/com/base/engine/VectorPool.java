@@ -0,0 +1,91 @@
+package com.base.engine;
+
+import java.util.Arrays;
+
+/**
+ * Per thread stack of scratch vectors for the hot paths.
+ *
+ * Usage:
+ *     VectorPool pool = VectorPool.get();
+ *     pool.push();
+ *     Vector3f temp = pool.vector3f();
+ *     ...
+ *     pool.pop();
+ *
+ * Every vector handed out since the matching push() is returned by pop(), so scratch vectors
+ * must never be stored or returned to the caller. The pool only allocates while it is growing.
+ */
+public class VectorPool {
+    private static final int INITIAL_SIZE = 32;
+
+    private static final ThreadLocal<VectorPool> pools = new ThreadLocal<VectorPool>(){
+        @Override
+        protected VectorPool initialValue(){
+            return new VectorPool();
+        }
+    };
+
+    private Vector3f[] vector3s;
+    private Vector2f[] vector2s;
+    private int vector3Top;
+    private int vector2Top;
+
+    private int[] marks;
+    private int markTop;
+
+    public static VectorPool get(){
+        return pools.get();
+    }
+
+    private VectorPool(){
+        vector3s = new Vector3f[0];
+        vector2s = new Vector2f[0];
+        marks = new int[INITIAL_SIZE];
+        growVector3s();
+        growVector2s();
+    }
+
+    public void push(){
+        if(markTop + 2 > marks.length)
+            marks = Arrays.copyOf(marks, marks.length * 2);
+
+        marks[markTop++] = vector3Top;
+        marks[markTop++] = vector2Top;
+    }
+
+    public void pop(){
+        if(markTop == 0)
+            throw new IllegalStateException("VectorPool.pop() without matching push()");
+
+        vector2Top = marks[--markTop];
+        vector3Top = marks[--markTop];
+    }
+
+    public Vector3f vector3f(){
+        if(vector3Top == vector3s.length)
+            growVector3s();
+
+        return vector3s[vector3Top++].set(0, 0, 0);
+    }
+
+    public Vector2f vector2f(){
+        if(vector2Top == vector2s.length)
+            growVector2s();
+
+        return vector2s[vector2Top++].set(0, 0);
+    }
+
+    private void growVector3s(){
+        int oldSize = vector3s.length;
+        vector3s = Arrays.copyOf(vector3s, Math.max(INITIAL_SIZE, oldSize * 2));
+        for(int i = oldSize; i < vector3s.length; i++)
+            vector3s[i] = new Vector3f(0, 0, 0);
+    }
+
+    private void growVector2s(){
+        int oldSize = vector2s.length;
+        vector2s = Arrays.copyOf(vector2s, Math.max(INITIAL_SIZE, oldSize * 2));
+        for(int i = oldSize; i < vector2s.length; i++)
+            vector2s[i] = new Vector2f(0, 0);
+    }
+}
@@ -24,12 +24,18 @@ public class Window {
      * Key callback for the window.
      */
     public static GLFWKeyCallback keyCallback;
+    public static GLFWMouseButtonCallback mouseButtonCallback;
+    public static GLFWCursorPosCallback cursorPosCallback;
+    public static GLFWFramebufferSizeCallback framebufferSizeCallback;
 
     /**
      * Shows if vsync is enabled.
      */
     public static boolean vsync = true;
 
+    // When glfwSwapBuffers last returned, in Time.getTime() nanoseconds
+    private static long lastSwapTime;
+
     public static void createWindow(int width, int height, String title, boolean vsyncEnabled){
         vsync = vsyncEnabled;
         w = width;
@@ -54,7 +60,16 @@ public class Window {
             throw new RuntimeException("Failed to create the GLFW window");
 
         // Setup a key callback. It will be called every time a key is pressed, repeated or released.
-        glfwSetKeyCallback(Window.windowid, keyCallback = new Input());
+        glfwSetKeyCallback(Window.windowid, keyCallback = GLFWKeyCallback.create((window, key, scancode, action, mods) -> Input.setKeyState(key, action)));
+        glfwSetMouseButtonCallback(Window.windowid, mouseButtonCallback = GLFWMouseButtonCallback.create((window, button, action, mods) -> Input.setMouseButtonState(button, action)));
+        glfwSetCursorPosCallback(Window.windowid, cursorPosCallback = GLFWCursorPosCallback.create((window, x, y) -> Input.setCursorPosition(x, y)));
+        // The window is resizable, getWidth() and getHeight() follow it. Minimizing reports 0 x 0, which is skipped.
+        glfwSetFramebufferSizeCallback(Window.windowid, framebufferSizeCallback = GLFWFramebufferSizeCallback.create((window, newWidth, newHeight) -> {
+            if(newWidth > 0 && newHeight > 0){
+                w = newWidth;
+                h = newHeight;
+            }
+        }));
 
 
         // Get the thread stack and push a new frame
@@ -115,6 +130,7 @@ public class Window {
     public static void lateRender(){
         if ( !glfwWindowShouldClose(windowid) ) {
             glfwSwapBuffers(windowid); // swap the color buffers
+            lastSwapTime = Time.getTime();
 
             // Poll for window events. The key callback above will only be
             // invoked during this call.
@@ -122,6 +138,14 @@ public class Window {
         }
     }
 
+    /**
+     * When the last frame was handed to the display: the time glfwSwapBuffers returned, in Time.getTime()
+     * nanoseconds. With vsync that is when the frame got its place in the display's queue.
+     */
+    public static long getLastSwapTime(){
+        return lastSwapTime;
+    }
+
     public static void setTitle(CharSequence title) {
         glfwSetWindowTitle(windowid, title);
     }
@@ -130,6 +154,14 @@ public class Window {
         return glfwWindowShouldClose(windowid);
     }
 
+    public static boolean isFocused(){
+        return glfwGetWindowAttrib(windowid, GLFW_FOCUSED) == GLFW_TRUE;
+    }
+
+    public static boolean isIconified(){
+        return glfwGetWindowAttrib(windowid, GLFW_ICONIFIED) == GLFW_TRUE;
+    }
+
     public static boolean isVSyncEnabled() {
         return vsync;
     }
@@ -0,0 +1,87 @@
+package com.base.engine.bench;
+
+import com.base.engine.BatchTransform;
+import com.base.engine.Matrix4f;
+import com.base.engine.Transform;
+import com.base.engine.Vector3f;
+
+/**
+ * Compares BatchTransform against building every matrix through Transform, for 1k, 10k and 100k entities.
+ *
+ * Arguments:
+ *     -iterations n    frames to time per entity count, defaults to 200
+ */
+public class BatchTransformBenchmark {
+    public static void main(String[] args){
+        int iterations = 200;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-iterations"))
+                iterations = Integer.parseInt(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        int[] counts = {1000, 10000, 100000};
+
+        Matrix4f viewProjection = new Matrix4f().Projection(70f, 800, 600, 0.01f, 1000f)
+                .mul(new Matrix4f().CameraRotation(new Vector3f(0.6f, 0, 0.8f), new Vector3f(0, 1, 0)))
+                .mul(new Matrix4f().Translation(-10, -0.4375f, -8));
+
+        for(int count : counts){
+            float[] px = new float[count], py = new float[count], pz = new float[count], yaw = new float[count];
+            float[] sx = new float[count], sy = new float[count], sz = new float[count];
+            Transform[] transforms = new Transform[count];
+            Matrix4f[] mvps = new Matrix4f[count];
+            for(int i = 0; i < count; i++){
+                px[i] = (i % 64) + 0.5f;
+                pz[i] = (i / 64 % 64) + 0.5f;
+                yaw[i] = (i * 37) % 360;
+                sx[i] = 1.75f;
+                sy[i] = 1.0f;
+                sz[i] = 1.0f;
+
+                transforms[i] = new Transform();
+                transforms[i].setScale(sx[i], sy[i], sz[i]);
+                mvps[i] = new Matrix4f();
+            }
+
+            BatchTransform batch = new BatchTransform();
+            float[] dest = new float[count * 16];
+
+            // Every iteration changes the yaw, which is what billboards do every frame
+            long batchTime = 0;
+            long scalarTime = 0;
+            for(int warmup = 0; warmup < 2; warmup++){
+                batchTime = 0;
+                scalarTime = 0;
+                for(int n = 0; n < iterations; n++){
+                    for(int i = 0; i < count; i++)
+                        yaw[i] += 1.0f;
+
+                    long start = System.nanoTime();
+                    batch.computeMVP(viewProjection, px, py, pz, yaw, sx, sy, sz, count, dest);
+                    batchTime += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    for(int i = 0; i < count; i++){
+                        transforms[i].setTranslation(px[i], py[i], pz[i]);
+                        transforms[i].setRotation(0, yaw[i], 0);
+                        viewProjection.mulInto(transforms[i].getTransformation(), mvps[i]);
+                    }
+                    scalarTime += System.nanoTime() - start;
+                }
+            }
+
+            float maxError = 0;
+            for(int i = 0; i < count; i++)
+                for(int j = 0; j < 16; j++)
+                    maxError = Math.max(maxError, Math.abs(dest[i * 16 + j] - mvps[i].getM()[j]));
+
+            double batchNs = (double)batchTime / ((double)iterations * count);
+            double scalarNs = (double)scalarTime / ((double)iterations * count);
+            System.out.println(count + " entities: batch " + String.format("%.2f", batchNs) + " ns/entity, Transform "
+                    + String.format("%.2f", scalarNs) + " ns/entity, max error " + maxError);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.base.engine.bench;
+
+import com.base.engine.FlowField;
+import com.base.engine.MazeGenerator;
+import com.base.engine.SplitMix64;
+import com.base.engine.Time;
+
+/**
+ * Builds a FlowField over a generated maze and reports what a full build, a time-sliced build and
+ * the lookups cost.
+ *
+ * Arguments:
+ *     -size n          cells along each side of the maze, defaults to 1024
+ *     -budget n        cells settled per slice, defaults to 16384
+ *     -seed n          seed of the maze, defaults to 1
+ */
+public class FlowFieldBenchmark {
+    public static void main(String[] args){
+        int size = 1024;
+        int budget = 16384;
+        long seed = 1;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-size"))
+                size = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-budget"))
+                budget = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        FlowField field = new FlowField(size, size, 0);
+        boolean[] walls = MazeGenerator.maze(size, seed);
+        int free = 0;
+        for(int i = 0; i < walls.length; i++){
+            if(walls[i])
+                field.setCost(i % size, i / size, FlowField.BLOCKED);
+            else
+                free++;
+        }
+        System.out.println(size + "x" + size + " maze, " + free + " free cells");
+
+        // Warm up, then measure full builds toward changing targets
+        int[] targetX = new int[]{1, size - 3, 1, size - 3, size / 2 | 1};
+        int[] targetZ = new int[]{1, size - 3, size - 3, 1, size / 2 | 1};
+        for(int i = 0; i < 3; i++){
+            field.setTarget(targetX[i], targetZ[i]);
+            field.build();
+        }
+
+        long total = 0;
+        for(int i = 0; i < targetX.length; i++){
+            field.setTarget(targetX[i], targetZ[i]);
+            long start = Time.getTime();
+            field.build();
+            total += Time.getTime() - start;
+        }
+        System.out.println("full build " + String.format("%.2f", total / (double)targetX.length / 1000000.0) + " ms, "
+                + String.format("%.1f", total / (double)targetX.length / free) + " ns per cell");
+
+        field.setTarget(1, 1);
+        int slices = 0;
+        long maxSlice = 0;
+        while(true){
+            long start = Time.getTime();
+            boolean done = field.update(budget);
+            maxSlice = Math.max(maxSlice, Time.getTime() - start);
+            slices++;
+            if(done)
+                break;
+        }
+        System.out.println("sliced build " + slices + " slices of " + budget + " cells, longest slice "
+                + String.format("%.1f", maxSlice / 1000.0) + " us");
+
+        long[] state = new long[]{SplitMix64.seed(seed, 1)};
+        int lookups = 10000000;
+        int steps = 0;
+        long start = Time.getTime();
+        for(int i = 0; i < lookups; i++){
+            int direction = field.getDirection(SplitMix64.nextInt(state, 0, size), SplitMix64.nextInt(state, 0, size));
+            if(direction != FlowField.NO_DIRECTION)
+                steps++;
+        }
+        long lookupTime = Time.getTime() - start;
+        System.out.println(lookups + " lookups, " + steps + " with a step, "
+                + String.format("%.1f", lookupTime / (double)lookups) + " ns per lookup (random number generation included)");
+    }
+}
@@ -0,0 +1,51 @@
+package com.base.engine.bench;
+
+import com.base.engine.Clock;
+import com.base.engine.FramePacer;
+import com.base.engine.ManualClock;
+
+/**
+ * Measures FramePacer's accuracy: first against a ManualClock that oversleeps like a coarse scheduler, then
+ * against the real clock, with and without the spin phase.
+ */
+public class FramePacerBenchmark {
+    public static void main(String[] args){
+        final double rate = 240.0;
+        final int frames = 480;
+
+        ManualClock manual = new ManualClock(1500000L, 1000L);
+        FramePacer pacer = new FramePacer(manual, rate, 0, 5);
+        run(pacer, frames);
+        report("manual clock, 1.5 ms oversleep", pacer);
+
+        // A 50 ms hitch has to be caught up on in at most 5 ticks
+        pacer.resetStatistics();
+        pacer.waitForNext();
+        manual.advance(50000000L);
+        int due = pacer.waitForNext();
+        System.out.println("after a 50 ms hitch: " + due + " ticks due, " + pacer.getDroppedDeadlines() + " dropped");
+
+        pacer = new FramePacer(Clock.SYSTEM, rate, 0, 5);
+        run(pacer, frames);
+        report("system clock, hybrid wait", pacer);
+
+        pacer = new FramePacer(Clock.SYSTEM, rate, 0, 5);
+        pacer.setSpinThreshold(0);
+        run(pacer, frames);
+        report("system clock, sleep only", pacer);
+    }
+
+    private static void run(FramePacer pacer, int frames){
+        pacer.waitForNext();
+        pacer.resetStatistics();
+        for(int i = 0; i < frames; i++)
+            pacer.waitForNext();
+    }
+
+    private static void report(String name, FramePacer pacer){
+        System.out.println(name + ": " + pacer.getWaits() + " waits, lateness avg "
+                + String.format("%.3f", pacer.getAverageLateness() / 1000000.0) + " ms, max "
+                + String.format("%.3f", pacer.getMaxLateness() / 1000000.0) + " ms, "
+                + pacer.getDroppedDeadlines() + " dropped");
+    }
+}
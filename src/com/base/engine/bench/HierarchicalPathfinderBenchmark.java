@@ -0,0 +1,144 @@
+package com.base.engine.bench;
+
+import com.base.engine.FlowField;
+import com.base.engine.GridAStar;
+import com.base.engine.HierarchicalPathfinder;
+import com.base.engine.MazeGenerator;
+import com.base.engine.SplitMix64;
+import com.base.engine.Time;
+
+/**
+ * Answers random queries on a generated map with flat A* and with HierarchicalPathfinder, and reports
+ * what each costs and how much longer the hierarchical paths are.
+ *
+ * Arguments:
+ *     -map rooms|maze  kind of map, defaults to rooms
+ *     -size n          cells along each side of the map, defaults to 1024
+ *     -cluster n       cells along each side of a cluster, defaults to 16
+ *     -queries n       number of queries, defaults to 200
+ *     -seed n          seed of the map and queries, defaults to 1
+ */
+public class HierarchicalPathfinderBenchmark {
+    public static void main(String[] args){
+        String map = "rooms";
+        int size = 1024;
+        int clusterSize = HierarchicalPathfinder.DEFAULT_CLUSTER_SIZE;
+        int queries = 200;
+        long seed = 1;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-map"))
+                map = args[i + 1];
+            else if(args[i].equals("-size"))
+                size = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-cluster"))
+                clusterSize = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-queries"))
+                queries = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        boolean[] walls;
+        if(map.equals("rooms"))
+            walls = MazeGenerator.rooms(size, 12, seed);
+        else if(map.equals("maze"))
+            walls = MazeGenerator.maze(size, seed);
+        else
+            throw new IllegalArgumentException("Unknown map " + map);
+
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(size, size, clusterSize, 0, queries);
+        int[] costs = new int[walls.length];
+        for(int i = 0; i < walls.length; i++){
+            if(walls[i]){
+                pathfinder.setCost(i % size, i / size, FlowField.BLOCKED);
+                costs[i] = FlowField.BLOCKED;
+            }
+        }
+
+        long start = Time.getTime();
+        pathfinder.update();
+        long buildTime = Time.getTime() - start;
+        System.out.println(size + "x" + size + " " + map + ", " + pathfinder.getClusterCount() + " clusters of " + clusterSize + "x" + clusterSize
+                + ", " + pathfinder.getNodeCount() + " nodes, built in " + String.format("%.1f", buildTime / 1000000.0) + " ms");
+
+        long[] state = new long[]{SplitMix64.seed(seed, 2)};
+        int[] from = new int[queries];
+        int[] to = new int[queries];
+        for(int i = 0; i < queries; i++){
+            from[i] = randomFreeCell(walls, state);
+            to[i] = randomFreeCell(walls, state);
+        }
+
+        GridAStar flat = new GridAStar(size, size, costs);
+        long flatTime = 0;
+        long flatCost = 0;
+        int found = 0;
+        for(int i = 0; i < queries; i++){
+            start = Time.getTime();
+            int cost = flat.search(from[i], to[i]);
+            flatTime += Time.getTime() - start;
+            if(cost >= 0){
+                flatCost += cost;
+                found++;
+            }
+        }
+
+        long abstractTime = 0;
+        long refineTime = 0;
+        long hierarchicalCost = 0;
+        for(int i = 0; i < queries; i++){
+            start = Time.getTime();
+            int[] waypoints = pathfinder.findPath(from[i], to[i]);
+            abstractTime += Time.getTime() - start;
+            if(waypoints == null)
+                continue;
+
+            start = Time.getTime();
+            int[] path = pathfinder.refine(waypoints);
+            refineTime += Time.getTime() - start;
+            hierarchicalCost += pathfinder.getPathCost(path);
+        }
+
+        start = Time.getTime();
+        for(int i = 0; i < queries; i++)
+            pathfinder.findPath(from[i], to[i]);
+        long cachedTime = Time.getTime() - start;
+
+        System.out.println(queries + " queries, " + found + " reachable, hierarchical paths "
+                + String.format("%.1f", (hierarchicalCost / (double)Math.max(1, flatCost) - 1) * 100) + "% longer");
+        report("flat A*", flatTime, queries);
+        report("hierarchical, waypoints", abstractTime, queries);
+        report("hierarchical, waypoints and cells", abstractTime + refineTime, queries);
+        report("hierarchical, cached waypoints", cachedTime, queries);
+
+        // Close and open a doorway, as Level does with doors
+        int door = randomFreeCell(walls, state);
+        start = Time.getTime();
+        pathfinder.setCost(door % size, door / size, FlowField.BLOCKED);
+        pathfinder.update();
+        pathfinder.setCost(door % size, door / size, 0);
+        pathfinder.update();
+        long doorTime = Time.getTime() - start;
+        System.out.println("closing and opening a door rebuilt " + (pathfinder.getRebuiltClusters() - pathfinder.getClusterCount()) + " clusters in "
+                + String.format("%.1f", doorTime / 1000.0) + " us");
+    }
+
+    private static int randomFreeCell(boolean[] walls, long[] state){
+        while(true){
+            int cell = SplitMix64.nextInt(state, 0, walls.length);
+            if(!walls[cell])
+                return cell;
+        }
+    }
+
+    private static void report(String name, long time, int queries){
+        double perQuery = time / (double)queries;
+        System.out.println(name + ": " + String.format("%.1f", perQuery / 1000.0) + " us per query, one core busy "
+                + String.format("%.2f", perQuery * 100 / Time.SECOND * 100) + "% at 100 queries/s, "
+                + String.format("%.1f", perQuery * 1000 / Time.SECOND * 100) + "% at 1k, "
+                + String.format("%.0f", perQuery * 10000 / Time.SECOND * 100) + "% at 10k");
+    }
+}
@@ -0,0 +1,131 @@
+package com.base.engine.bench;
+
+import com.base.engine.InputLatency;
+import com.base.engine.InputQueue;
+import com.base.engine.MainComponent;
+import com.base.engine.ManualClock;
+import com.base.engine.Match;
+import com.base.engine.Snapshot;
+import com.base.engine.SplitMix64;
+import com.base.engine.Time;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Measures InputLatency over the whole pipeline without a window, on a ManualClock: random key events
+ * go through an InputQueue into a live match ticked at MainComponent.TICK_RATE, each tick publishes a
+ * snapshot once its update is done, and each frame shows the newest published snapshot and is swapped
+ * a fixed time after it started. The same arguments always give the same numbers.
+ *
+ * Arguments:
+ *     -ticks n         ticks to run, defaults to 6000
+ *     -fps n           frames per second, defaults to MainComponent.FRAME_CAP
+ *     -update ms       time from a tick until its snapshot is published, defaults to 2
+ *     -render ms       time from the start of a frame until its swap, defaults to 4
+ *     -events n        key events per second, defaults to 10
+ *     -latch b         true to late latch the look keys at the start of every frame, defaults to false
+ *     -seed n          seed of the match and of the events, defaults to 1
+ */
+public class InputLatencyBenchmark {
+    public static void main(String[] args){
+        long ticks = 6000;
+        double fps = MainComponent.FRAME_CAP;
+        double updateMillis = 2;
+        double renderMillis = 4;
+        double eventRate = 10;
+        boolean latch = false;
+        long seed = 1;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-ticks"))
+                ticks = Long.parseLong(args[i + 1]);
+            else if(args[i].equals("-fps"))
+                fps = Double.parseDouble(args[i + 1]);
+            else if(args[i].equals("-update"))
+                updateMillis = Double.parseDouble(args[i + 1]);
+            else if(args[i].equals("-render"))
+                renderMillis = Double.parseDouble(args[i + 1]);
+            else if(args[i].equals("-events"))
+                eventRate = Double.parseDouble(args[i + 1]);
+            else if(args[i].equals("-latch"))
+                latch = Boolean.parseBoolean(args[i + 1]);
+            else if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        final int[] eventKeys = {GLFW_KEY_W, GLFW_KEY_S, GLFW_KEY_A, GLFW_KEY_D, GLFW_KEY_UP, GLFW_KEY_DOWN, GLFW_KEY_LEFT, GLFW_KEY_RIGHT};
+        final int lookKeys = 4;     // The last ones
+
+        long tickPeriod = (long)(Time.SECOND / MainComponent.TICK_RATE);
+        long framePeriod = (long)(Time.SECOND / fps);
+        long updateTime = (long)(updateMillis * 1000000);
+        long renderTime = (long)(renderMillis * 1000000);
+
+        ManualClock clock = new ManualClock();
+        InputQueue queue = new InputQueue();
+        Match match = new Match(seed, tickPeriod / (double)Time.SECOND, true);
+        match.setInputQueue(queue);
+        match.start();
+
+        long[] state = new long[]{SplitMix64.seed(seed, 3)};
+        boolean[] held = new boolean[eventKeys.length];
+        Snapshot pending = new Snapshot();
+        Snapshot published = new Snapshot();
+        InputLatency latency = new InputLatency();
+        long lookTime = InputLatency.NO_INPUT;
+
+        long end = ticks * tickPeriod;
+        long nextEvent = nextEvent(state, 0, eventRate);
+        long nextPublish = Long.MAX_VALUE;
+        long nextTick = tickPeriod;
+        long nextFrame = 0;
+
+        while(nextTick <= end){
+            long now = Math.min(Math.min(nextEvent, nextPublish), Math.min(nextTick, nextFrame));
+            clock.setTime(now);
+
+            if(now == nextEvent){
+                int k = SplitMix64.nextInt(state, 0, eventKeys.length);
+                held[k] = !held[k];
+                queue.publishKey(eventKeys[k], held[k] ? GLFW_PRESS : GLFW_RELEASE, clock.getTime());
+                if(k >= eventKeys.length - lookKeys)
+                    lookTime = clock.getTime();
+                nextEvent = nextEvent(state, now, eventRate);
+            }
+            else if(now == nextPublish){
+                published.set(pending);
+                nextPublish = Long.MAX_VALUE;
+            }
+            else if(now == nextTick){
+                match.input();
+                match.update();
+                pending.capture(match.getLevel(), match.getTick(), now, match.getInputTime());
+                nextPublish = now + updateTime;
+                nextTick += tickPeriod;
+            }
+            else {
+                long inputTime = published.getInputTime();
+                if(latch && lookTime > inputTime)
+                    inputTime = lookTime;
+
+                long swapTime = now + renderTime;
+                latency.frameSwapped(inputTime, swapTime);
+                nextFrame = Math.max(now + framePeriod, swapTime);
+            }
+        }
+
+        match.cleanUp();
+
+        System.out.println(ticks + " ticks, " + String.format("%.0f", fps) + " fps, update " + updateMillis
+                + " ms, render " + renderMillis + " ms" + (latch ? ", late latched" : ""));
+        System.out.println(latency.getSummary());
+    }
+
+    // Events arrive at random, rate per second on average
+    private static long nextEvent(long[] state, long now, double rate){
+        double u = SplitMix64.nextDouble(state, 0);
+        return now + 1 + (long)(-Math.log(1 - u) / rate * Time.SECOND);
+    }
+}
@@ -0,0 +1,100 @@
+package com.base.engine.bench;
+
+import com.base.engine.Camera;
+import com.base.engine.HeadlessRunner;
+import com.base.engine.Level;
+import com.base.engine.RaycastRenderer;
+import com.base.engine.Snapshot;
+import com.base.engine.Time;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Frame rate of RaycastRenderer for every thread count up to the number of cores. A scripted match plays
+ * one tick per frame, so the frames show its doors opening and its monsters and medkits the way the game
+ * does, drawn from snapshots from the player's view. The same frames are also drawn with walls only,
+ * to show what doors and sprites cost.
+ *
+ * Arguments:
+ *     -width n         defaults to 1920
+ *     -height n        defaults to 1080
+ *     -frames n        frames to measure per thread count, defaults to 200
+ *     -seed n          seed of the match and its scripted input, defaults to 1
+ *     -image file      saves the last frame of the last thread count as PNG
+ */
+public class RaycastBenchmark {
+    public static void main(String[] args){
+        int width = 1920;
+        int height = 1080;
+        int frames = 200;
+        long seed = 1;
+        String imageFile = null;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-width"))
+                width = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-height"))
+                height = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-frames"))
+                frames = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else if(args[i].equals("-image"))
+                imageFile = args[i + 1];
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        // Play the same ticks for every thread count
+        int warmup = frames / 4;
+        Snapshot[] snapshots = new Snapshot[warmup + frames];
+        HeadlessRunner runner = new HeadlessRunner(seed, null);
+        for(int i = 0; i < snapshots.length; i++){
+            runner.tick();
+            Level level = runner.getMatch().getLevel();
+            snapshots[i] = new Snapshot();
+            snapshots[i].capture(level, runner.getMatch().getTick(), 0, 0);
+        }
+        runner.cleanUp();
+
+        Camera[] cameras = new Camera[snapshots.length];
+        int doors = 0;
+        for(int i = 0; i < snapshots.length; i++){
+            cameras[i] = new Camera();
+            cameras[i].setPos(snapshots[i].getCameraPos());
+            cameras[i].setOrientation(snapshots[i].getCameraOrientation());
+            doors = Math.max(doors, snapshots[i].getDoorCount());
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for(int threads = 1; threads <= cores; threads = (threads == cores || threads * 2 <= cores) ? threads * 2 : cores){
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            RaycastRenderer renderer = new RaycastRenderer(width, height, pool);
+
+            for(int i = 0; i < warmup; i++)
+                renderer.render(snapshots[i], cameras[i]);
+
+            long sprites = 0;
+            long startTime = Time.getTime();
+            for(int i = warmup; i < snapshots.length; i++){
+                renderer.render(snapshots[i], cameras[i]);
+                sprites += renderer.getSpriteCount();
+            }
+            double seconds = (Time.getTime() - startTime) / (double)Time.SECOND;
+
+            if(threads == cores && imageFile != null)
+                renderer.saveImage(imageFile);
+
+            long wallsStart = Time.getTime();
+            for(int i = warmup; i < snapshots.length; i++)
+                renderer.render(snapshots[i].getLevel().getBitmap(), cameras[i]);
+            double wallsSeconds = (Time.getTime() - wallsStart) / (double)Time.SECOND;
+
+            System.out.println(threads + " threads: " + String.format("%.1f", frames / seconds) + " frames/sec with "
+                    + doors + " doors and " + String.format("%.1f", sprites / (double)frames) + " sprites in view, "
+                    + String.format("%.1f", frames / wallsSeconds) + " frames/sec walls only");
+
+            pool.shutdown();
+        }
+    }
+}
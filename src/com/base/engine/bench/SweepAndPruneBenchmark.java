@@ -0,0 +1,76 @@
+package com.base.engine.bench;
+
+import com.base.engine.MonsterSystem;
+import com.base.engine.SplitMix64;
+import com.base.engine.SweepAndPrune;
+import com.base.engine.Time;
+
+/**
+ * Moves a crowd of boxes around randomly and reports what SweepAndPrune's updates cost per box.
+ *
+ * Arguments:
+ *     -boxes n         number of boxes, defaults to 4096
+ *     -density n       boxes per unit of area, defaults to 0.5
+ *     -ticks n         updates to measure, defaults to 1000
+ *     -seed n          seed of the positions and moves, defaults to 1
+ */
+public class SweepAndPruneBenchmark {
+    public static void main(String[] args){
+        int boxes = 4096;
+        float density = 0.5f;
+        int ticks = 1000;
+        long seed = 1;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(args[i].equals("-boxes"))
+                boxes = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-density"))
+                density = Float.parseFloat(args[i + 1]);
+            else if(args[i].equals("-ticks"))
+                ticks = Integer.parseInt(args[i + 1]);
+            else if(args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        float side = (float)Math.sqrt(boxes / density);
+        float[] x = new float[boxes];
+        float[] z = new float[boxes];
+        long[] state = new long[]{SplitMix64.seed(seed, 0)};
+        for(int i = 0; i < boxes; i++){
+            x[i] = (float)SplitMix64.nextDouble(state, 0) * side;
+            z[i] = (float)SplitMix64.nextDouble(state, 0) * side;
+        }
+
+        SweepAndPrune broadphase = new SweepAndPrune(MonsterSystem.MONSTER_LENGTH * 2);
+        broadphase.setCount(boxes);
+        long[] pairs = new long[1];
+        SweepAndPrune.PairCallback callback = (a, b) -> pairs[0]++;
+
+        long time = 0;
+        long swaps = 0;
+        for(int t = -100; t < ticks; t++){
+            // Monsters walk about 1/60 of a unit per tick
+            for(int i = 0; i < boxes; i++){
+                x[i] = Math.min(side, Math.max(0, x[i] + (float)(SplitMix64.nextDouble(state, 0) - 0.5) / 30));
+                z[i] = Math.min(side, Math.max(0, z[i] + (float)(SplitMix64.nextDouble(state, 0) - 0.5) / 30));
+                broadphase.setBox(i, x[i], z[i], MonsterSystem.MONSTER_WIDTH, MonsterSystem.MONSTER_LENGTH);
+            }
+
+            long start = Time.getTime();
+            broadphase.update(callback);
+            // The first updates sort the initial random order and warm up
+            if(t >= 0){
+                time += Time.getTime() - start;
+                swaps += broadphase.getLastSwaps();
+            }
+        }
+
+        System.out.println(boxes + " boxes on " + String.format("%.0f", side) + "x" + String.format("%.0f", side) + ": "
+                + String.format("%.1f", time / (double)ticks / 1000.0) + " us per update, "
+                + String.format("%.1f", time / (double)ticks / boxes) + " ns per box, "
+                + String.format("%.2f", swaps / (double)ticks / boxes) + " swaps and "
+                + String.format("%.2f", pairs[0] / (double)(ticks + 100) / boxes) + " overlaps per box");
+    }
+}
@@ -0,0 +1,17 @@
+package com.base.engine;
+
+/**
+ * Runs every test, stopping at the first failed check.
+ */
+public class AllTests {
+    public static void main(String[] args){
+        FramePacerTest.main(args);
+        FlowFieldTest.main(args);
+        HierarchicalPathfinderTest.main(args);
+        SweepAndPruneTest.main(args);
+        LatencyHistogramTest.main(args);
+        InputLatencyTest.main(args);
+        ResolutionScalerTest.main(args);
+        System.out.println("all tests passed");
+    }
+}
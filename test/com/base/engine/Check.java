@@ -0,0 +1,33 @@
+package com.base.engine;
+
+/**
+ * Assertions for the tests under test/, which run as plain mains so they need nothing but the engine's
+ * own classpath. A failed check throws an AssertionError naming what was checked.
+ */
+class Check {
+    static void isTrue(boolean condition, String what){
+        if(!condition)
+            throw new AssertionError(what);
+    }
+
+    static void equal(long expected, long actual, String what){
+        if(expected != actual)
+            throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+    }
+
+    static void near(double expected, double actual, double tolerance, String what){
+        if(Math.abs(expected - actual) > tolerance)
+            throw new AssertionError(what + ": expected " + expected + " within " + tolerance + ", got " + actual);
+    }
+
+    static void throwsException(Class<? extends RuntimeException> type, Runnable action, String what){
+        try {
+            action.run();
+        }catch (RuntimeException e){
+            if(type.isInstance(e))
+                return;
+            throw new AssertionError(what + ": expected " + type.getSimpleName() + ", got " + e, e);
+        }
+        throw new AssertionError(what + ": expected " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,133 @@
+package com.base.engine;
+
+/**
+ * FlowField against GridAStar on generated maps with random cell costs: every cell's distance has to
+ * be the cost of the cheapest path to the target, and following the directions has to walk such a path.
+ */
+public class FlowFieldTest {
+    private static final int MAX_COST = 10;
+
+    public static void main(String[] args){
+        for(long seed = 1; seed <= 3; seed++){
+            matchesAStar(MazeGenerator.maze(63, seed), 63, seed);
+            matchesAStar(MazeGenerator.rooms(64, 8, seed), 64, seed);
+        }
+        slicedBuildKeepsTheOldField();
+        System.out.println("FlowFieldTest passed");
+    }
+
+    private static void matchesAStar(boolean[] walls, int size, long seed){
+        int[] costs = randomCosts(walls, seed);
+        FlowField field = new FlowField(size, size, MAX_COST);
+        for(int cell = 0; cell < costs.length; cell++)
+            field.setCost(cell % size, cell / size, costs[cell]);
+
+        GridAStar search = new GridAStar(size, size, costs);
+        long[] state = new long[]{SplitMix64.seed(seed, 2)};
+        for(int n = 0; n < 4; n++){
+            int target = randomFreeCell(costs, state);
+            field.setTarget(target % size, target / size);
+            field.build();
+
+            // Backwards from the target gives the cost from every cell to it
+            search.search(target, -1, 0, 0, size, size, true);
+            for(int cell = 0; cell < costs.length; cell++){
+                int x = cell % size;
+                int z = cell / size;
+                String where = "seed " + seed + ", target " + target + ", cell " + cell;
+
+                Check.equal(search.getCost(cell), field.getDistance(x, z), "distance at " + where);
+                if(field.getDistance(x, z) > 0)
+                    Check.equal(field.getDistance(x, z), walk(field, costs, cell, target), "walked cost at " + where);
+                else
+                    Check.equal(FlowField.NO_DIRECTION, field.getDirection(x, z), "direction at " + where);
+            }
+
+            // Spot check the forward search too
+            for(int i = 0; i < 16; i++){
+                int start = randomFreeCell(costs, state);
+                Check.equal(search(costs, size, start, target), field.getDistance(start % size, start / size),
+                        "distance from " + start + " to " + target + ", seed " + seed);
+            }
+        }
+    }
+
+    private static void slicedBuildKeepsTheOldField(){
+        int size = 63;
+        boolean[] walls = MazeGenerator.maze(size, 7);
+        FlowField field = new FlowField(size, size, 0);
+        for(int cell = 0; cell < walls.length; cell++)
+            if(walls[cell])
+                field.setCost(cell % size, cell / size, FlowField.BLOCKED);
+
+        Check.isTrue(!field.isReady(), "ready before the first build");
+        field.setTarget(1, 1);
+        field.build();
+        Check.isTrue(field.isReady(), "ready after the first build");
+        Check.equal(0, field.getDistance(1, 1), "distance at the first target");
+
+        field.setTarget(size - 2, size - 2);
+        int slices = 0;
+        while(!field.update(64)){
+            Check.equal(0, field.getDistance(1, 1), "distance at the first target while building");
+            slices++;
+        }
+        Check.isTrue(slices > 1, "build was sliced");
+        Check.equal(0, field.getDistance(size - 2, size - 2), "distance at the second target");
+
+        FlowField whole = new FlowField(size, size, 0);
+        for(int cell = 0; cell < walls.length; cell++)
+            if(walls[cell])
+                whole.setCost(cell % size, cell / size, FlowField.BLOCKED);
+        whole.setTarget(size - 2, size - 2);
+        whole.build();
+        for(int cell = 0; cell < walls.length; cell++)
+            Check.equal(whole.getDistance(cell % size, cell / size), field.getDistance(cell % size, cell / size),
+                    "sliced distance at " + cell);
+    }
+
+    // Follows the directions from cell and adds up what the steps cost, -1 if they do not lead to target
+    private static int walk(FlowField field, int[] costs, int cell, int target){
+        int size = field.getWidth();
+        int cost = 0;
+        for(int steps = 0; steps < costs.length; steps++){
+            if(cell == target)
+                return cost;
+
+            int d = field.getDirection(cell % size, cell / size);
+            if(d == FlowField.NO_DIRECTION)
+                return -1;
+
+            cell += FlowField.DIRECTION_X[d] + FlowField.DIRECTION_Z[d] * size;
+            cost += (d >= 4 ? FlowField.COST_DIAGONAL : FlowField.COST_STRAIGHT) + costs[cell];
+        }
+
+        return -1;
+    }
+
+    private static int search(int[] costs, int size, int start, int goal){
+        return new GridAStar(size, size, costs).search(start, goal);
+    }
+
+    // Walls blocked, a third of the free cells costing up to MAX_COST to enter
+    static int[] randomCosts(boolean[] walls, long seed){
+        long[] state = new long[]{SplitMix64.seed(seed, 1)};
+        int[] costs = new int[walls.length];
+        for(int cell = 0; cell < walls.length; cell++){
+            if(walls[cell])
+                costs[cell] = FlowField.BLOCKED;
+            else if(SplitMix64.nextInt(state, 0, 3) == 0)
+                costs[cell] = SplitMix64.nextInt(state, 0, MAX_COST + 1);
+        }
+
+        return costs;
+    }
+
+    static int randomFreeCell(int[] costs, long[] state){
+        while(true){
+            int cell = SplitMix64.nextInt(state, 0, costs.length);
+            if(costs[cell] != FlowField.BLOCKED)
+                return cell;
+        }
+    }
+}
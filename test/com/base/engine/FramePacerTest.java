@@ -0,0 +1,111 @@
+package com.base.engine;
+
+/**
+ * FramePacer's deadlines, measured on a ManualClock that oversleeps 1.5 ms and spins in 1 us steps.
+ */
+public class FramePacerTest {
+    // 250 per second, a period of exactly 4 ms
+    private static final double RATE = 250;
+    private static final long PERIOD = 4000000L;
+    private static final long OVERSLEEP = 1500000L;
+    private static final long SPIN_STEP = 1000L;
+
+    public static void main(String[] args){
+        deadlinesAreOnePeriodApart();
+        smallHitchIsCaughtUp();
+        largeHitchDropsDeadlines();
+        throttlingRestartsAtTheThrottledRate();
+        noLimitNeverWaits();
+        rejectsNoCatchUp();
+        System.out.println("FramePacerTest passed");
+    }
+
+    private static void deadlinesAreOnePeriodApart(){
+        ManualClock clock = new ManualClock(OVERSLEEP, SPIN_STEP);
+        FramePacer pacer = new FramePacer(clock, RATE, 0, 5);
+
+        Check.equal(1, pacer.waitForNext(), "first wait");
+        Check.equal(0, pacer.getDeadline(), "first deadline");
+
+        for(int i = 1; i <= 100; i++){
+            Check.equal(1, pacer.waitForNext(), "due at wait " + i);
+            Check.equal(i * PERIOD, pacer.getDeadline(), "deadline " + i);
+            // The sleep stops short by the spin threshold, so the oversleep never makes it late
+            Check.equal(i * PERIOD, clock.getTime(), "time after wait " + i);
+        }
+
+        Check.equal(0, pacer.getMaxLateness(), "max lateness");
+        Check.equal(0, pacer.getDroppedDeadlines(), "dropped deadlines");
+    }
+
+    private static void smallHitchIsCaughtUp(){
+        ManualClock clock = new ManualClock(OVERSLEEP, SPIN_STEP);
+        FramePacer pacer = new FramePacer(clock, RATE, 0, 5);
+        pacer.waitForNext();
+
+        // Woken 1.5 periods after the next deadline: it and the one after are due, the next one stays on the grid
+        clock.advance(PERIOD * 5 / 2);
+        Check.equal(2, pacer.waitForNext(), "due 1.5 periods late");
+        Check.equal(2 * PERIOD, pacer.getDeadline(), "deadline 1.5 periods late");
+        Check.equal(0, pacer.getDroppedDeadlines(), "dropped 1.5 periods late");
+
+        Check.equal(1, pacer.waitForNext(), "due after catching up");
+        Check.equal(3 * PERIOD, pacer.getDeadline(), "deadline after catching up");
+    }
+
+    private static void largeHitchDropsDeadlines(){
+        ManualClock clock = new ManualClock(OVERSLEEP, SPIN_STEP);
+        FramePacer pacer = new FramePacer(clock, RATE, 0, 5);
+        pacer.waitForNext();
+
+        // 50 ms is 12 deadlines, only 5 of them are due and the schedule restarts from now
+        clock.advance(50000000L);
+        Check.equal(5, pacer.waitForNext(), "due after 50 ms");
+        Check.equal(7, pacer.getDroppedDeadlines(), "dropped after 50 ms");
+        Check.equal(clock.getTime(), pacer.getDeadline(), "deadline after 50 ms");
+
+        long hitchDeadline = pacer.getDeadline();
+        Check.equal(1, pacer.waitForNext(), "due after the hitch");
+        Check.equal(hitchDeadline + PERIOD, pacer.getDeadline(), "deadline after the hitch");
+    }
+
+    private static void throttlingRestartsAtTheThrottledRate(){
+        ManualClock clock = new ManualClock(OVERSLEEP, SPIN_STEP);
+        FramePacer pacer = new FramePacer(clock, RATE, 10, 1);
+        pacer.waitForNext();
+        pacer.waitForNext();
+
+        clock.advance(1000000L);
+        pacer.setThrottled(true);
+        Check.equal(100000000L, pacer.getPeriod(), "throttled period");
+
+        long now = clock.getTime();
+        Check.equal(1, pacer.waitForNext(), "due when throttled");
+        Check.equal(now, pacer.getDeadline(), "first throttled deadline");
+        pacer.waitForNext();
+        Check.equal(now + 100000000L, pacer.getDeadline(), "second throttled deadline");
+
+        pacer.setThrottled(false);
+        Check.equal(PERIOD, pacer.getPeriod(), "period after throttling");
+    }
+
+    private static void noLimitNeverWaits(){
+        ManualClock clock = new ManualClock(OVERSLEEP, SPIN_STEP);
+        FramePacer pacer = new FramePacer(clock, 0, 0, 1);
+
+        for(int i = 0; i < 10; i++){
+            clock.advance(12345);
+            long now = clock.getTime();
+            Check.equal(1, pacer.waitForNext(), "due without limit");
+            Check.equal(now, clock.getTime(), "time without limit");
+            Check.equal(now, pacer.getDeadline(), "deadline without limit");
+        }
+    }
+
+    private static void rejectsNoCatchUp(){
+        Check.throwsException(IllegalArgumentException.class,
+                () -> new FramePacer(new ManualClock(), RATE, 0, 0), "maxCatchUp 0");
+        Check.throwsException(IllegalArgumentException.class,
+                () -> new FramePacer(new ManualClock(), RATE, 0, 1).setMaxCatchUp(0), "setMaxCatchUp(0)");
+    }
+}
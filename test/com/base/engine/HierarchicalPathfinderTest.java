@@ -0,0 +1,136 @@
+package com.base.engine;
+
+/**
+ * HierarchicalPathfinder against GridAStar on generated maps: it has to find a path exactly when flat
+ * A* does, the refined path has to be walkable and cost what getPathCost() says, and that cost can be
+ * above the optimum but not by much. Paths only cross borders at transitions, so a single path may make
+ * a detour of up to about a cluster, but over many queries the detours have to stay small.
+ */
+public class HierarchicalPathfinderTest {
+    private static final int MAX_COST = 10;
+    private static final double MAX_TOTAL_DETOUR = 0.05;
+    // Transitions are placed without looking at cell costs, so with costs the detours get longer
+    private static final double MAX_TOTAL_DETOUR_WITH_COSTS = 0.15;
+    private static final int QUERIES = 200;
+
+    public static void main(String[] args){
+        for(long seed = 1; seed <= 3; seed++){
+            matchesAStar(MazeGenerator.rooms(128, 12, seed), 128, 16, seed, false);
+            matchesAStar(MazeGenerator.rooms(100, 9, seed), 100, 8, seed, true);
+            matchesAStar(MazeGenerator.maze(95, seed), 95, 16, seed, false);
+        }
+        closedDoorDropsCachedPaths();
+        System.out.println("HierarchicalPathfinderTest passed");
+    }
+
+    private static void matchesAStar(boolean[] walls, int size, int clusterSize, long seed, boolean randomCosts){
+        int[] costs = randomCosts ? FlowFieldTest.randomCosts(walls, seed) : blocked(walls);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(size, size, clusterSize, MAX_COST, 64);
+        for(int cell = 0; cell < costs.length; cell++)
+            pathfinder.setCost(cell % size, cell / size, costs[cell]);
+
+        GridAStar flat = new GridAStar(size, size, costs);
+        int maxDetour = clusterSize * (FlowField.COST_DIAGONAL + MAX_COST);
+        long[] state = new long[]{SplitMix64.seed(seed, 3)};
+        long totalOptimum = 0;
+        long totalCost = 0;
+        for(int i = 0; i < QUERIES; i++){
+            int start = FlowFieldTest.randomFreeCell(costs, state);
+            // Every few queries a goal close by, often in the same cluster
+            int goal = i % 4 == 0 ? nearbyFreeCell(costs, size, start, clusterSize / 2, state) : FlowFieldTest.randomFreeCell(costs, state);
+            String what = "path from " + start + " to " + goal + " on " + size + "x" + size + ", seed " + seed;
+
+            int optimum = flat.search(start, goal);
+            int[] waypoints = pathfinder.findPath(start, goal);
+            if(optimum < 0){
+                Check.isTrue(waypoints == null, what + " found, A* found none");
+                continue;
+            }
+            Check.isTrue(waypoints != null, what + " not found, A* costs " + optimum);
+
+            int[] path = pathfinder.refine(waypoints);
+            int cost = walk(path, costs, size, what);
+            Check.equal(start, path[0], what + " start");
+            Check.equal(goal, path[path.length - 1], what + " goal");
+            Check.equal(cost, pathfinder.getPathCost(path), what + " cost");
+            Check.isTrue(cost >= optimum, what + " costs " + cost + ", below the optimum " + optimum);
+            Check.isTrue(cost <= optimum + maxDetour, what + " costs " + cost + ", optimum " + optimum);
+            totalOptimum += optimum;
+            totalCost += cost;
+
+            // A second query comes from the cache and has to be the same path
+            Check.isTrue(pathfinder.findPath(start, goal) == waypoints, what + " cached");
+        }
+
+        double maxTotalDetour = randomCosts ? MAX_TOTAL_DETOUR_WITH_COSTS : MAX_TOTAL_DETOUR;
+        Check.isTrue(totalCost <= totalOptimum * (1 + maxTotalDetour), "paths on " + size + "x" + size + ", seed " + seed
+                + " cost " + totalCost + " together, optimum " + totalOptimum);
+    }
+
+    private static void closedDoorDropsCachedPaths(){
+        int size = 95;
+        boolean[] walls = MazeGenerator.maze(size, 5);
+        int[] costs = blocked(walls);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(size, size, 16, 0, 64);
+        for(int cell = 0; cell < costs.length; cell++)
+            pathfinder.setCost(cell % size, cell / size, costs[cell]);
+
+        // A maze has one path between two cells, blocking a cell in its middle cuts them apart
+        int start = 1 + size;
+        int goal = (size - 2) + (size - 2) * size;
+        int[] path = pathfinder.refine(pathfinder.findPath(start, goal));
+        int door = path[path.length / 2];
+        long cachedHits = pathfinder.getCacheHits();
+
+        pathfinder.setCost(door % size, door / size, FlowField.BLOCKED);
+        Check.isTrue(pathfinder.findPath(start, goal) == null, "path through a closed door");
+        Check.equal(cachedHits, pathfinder.getCacheHits(), "cache hits through a closed door");
+
+        pathfinder.setCost(door % size, door / size, 0);
+        int[] reopened = pathfinder.refine(pathfinder.findPath(start, goal));
+        Check.equal(new GridAStar(size, size, costs).search(start, goal), pathfinder.getPathCost(reopened), "path after reopening");
+    }
+
+    // Checks that every step of the path goes to a free neighbour without cutting a wall corner, and adds up its cost
+    private static int walk(int[] path, int[] costs, int size, String what){
+        int cost = 0;
+        for(int i = 1; i < path.length; i++){
+            int x = path[i - 1] % size;
+            int z = path[i - 1] / size;
+            int dx = path[i] % size - x;
+            int dz = path[i] / size - z;
+            Check.isTrue(Math.abs(dx) <= 1 && Math.abs(dz) <= 1 && (dx != 0 || dz != 0), what + " jumps at step " + i);
+            Check.isTrue(costs[path[i]] != FlowField.BLOCKED, what + " enters a wall at step " + i);
+
+            if(dx != 0 && dz != 0){
+                Check.isTrue(costs[x + dx + z * size] != FlowField.BLOCKED && costs[x + (z + dz) * size] != FlowField.BLOCKED,
+                        what + " cuts a corner at step " + i);
+                cost += FlowField.COST_DIAGONAL;
+            }
+            else {
+                cost += FlowField.COST_STRAIGHT;
+            }
+            cost += costs[path[i]];
+        }
+
+        return cost;
+    }
+
+    private static int[] blocked(boolean[] walls){
+        int[] costs = new int[walls.length];
+        for(int cell = 0; cell < walls.length; cell++)
+            if(walls[cell])
+                costs[cell] = FlowField.BLOCKED;
+
+        return costs;
+    }
+
+    private static int nearbyFreeCell(int[] costs, int size, int cell, int range, long[] state){
+        while(true){
+            int x = Math.min(size - 1, Math.max(0, cell % size + SplitMix64.nextInt(state, 0, range * 2 + 1) - range));
+            int z = Math.min(size - 1, Math.max(0, cell / size + SplitMix64.nextInt(state, 0, range * 2 + 1) - range));
+            if(costs[x + z * size] != FlowField.BLOCKED)
+                return x + z * size;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.base.engine;
+
+/**
+ * InputLatency only counts the first frame that shows an input event, from the event to its swap.
+ * The times are below 16 ns, where the histogram is exact.
+ */
+public class InputLatencyTest {
+    public static void main(String[] args){
+        InputLatency latency = new InputLatency();
+
+        latency.frameSwapped(InputLatency.NO_INPUT, 2);
+        Check.equal(0, latency.getHistogram().getCount(), "frame without input");
+
+        latency.frameSwapped(3, 6);
+        Check.equal(1, latency.getHistogram().getCount(), "first frame with the event");
+        Check.equal(3, latency.getHistogram().getMax(), "latency of the event");
+
+        // The world standing still, and a frame from an older snapshot
+        latency.frameSwapped(3, 8);
+        latency.frameSwapped(1, 10);
+        Check.equal(1, latency.getHistogram().getCount(), "frames without a newer event");
+
+        latency.frameSwapped(5, 12);
+        Check.equal(2, latency.getHistogram().getCount(), "frame with the next event");
+        Check.equal(7, latency.getHistogram().getMax(), "latency of the next event");
+        Check.equal(3, latency.getHistogram().getPercentile(0), "latency of the first event");
+
+        Check.equal(5, latency.getFrames(), "frames");
+        Check.equal(12, latency.getLastSwapTime(), "last swap");
+        System.out.println("InputLatencyTest passed");
+    }
+}
@@ -0,0 +1,100 @@
+package com.base.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LatencyHistogram's percentiles against the exact ones from the sorted samples: never below them,
+ * and above by at most one sixteenth, the width of a bucket.
+ */
+public class LatencyHistogramTest {
+    private static final double[] PERCENTILES = {0, 0.1, 0.5, 0.9, 0.99, 0.999, 1};
+
+    public static void main(String[] args){
+        for(long seed = 1; seed <= 3; seed++){
+            percentilesMatchSortedSamples(seed, 0, 16);
+            percentilesMatchSortedSamples(seed, 1000000L, 40000000L);
+            percentilesMatchSortedSamples(seed, 1, Time.SECOND * 3600);
+        }
+        emptyAndNegative();
+        exportAddsUp();
+        System.out.println("LatencyHistogramTest passed");
+    }
+
+    // Samples spread evenly over the powers of two between min and max
+    private static void percentilesMatchSortedSamples(long seed, long min, long max){
+        long[] state = new long[]{SplitMix64.seed(seed, 5)};
+        long[] samples = new long[10000 + SplitMix64.nextInt(state, 0, 1000)];
+        LatencyHistogram histogram = new LatencyHistogram();
+        double logMin = Math.log(Math.max(1, min));
+        double logMax = Math.log(max);
+        long total = 0;
+        for(int i = 0; i < samples.length; i++){
+            samples[i] = Math.min(max, Math.max(min, (long)Math.exp(logMin + SplitMix64.nextDouble(state, 0) * (logMax - logMin))));
+            histogram.record(samples[i]);
+            total += samples[i];
+        }
+        Arrays.sort(samples);
+
+        String where = samples.length + " samples from " + min + " to " + max + ", seed " + seed;
+        Check.equal(samples.length, histogram.getCount(), "count of " + where);
+        Check.equal(samples[samples.length - 1], histogram.getMax(), "max of " + where);
+        Check.equal(total / samples.length, histogram.getMean(), "mean of " + where);
+
+        for(double p : PERCENTILES){
+            long exact = samples[(int)Math.min(samples.length - 1, (long)(p * samples.length))];
+            long reported = histogram.getPercentile(p);
+            Check.isTrue(reported >= exact, "p" + p * 100 + " of " + where + " is " + reported + ", below " + exact);
+            Check.isTrue(reported <= exact + exact / 16, "p" + p * 100 + " of " + where + " is " + reported + ", exact " + exact);
+            Check.isTrue(reported <= histogram.getMax(), "p" + p * 100 + " of " + where + " above the max");
+        }
+
+        histogram.reset();
+        Check.equal(0, histogram.getCount(), "count after reset");
+        Check.equal(0, histogram.getPercentile(0.5), "p50 after reset");
+    }
+
+    private static void emptyAndNegative(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        Check.equal(0, histogram.getPercentile(0.99), "p99 of nothing");
+        Check.equal(0, histogram.getMean(), "mean of nothing");
+
+        histogram.record(-5);
+        histogram.record(7);
+        Check.equal(0, histogram.getPercentile(0), "negative duration");
+        Check.equal(7, histogram.getPercentile(1), "max after a negative duration");
+    }
+
+    private static void exportAddsUp(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long nanos = 1; nanos < Time.SECOND; nanos = nanos * 3 + 1)
+            histogram.record(nanos);
+
+        try {
+            File file = File.createTempFile("latency", ".csv");
+            file.deleteOnExit();
+            histogram.export(file.getPath());
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            Check.isTrue(lines.get(0).equals("upper_ns,count,cumulative"), "export header");
+
+            long counted = 0;
+            long lastBound = -1;
+            for(String line : lines.subList(1, lines.size())){
+                String[] fields = line.split(",");
+                long bound = Long.parseLong(fields[0]);
+                Check.isTrue(bound > lastBound, "export buckets in order at " + line);
+                lastBound = bound;
+                counted += Long.parseLong(fields[1]);
+            }
+            Check.equal(histogram.getCount(), counted, "exported count");
+            Check.isTrue(lines.get(lines.size() - 1).endsWith(",1.00000"), "exported cumulative ends at 1");
+        }catch (IOException e){
+            throw new AssertionError("could not read the exported histogram", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.base.engine;
+
+/**
+ * ResolutionScaler driven with synthetic frame-time traces. Some traces are fixed times, the others
+ * model a GPU bound frame whose time grows with the pixel count, load * scale * scale.
+ */
+public class ResolutionScalerTest {
+    private static final double TARGET = 1.0 / 60.0;
+    // Float rounding of the scale arithmetic
+    private static final float EPSILON = 1e-5f;
+
+    public static void main(String[] args){
+        overloadStepsDownToMin();
+        underloadStepsUpToMax();
+        staysInsideTheBand();
+        alternatingSpikesDoNotOscillate();
+        rejectsBadSettings();
+        System.out.println("ResolutionScalerTest passed");
+    }
+
+    private static void overloadStepsDownToMin(){
+        ResolutionScaler scaler = new ResolutionScaler(TARGET, 0.5f, 1.0f);
+        int changes = 0;
+        int lastChange = 0;
+        float scale = scaler.getScale();
+        for(int frame = 1; frame <= 600; frame++){
+            float newScale = scaler.update(TARGET * 3);
+            if(newScale != scale){
+                Check.isTrue(newScale < scale, "scaled up under overload at frame " + frame);
+                Check.isTrue(scale - newScale <= ResolutionScaler.MAX_STEP_DOWN + EPSILON,
+                        "stepped down from " + scale + " to " + newScale + " at frame " + frame);
+                if(changes > 0)
+                    Check.isTrue(frame - lastChange >= ResolutionScaler.COOLDOWN_DOWN, "changed " + (frame - lastChange) + " frames after the last change");
+                changes++;
+                lastChange = frame;
+                scale = newScale;
+            }
+        }
+
+        Check.near(0.5, scaler.getScale(), 0, "scale under constant overload");
+        Check.isTrue(changes >= 5, "reached the min scale in " + changes + " steps");
+    }
+
+    private static void underloadStepsUpToMax(){
+        ResolutionScaler scaler = new ResolutionScaler(TARGET, 0.5f, 1.0f);
+        int frame = 0;
+        while(scaler.getScale() > 0.5f && frame < 1000){
+            scaler.update(TARGET * 3);
+            frame++;
+        }
+        Check.near(0.5, scaler.getScale(), 0, "scale before the underload");
+
+        int changes = 0;
+        int lastChange = frame;
+        float scale = scaler.getScale();
+        for(int end = frame + 3000; frame < end; ){
+            frame++;
+            float newScale = scaler.update(TARGET * 0.5);
+            if(newScale != scale){
+                Check.isTrue(newScale > scale, "scaled down under underload at frame " + frame);
+                Check.isTrue(newScale - scale <= ResolutionScaler.MAX_STEP_UP + EPSILON,
+                        "stepped up from " + scale + " to " + newScale + " at frame " + frame);
+                Check.isTrue(frame - lastChange >= ResolutionScaler.COOLDOWN_UP, "scaled up " + (frame - lastChange) + " frames after the last change");
+                changes++;
+                lastChange = frame;
+                scale = newScale;
+            }
+        }
+
+        Check.near(1.0, scaler.getScale(), 0, "scale under constant underload");
+        Check.isTrue(changes >= 10, "reached the max scale in " + changes + " steps");
+    }
+
+    private static void staysInsideTheBand(){
+        long[] state = new long[]{SplitMix64.seed(1, 6)};
+        double low = ResolutionScaler.LOWER_THRESHOLD + 0.01;
+        double high = ResolutionScaler.UPPER_THRESHOLD - 0.01;
+
+        ResolutionScaler scaler = new ResolutionScaler(TARGET, 0.5f, 1.0f);
+        for(int frame = 0; frame < 2000; frame++)
+            scaler.update(TARGET * (low + SplitMix64.nextDouble(state, 0) * (high - low)));
+        Check.near(1.0, scaler.getScale(), 0, "scale at the max with frame times inside the band");
+
+        // Below the max, where the scale could move either way. The average first has to forget the overload.
+        while(scaler.getScale() > 0.75f)
+            scaler.update(TARGET * 2);
+        for(int frame = 0; frame < 200; frame++)
+            scaler.update(TARGET * (low + SplitMix64.nextDouble(state, 0) * (high - low)));
+        float scale = scaler.getScale();
+        Check.isTrue(scale < 1.0f, "scale below the max");
+        for(int frame = 0; frame < 2000; frame++)
+            scaler.update(TARGET * (low + SplitMix64.nextDouble(state, 0) * (high - low)));
+        Check.near(scale, scaler.getScale(), 0, "scale below the max with frame times inside the band");
+    }
+
+    private static void alternatingSpikesDoNotOscillate(){
+        // Fixed times around the target: the average stays inside the band
+        ResolutionScaler scaler = new ResolutionScaler(TARGET, 0.5f, 1.0f);
+        for(int frame = 0; frame < 2000; frame++)
+            scaler.update(TARGET * (frame % 2 == 0 ? 0.5 : 1.5));
+        Check.near(1.0, scaler.getScale(), 0, "scale with spikes around the target");
+
+        // Every other frame heavy enough to push the average out: it settles on a scale and stays there
+        scaler = new ResolutionScaler(TARGET, 0.5f, 1.0f);
+        float scale = scaler.getScale();
+        int direction = 0;
+        int lastChange = 0;
+        for(int frame = 1; frame <= 3000; frame++){
+            double load = TARGET * (frame % 2 == 0 ? 0.4 : 2.0);
+            float newScale = scaler.update(load * scale * scale);
+            if(newScale != scale){
+                int newDirection = newScale > scale ? 1 : -1;
+                Check.isTrue(direction == 0 || direction == newDirection, "scale turned around at frame " + frame);
+                direction = newDirection;
+                lastChange = frame;
+                scale = newScale;
+            }
+        }
+
+        Check.isTrue(lastChange < 1000, "scale still changing at frame " + lastChange);
+        Check.isTrue(scale < 1.0f && scale > 0.5f, "settled at " + scale);
+    }
+
+    private static void rejectsBadSettings(){
+        Check.throwsException(IllegalArgumentException.class, () -> new ResolutionScaler(0), "target 0");
+        Check.throwsException(IllegalArgumentException.class, () -> new ResolutionScaler(-TARGET), "negative target");
+        Check.throwsException(IllegalArgumentException.class, () -> new ResolutionScaler(TARGET, 0, 1), "min scale 0");
+        Check.throwsException(IllegalArgumentException.class, () -> new ResolutionScaler(TARGET, -0.5f, 1), "negative min scale");
+        Check.throwsException(IllegalArgumentException.class, () -> new ResolutionScaler(TARGET, 0.8f, 0.6f), "min above max");
+    }
+}
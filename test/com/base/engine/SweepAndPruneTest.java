@@ -0,0 +1,111 @@
+package com.base.engine;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SweepAndPrune against testing every pair of boxes: a crowd of boxes of different sizes, some of them
+ * disabled, wanders over ground crossing z = 0, while boxes are added and removed, and every update has
+ * to report exactly the overlapping pairs, each once.
+ */
+public class SweepAndPruneTest {
+    private static final float ROW_HEIGHT = 0.8f;
+    private static final int MAX_BOXES = 600;
+
+    public static void main(String[] args){
+        for(long seed = 1; seed <= 3; seed++)
+            matchesBruteForce(seed);
+        touchingBoxesOverlap();
+        rejectsTallBoxes();
+        System.out.println("SweepAndPruneTest passed");
+    }
+
+    private static void matchesBruteForce(long seed){
+        long[] state = new long[]{SplitMix64.seed(seed, 4)};
+        float side = 20;
+        float[] x = new float[MAX_BOXES];
+        float[] z = new float[MAX_BOXES];
+        float[] halfX = new float[MAX_BOXES];
+        float[] halfZ = new float[MAX_BOXES];
+        boolean[] enabled = new boolean[MAX_BOXES];
+        for(int i = 0; i < MAX_BOXES; i++){
+            x[i] = random(state, -side, side);
+            z[i] = random(state, -side, side);
+            halfX[i] = random(state, 0.05f, 0.6f);
+            halfZ[i] = random(state, 0.05f, ROW_HEIGHT / 2);
+        }
+
+        SweepAndPrune broadphase = new SweepAndPrune(ROW_HEIGHT);
+        int count = 400;
+        broadphase.setCount(count);
+
+        Set<Long> found = new HashSet<>();
+        SweepAndPrune.PairCallback callback = (a, b) -> {
+            Check.isTrue(a != b, "box " + a + " overlaps itself");
+            Check.isTrue(found.add(pair(a, b)), "pair " + a + ", " + b + " reported twice");
+        };
+
+        for(int tick = 0; tick < 200; tick++){
+            // Now and then boxes come and go
+            if(tick % 25 == 24){
+                int newCount = SplitMix64.nextInt(state, 0, MAX_BOXES + 1);
+                broadphase.setCount(newCount);
+                count = newCount;
+            }
+
+            for(int i = 0; i < count; i++){
+                // Mostly small steps, sometimes a jump across the world, like a teleport
+                float step = SplitMix64.nextInt(state, 0, 50) == 0 ? side : 0.1f;
+                x[i] = Math.min(side, Math.max(-side, x[i] + random(state, -step, step)));
+                z[i] = Math.min(side, Math.max(-side, z[i] + random(state, -step, step)));
+                enabled[i] = SplitMix64.nextInt(state, 0, 10) != 0;
+
+                broadphase.setBox(i, x[i], z[i], halfX[i], halfZ[i]);
+                broadphase.setEnabled(i, enabled[i]);
+            }
+
+            found.clear();
+            broadphase.update(callback);
+
+            Set<Long> expected = new HashSet<>();
+            for(int a = 0; a < count; a++)
+                for(int b = a + 1; b < count; b++)
+                    if(enabled[a] && enabled[b] && Math.abs(x[a] - x[b]) <= halfX[a] + halfX[b] && Math.abs(z[a] - z[b]) <= halfZ[a] + halfZ[b])
+                        expected.add(pair(a, b));
+
+            for(long p : expected)
+                Check.isTrue(found.contains(p), "pair " + (p >>> 32) + ", " + (int)p + " missed at tick " + tick + ", seed " + seed);
+            Check.equal(expected.size(), found.size(), "pairs at tick " + tick + ", seed " + seed);
+            Check.equal(expected.size(), broadphase.getLastPairs(), "getLastPairs() at tick " + tick + ", seed " + seed);
+        }
+    }
+
+    private static void touchingBoxesOverlap(){
+        SweepAndPrune broadphase = new SweepAndPrune(1);
+        broadphase.setCount(3);
+        broadphase.setBox(0, 0, 0, 0.5f, 0.5f);
+        // Edge to edge with 0, once along x and once along z across a row border
+        broadphase.setBox(1, 1, 0, 0.5f, 0.5f);
+        broadphase.setBox(2, -0.25f, 1, 0.5f, 0.5f);
+
+        Set<Long> found = new HashSet<>();
+        broadphase.update((a, b) -> found.add(pair(a, b)));
+        Check.isTrue(found.contains(pair(0, 1)), "boxes touching along x");
+        Check.isTrue(found.contains(pair(0, 2)), "boxes touching along z");
+        Check.equal(2, found.size(), "pairs of touching boxes");
+    }
+
+    private static void rejectsTallBoxes(){
+        SweepAndPrune broadphase = new SweepAndPrune(1);
+        broadphase.setCount(1);
+        Check.throwsException(IllegalArgumentException.class, () -> broadphase.setBox(0, 0, 0, 0.5f, 0.6f), "box taller than a row");
+    }
+
+    private static long pair(int a, int b){
+        return ((long)Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private static float random(long[] state, float min, float max){
+        return min + (float)SplitMix64.nextDouble(state, 0) * (max - min);
+    }
+}